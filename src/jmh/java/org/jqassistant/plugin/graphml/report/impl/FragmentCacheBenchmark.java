@@ -0,0 +1,99 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+import com.buschmais.jqassistant.core.rule.api.model.Report;
+import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
+
+import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks writing a report whose elements are all contained in the {@link FragmentCache} against serializing them again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx16g" })
+public class FragmentCacheBenchmark {
+
+    @Param({ "FLAT", "HIGH_DEGREE", "WIDE_PROPERTIES" })
+    public SyntheticGraphs.Shape shape;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int elements;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    private SubGraph graph;
+
+    private Result<Concept> result;
+
+    private XmlGraphMLWriter serializingWriter;
+
+    private XmlGraphMLWriter cachingWriter;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, XMLStreamException {
+        graph = SyntheticGraphs.create(shape, elements);
+        Concept concept = Concept.builder()
+            .id("benchmark:" + shape)
+            .report(Report.builder()
+                .build())
+            .build();
+        result = Result.<Concept>builder()
+            .rule(concept)
+            .build();
+        ClassHelper classHelper = new ClassHelper(FragmentCacheBenchmark.class.getClassLoader());
+        ReportOutput reportOutput = new ReportOutput(Compression.NONE, Deflater.DEFAULT_COMPRESSION, XmlStreamWriterType.GRAPHML);
+        WriterOptions options = WriterOptions.DEFAULT.withReportOutput(reportOutput)
+            .withParallel(parallel);
+        serializingWriter = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, new HashMap<>(), options);
+        // the budget holds all fragments, i.e. every element of the measured writes is a hit
+        cachingWriter = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, new HashMap<>(),
+            options.withFragmentCache(new FragmentCache(Long.MAX_VALUE)));
+        file = File.createTempFile("benchmark", ".graphml");
+        cachingWriter.write(result, graph, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void serialize() throws IOException, XMLStreamException {
+        serializingWriter.write(result, graph, file);
+    }
+
+    @Benchmark
+    public void cacheHit() throws IOException, XMLStreamException {
+        cachingWriter.write(result, graph, file);
+    }
+}
@@ -0,0 +1,47 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the inference of the GraphML keys of a graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx16g" })
+public class KeyInferenceBenchmark {
+
+    @Param({ "FLAT", "WIDE_PROPERTIES" })
+    public SyntheticGraphs.Shape shape;
+
+    @Param({ "10000", "100000", "1000000", "5000000" })
+    public int elements;
+
+    private SubGraph graph;
+
+    @Setup
+    public void setUp() {
+        graph = SyntheticGraphs.create(shape, elements);
+    }
+
+    @Benchmark
+    public GraphIndex inferKeyTypes() {
+        return GraphIndex.of(graph);
+    }
+}
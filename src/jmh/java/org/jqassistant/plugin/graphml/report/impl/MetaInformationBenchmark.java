@@ -0,0 +1,36 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the mapping of value classes to GraphML types by {@link MetaInformation#typeFor(Class, java.util.Set)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetaInformationBenchmark {
+
+    private final Class<?>[] valueClasses = { String.class, Integer.class, Long.class, Double.class, Float.class, Boolean.class, Short.class,
+        String[].class, Object.class, void.class };
+
+    @Benchmark
+    public void typeFor(Blackhole blackhole) {
+        for (Class<?> valueClass : valueClasses) {
+            blackhole.consume(MetaInformation.typeFor(valueClass, MetaInformation.GRAPHML_ALLOWED));
+        }
+    }
+}
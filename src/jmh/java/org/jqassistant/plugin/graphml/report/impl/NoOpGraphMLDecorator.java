@@ -0,0 +1,69 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamWriter;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * A {@link GraphMLDecorator} which writes all elements without any decoration, used as baseline for benchmarks.
+ */
+public class NoOpGraphMLDecorator implements GraphMLDecorator {
+
+    @Override
+    public void initialize(Result<?> result, SubGraph subGraph, XMLStreamWriter xmlWriter, File file, Map<String, Object> properties) {
+    }
+
+    @Override
+    public Map<String, String> getNamespaces() {
+        return emptyMap();
+    }
+
+    @Override
+    public Map<String, String> getSchemaLocations() {
+        return emptyMap();
+    }
+
+    @Override
+    public void writeKeys() {
+    }
+
+    @Override
+    public boolean isWriteNode(Node node) {
+        return true;
+    }
+
+    @Override
+    public void writeNodeAttributes(Node node) {
+    }
+
+    @Override
+    public void writeNodeElements(Node node) {
+    }
+
+    @Override
+    public boolean isWriteRelationship(Relationship relationship) {
+        return true;
+    }
+
+    @Override
+    public void writeRelationshipAttributes(Relationship relationship) {
+    }
+
+    @Override
+    public void writeRelationshipElements(Relationship relationship) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,207 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Generates deterministic synthetic {@link SubGraph}s for benchmarks.
+ */
+final class SyntheticGraphs {
+
+    /**
+     * The shape of a generated graph.
+     */
+    enum Shape {
+
+        /**
+         * All nodes in one graph, each node has two outgoing relationships.
+         */
+        FLAT,
+
+        /**
+         * Chains of nested sub graphs with a depth of {@link #NESTING_DEPTH}, each level is a container node which is the parent of a sub graph
+         * containing {@link #NESTED_LEAVES} leaf nodes and the container of the next level.
+         */
+        NESTED,
+
+        /**
+         * A few hub nodes which are connected to all other nodes.
+         */
+        HIGH_DEGREE,
+
+        /**
+         * Like {@link #FLAT} but every node has many properties of different types.
+         */
+        WIDE_PROPERTIES
+
+    }
+
+    private static final List<List<String>> LABELS = asList(asList("Java", "Type", "Class"), asList("Java", "Member", "Method"),
+        asList("Java", "Member", "Field"), asList("Java", "Package", "Directory"), asList("Maven", "Artifact"));
+
+    private static final String[] RELATIONSHIP_TYPES = { "DEPENDS_ON", "INVOKES", "READS", "WRITES", "CONTAINS" };
+
+    private static final int HUBS = 16;
+
+    private static final int WIDE_PROPERTIES = 50;
+
+    private static final int NESTING_DEPTH = 1000;
+
+    private static final int NESTED_LEAVES = 3;
+
+    private static final long SEED = 42;
+
+    private SyntheticGraphs() {
+    }
+
+    /**
+     * Create a graph.
+     *
+     * @param shape    The {@link Shape}.
+     * @param elements The approximate number of nodes and relationships.
+     * @return The graph.
+     */
+    static SubGraph create(Shape shape, int elements) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        SubGraph graph = new SubGraph();
+        graph.setId(-1);
+        switch (shape) {
+        case FLAT:
+            createFlat(graph, elements / 3, 0, random);
+            break;
+        case NESTED:
+            createNested(graph, elements / 2, random);
+            break;
+        case HIGH_DEGREE:
+            createHighDegree(graph, elements / 2, random);
+            break;
+        case WIDE_PROPERTIES:
+            createFlat(graph, elements / 3, WIDE_PROPERTIES, random);
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported shape " + shape);
+        }
+        return graph;
+    }
+
+    private static void createFlat(SubGraph graph, int nodeCount, int properties, SplittableRandom random) {
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = node(i, properties, random);
+            nodes.add(node);
+            graph.getNodes()
+                .put(node.getId(), node);
+        }
+        long relationshipId = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Node start = nodes.get(i);
+            add(graph, relationship(relationshipId++, start, nodes.get((i + 1) % nodeCount), properties / 10, random));
+            add(graph, relationship(relationshipId++, start, nodes.get(random.nextInt(nodeCount)), properties / 10, random));
+        }
+    }
+
+    private static void createNested(SubGraph graph, int nodeCount, SplittableRandom random) {
+        long nodeId = 0;
+        long relationshipId = 0;
+        while (nodeId < nodeCount) {
+            SubGraph enclosingGraph = graph;
+            Node enclosingContainer = null;
+            for (int level = 0; level < NESTING_DEPTH && nodeId < nodeCount; level++) {
+                // the container is only written as parent of its sub graph, not as member of the enclosing graph
+                Node container = node(nodeId++, 0, random);
+                SubGraph subGraph = new SubGraph();
+                subGraph.setId(-container.getId() - 2);
+                subGraph.setParent(container);
+                if (enclosingContainer != null) {
+                    add(enclosingGraph, relationship(relationshipId++, enclosingContainer, container, 0, random));
+                }
+                for (int i = 0; i < NESTED_LEAVES && nodeId < nodeCount; i++) {
+                    Node leaf = node(nodeId++, 0, random);
+                    subGraph.getNodes()
+                        .put(leaf.getId(), leaf);
+                    add(subGraph, relationship(relationshipId++, container, leaf, 0, random));
+                }
+                enclosingGraph.getSubGraphs()
+                    .put(subGraph.getId(), subGraph);
+                enclosingGraph = subGraph;
+                enclosingContainer = container;
+            }
+        }
+    }
+
+    private static void createHighDegree(SubGraph graph, int nodeCount, SplittableRandom random) {
+        List<Node> hubs = new ArrayList<>(HUBS);
+        long relationshipId = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = node(i, 0, random);
+            graph.getNodes()
+                .put(node.getId(), node);
+            if (i < HUBS) {
+                hubs.add(node);
+            } else {
+                add(graph, relationship(relationshipId++, node, hubs.get(i % HUBS), 0, random));
+            }
+        }
+    }
+
+    private static Node node(long id, int properties, SplittableRandom random) {
+        Node node = new Node();
+        node.setId(id);
+        node.getLabels()
+            .addAll(LABELS.get(random.nextInt(LABELS.size())));
+        String fqn = "com.acme.module" + (id % 100) + ".Type" + id;
+        node.setLabel(fqn);
+        node.getProperties()
+            .put("fqn", fqn);
+        node.getProperties()
+            .put("name", "Type" + id);
+        addProperties(node.getProperties(), properties, random);
+        return node;
+    }
+
+    private static Relationship relationship(long id, Node start, Node end, int properties, SplittableRandom random) {
+        Relationship relationship = new Relationship();
+        relationship.setId(id);
+        relationship.setType(RELATIONSHIP_TYPES[random.nextInt(RELATIONSHIP_TYPES.length)]);
+        relationship.setStartNode(start);
+        relationship.setEndNode(end);
+        addProperties(relationship.getProperties(), properties, random);
+        return relationship;
+    }
+
+    private static void addProperties(Map<String, Object> target, int properties, SplittableRandom random) {
+        for (int i = 0; i < properties; i++) {
+            Object value;
+            switch (i % 5) {
+            case 0:
+                value = "value-" + random.nextInt(1000);
+                break;
+            case 1:
+                value = random.nextInt();
+                break;
+            case 2:
+                value = random.nextLong();
+                break;
+            case 3:
+                value = random.nextDouble();
+                break;
+            default:
+                value = random.nextBoolean();
+            }
+            target.put("property" + i, value);
+        }
+    }
+
+    private static void add(SubGraph graph, Relationship relationship) {
+        graph.getRelationships()
+            .put(relationship.getId(), relationship);
+    }
+}
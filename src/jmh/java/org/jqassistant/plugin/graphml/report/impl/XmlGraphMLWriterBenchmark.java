@@ -0,0 +1,95 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+import com.buschmais.jqassistant.core.rule.api.model.Report;
+import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
+
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks writing a complete GraphML report using {@link XmlGraphMLWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx16g" })
+public class XmlGraphMLWriterBenchmark {
+
+    @Param({ "FLAT", "NESTED", "HIGH_DEGREE", "WIDE_PROPERTIES" })
+    public SyntheticGraphs.Shape shape;
+
+    @Param({ "10000", "100000", "1000000", "5000000" })
+    public int elements;
+
+    @Param({ "yed", "noop" })
+    public String decorator;
+
+    @Param({ "stax", "graphml" })
+    public String xmlWriter;
+
+    @Param({ "stream", "channel" })
+    public String fileOutput;
+
+    private SubGraph graph;
+
+    private Result<Concept> result;
+
+    private XmlGraphMLWriter writer;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        graph = SyntheticGraphs.create(shape, elements);
+        Concept concept = Concept.builder()
+            .id("benchmark:" + shape)
+            .report(Report.builder()
+                .build())
+            .build();
+        result = Result.<Concept>builder()
+            .rule(concept)
+            .build();
+        Class<? extends GraphMLDecorator> decoratorClass = "yed".equals(decorator) ? YedGraphMLDecorator.class : NoOpGraphMLDecorator.class;
+        ReportOutput reportOutput = new ReportOutput(Compression.NONE, Deflater.DEFAULT_COMPRESSION, XmlStreamWriterType.of(xmlWriter),
+            FileOutput.of(fileOutput));
+        writer = new XmlGraphMLWriter(new ClassHelper(XmlGraphMLWriterBenchmark.class.getClassLoader()), decoratorClass, new HashMap<>(),
+            WriterOptions.DEFAULT.withReportOutput(reportOutput));
+        file = File.createTempFile("benchmark", ".graphml");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void write() throws IOException, XMLStreamException {
+        writer.write(result, graph, file);
+    }
+}
@@ -22,10 +22,14 @@ public interface GraphMLDecorator extends Closeable {
 
     /**
      * Initialize the decorator.
+     * <p>
+     * For a document which is not written as XML (i.e. the JSON Lines format) no {@link XMLStreamWriter} is provided, the decorator is then only
+     * used for filtering: besides {@link #close()} only {@link #isWriteNode(Node)} and {@link #isWriteRelationship(Relationship)} are called.
      *
      * @param result     The current result that is written as a graph.
-     * @param subGraph   The sub graph to render.
-     * @param xmlWriter  The {@link XMLStreamWriter} that is used for writing.
+     * @param subGraph   The sub graph to render, for a streamed document only its identity is provided but not its elements (see
+     *                   {@link #isStreamable()}).
+     * @param xmlWriter  The {@link XMLStreamWriter} that is used for writing or <code>null</code> if the document is not written as XML.
      * @param file       The output file.
      * @param properties The properties from the GraphML plugin configuration.
      */
@@ -102,6 +106,45 @@ public interface GraphMLDecorator extends Closeable {
      */
     void writeRelationshipElements(Relationship relationship) throws XMLStreamException;
 
+    /**
+     * Determine if the elements of a document may be written in parallel.
+     * <p>
+     * If supported, additional instances of the decorator are created and initialized for the same document, each one writing chunks of the nodes
+     * and relationships to its own {@link XMLStreamWriter} and being used by one thread at a time. {@link #writeKeys()} is only called for the instance
+     * writing the document. Decorators holding state across the elements of a document must not support this.
+     *
+     * @return <code>true</code> if the decorator supports writing in parallel.
+     */
+    default boolean isParallelizable() {
+        return false;
+    }
+
+    /**
+     * Determine if the serialized form of a node or relationship may be reused for other documents of the same run.
+     * <p>
+     * If supported, the output written for an element including the decision of {@link #isWriteNode(Node)} or
+     * {@link #isWriteRelationship(Relationship)} must only depend on the element itself but not on the document, i.e. the result or the file it is
+     * written for. The decorator is not called for elements whose serialized form is reused.
+     *
+     * @return <code>true</code> if the serialized form of elements may be reused.
+     */
+    default boolean isCacheable() {
+        return false;
+    }
+
+    /**
+     * Determine if a document may be written while consuming the rows of the result.
+     * <p>
+     * If supported, the sub graph passed to {@link #initialize(Result, SubGraph, XMLStreamWriter, File, Map)} is empty and only identifies the
+     * document, the nodes and relationships are passed to the decorator as they are written. Decorators requiring the complete graph, e.g. for a
+     * layout, must not support this.
+     *
+     * @return <code>true</code> if the decorator supports streamed documents.
+     */
+    default boolean isStreamable() {
+        return false;
+    }
+
     /**
      * Finish writing the GraphML document.
      */
@@ -0,0 +1,76 @@
+package org.jqassistant.plugin.graphml.report.api;
+
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Optional extension of a {@link GraphMLDecorator} for decorators which produce the same output for all nodes with the same labels or all
+ * relationships with the same type.
+ * <p>
+ * The decorator maps each label set and relationship type to a style class once per file. The attributes and elements of a style class are rendered
+ * once and reused for every matching node or relationship, i.e. the per-element callbacks {@link #writeNodeAttributes} and
+ * {@link #writeNodeElements} (respectively the ones for relationships) are not called for these elements. A decorator may return
+ * <code>null</code> as style class to use the per-element callbacks for some label sets or relationship types.
+ * <p>
+ * Filtering is not part of a style class: {@link #isWriteNode} and {@link #isWriteRelationship} are still called for every element.
+ */
+public interface StyledGraphMLDecorator extends GraphMLDecorator {
+
+    /**
+     * Return the style class of nodes with the given labels.
+     *
+     * @param labels The labels.
+     * @return The style class or <code>null</code> if the nodes shall be written using the per-element callbacks.
+     */
+    String getNodeStyleClass(Set<String> labels);
+
+    /**
+     * Return the style class of relationships with the given type.
+     *
+     * @param type The relationship type.
+     * @return The style class or <code>null</code> if the relationships shall be written using the per-element callbacks.
+     */
+    String getRelationshipStyleClass(String type);
+
+    /**
+     * Add the node attributes of a style class.
+     *
+     * @param styleClass The style class.
+     * @param writer     The {@link XMLStreamWriter} to write the attributes to.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeNodeStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException;
+
+    /**
+     * Add the elements inside a node-element of a style class.
+     *
+     * @param styleClass The style class.
+     * @param writer     The {@link XMLStreamWriter} to write the elements to.
+     * @return <code>false</code> if the elements depend on the node, {@link #writeNodeElements} is then called for each node instead.
+     * @throws XMLStreamException If writing fails.
+     */
+    boolean writeNodeStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException;
+
+    /**
+     * Add the relationship attributes of a style class.
+     *
+     * @param styleClass The style class.
+     * @param writer     The {@link XMLStreamWriter} to write the attributes to.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeRelationshipStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException;
+
+    /**
+     * Add the elements inside a relationship-element of a style class.
+     *
+     * @param styleClass The style class.
+     * @param writer     The {@link XMLStreamWriter} to write the elements to.
+     * @return <code>false</code> if the elements depend on the relationship, {@link #writeRelationshipElements} is then called for each relationship
+     * instead.
+     * @throws XMLStreamException If writing fails.
+     */
+    boolean writeRelationshipStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException;
+
+}
@@ -0,0 +1,25 @@
+package org.jqassistant.plugin.graphml.report.api;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Optionally implemented by the {@link XMLStreamWriter} passed to a {@link GraphMLDecorator}, allows writing pre-serialized XML fragments.
+ *
+ * Decorators may check for this interface to write constant parts of their output with a single call instead of a sequence of
+ * {@link XMLStreamWriter} calls.
+ */
+public interface XMLFragmentWriter {
+
+    /**
+     * Write a pre-serialized XML fragment.
+     *
+     * A pending start tag is closed before the fragment is written. The fragment is copied as is, i.e. it must be UTF-8 encoded, properly escaped and
+     * use the namespace prefixes declared by the document. Elements opened by a fragment must be closed by a subsequent fragment.
+     *
+     * @param fragment The fragment.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeFragment(byte[] fragment) throws XMLStreamException;
+
+}
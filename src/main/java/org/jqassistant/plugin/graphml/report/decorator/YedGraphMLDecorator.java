@@ -1,9 +1,20 @@
 package org.jqassistant.plugin.graphml.report.decorator;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
@@ -11,21 +22,44 @@ import com.buschmais.jqassistant.core.report.api.graph.model.Node;
 import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
 import com.buschmais.jqassistant.core.report.api.model.Result;
-import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+import org.jqassistant.plugin.graphml.report.api.StyledGraphMLDecorator;
+import org.jqassistant.plugin.graphml.report.api.XMLFragmentWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A GraphML decorator for yEd.
+ *
+ * All nodes share the folder attribute and all relationships are written without decoration, therefore one style class is used for each of them. The
+ * node elements contain the label of each node and are written per node.
  */
-public class YedGraphMLDecorator implements GraphMLDecorator {
+public class YedGraphMLDecorator implements StyledGraphMLDecorator {
 
     private static final String Y_NAMESPACE_URI = "http://www.yworks.com/xml/graphml";
     private static final String YED_NAMESPACE_URI = "http://www.yworks.com/xml/yed/3";
 
+    private static final String FOLDER_STYLE = "folder";
+    private static final String EDGE_STYLE = "edge";
+
+    private static final Insets BORDER_INSETS_OPEN = new Insets(15, 50, 50, 5);
+    private static final Insets BORDER_INSETS_CLOSED = new Insets(0, 0, 0, 0);
+
+    /**
+     * The pre-serialized node elements identified by the prefix of the yEd namespace, shared by all decorator instances.
+     */
+    private static final Map<String, NodeTemplate> NODE_TEMPLATES = new ConcurrentHashMap<>();
+
     private XMLStreamWriter writer;
 
+    private XMLFragmentWriter fragmentWriter;
+
+    private NodeTemplate nodeTemplate;
+
     @Override
     public void initialize(Result<?> result, SubGraph subGraph, XMLStreamWriter xmlWriter, File file, Map<String, Object> properties) {
         this.writer = xmlWriter;
+        this.fragmentWriter = xmlWriter instanceof XMLFragmentWriter ? (XMLFragmentWriter) xmlWriter : null;
+        this.nodeTemplate = null;
     }
 
     @Override
@@ -83,31 +117,46 @@ public class YedGraphMLDecorator implements GraphMLDecorator {
 
     @Override
     public void writeNodeAttributes(Node node) throws XMLStreamException {
+        writeFolderType(writer);
+    }
+
+    private static void writeFolderType(XMLStreamWriter writer) throws XMLStreamException {
         writer.writeAttribute("yfiles.foldertype", "folder");
     }
 
     @Override
     public void writeNodeElements(Node node) throws XMLStreamException {
+        if (fragmentWriter != null) {
+            getNodeTemplate().write(fragmentWriter, writer, node.getLabel());
+        } else {
+            writeNodeElements(writer, node.getLabel());
+        }
+    }
+
+    private NodeTemplate getNodeTemplate() throws XMLStreamException {
+        if (nodeTemplate == null) {
+            String prefix = writer.getNamespaceContext()
+                .getPrefix(Y_NAMESPACE_URI);
+            NodeTemplate template = NODE_TEMPLATES.get(prefix);
+            if (template == null) {
+                template = new NodeTemplate(prefix);
+                NODE_TEMPLATES.putIfAbsent(prefix, template);
+            }
+            nodeTemplate = template;
+        }
+        return nodeTemplate;
+    }
+
+    private static void writeNodeElements(XMLStreamWriter writer, String label) throws XMLStreamException {
         writer.writeStartElement("data");
         writer.writeAttribute("key", "d6");
         writer.writeStartElement(Y_NAMESPACE_URI, "ProxyAutoBoundsNode");
         writer.writeStartElement(Y_NAMESPACE_URI, "Realizers");
         writer.writeAttribute("active", "1");
 
-        String label = node.getLabel();
         if (label != null) {
-            Insets borderInsets = new Insets();
-            borderInsets.bottom = 15;
-            borderInsets.top = 5;
-            borderInsets.left = 50;
-            borderInsets.right = 50;
-
-            borderInsets.bottomF = 15F;
-            borderInsets.topF = 5F;
-            borderInsets.leftF = 50F;
-            borderInsets.rightF = 50F;
-            writeGroupNodeElement(writer, label, false, borderInsets);
-            writeGroupNodeElement(writer, label, true, new Insets());
+            writeGroupNodeElement(writer, label, false, BORDER_INSETS_OPEN);
+            writeGroupNodeElement(writer, label, true, BORDER_INSETS_CLOSED);
         }
 
         writer.writeEndElement();
@@ -128,11 +177,56 @@ public class YedGraphMLDecorator implements GraphMLDecorator {
     public void writeRelationshipElements(Relationship relationship) throws XMLStreamException {
     }
 
+    @Override
+    public String getNodeStyleClass(Set<String> labels) {
+        return FOLDER_STYLE;
+    }
+
+    @Override
+    public String getRelationshipStyleClass(String type) {
+        return EDGE_STYLE;
+    }
+
+    @Override
+    public void writeNodeStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+        writeFolderType(writer);
+    }
+
+    @Override
+    public boolean writeNodeStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+        // the elements contain the label of the node
+        return false;
+    }
+
+    @Override
+    public void writeRelationshipStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+    }
+
+    @Override
+    public boolean writeRelationshipStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+        return true;
+    }
+
+    @Override
+    public boolean isParallelizable() {
+        return true;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
     @Override
     public void close() {
     }
 
-    private void writeGroupNodeElement(XMLStreamWriter writer, String nodeLabel, boolean closed, Insets borderInsets) throws XMLStreamException {
+    private static void writeGroupNodeElement(XMLStreamWriter writer, String nodeLabel, boolean closed, Insets borderInsets) throws XMLStreamException {
         writer.writeStartElement(Y_NAMESPACE_URI, "GroupNode");
 
         writer.writeEmptyElement(Y_NAMESPACE_URI, "Fill");
@@ -197,16 +291,129 @@ public class YedGraphMLDecorator implements GraphMLDecorator {
         writer.writeEndElement();
     }
 
-    private class Insets {
-        private int bottom = 0;
-        private int left = 0;
-        private int right = 0;
-        private int top = 0;
+    private static class Insets {
+        private final int bottom;
+        private final int left;
+        private final int right;
+        private final int top;
+
+        private final float bottomF;
+        private final float leftF;
+        private final float rightF;
+        private final float topF;
+
+        private Insets(int bottom, int left, int right, int top) {
+            this.bottom = bottom;
+            this.left = left;
+            this.right = right;
+            this.top = top;
+            this.bottomF = bottom;
+            this.leftF = left;
+            this.rightF = right;
+            this.topF = top;
+        }
+    }
+
+    /**
+     * The node elements pre-serialized into fragments, only the label is written for each node.
+     *
+     * The fragments are rendered once using the StAX implementation of the JDK with a placeholder for the label, therefore the output is the same as
+     * the one written element by element.
+     */
+    private static class NodeTemplate {
+
+        private static final String LABEL_PLACEHOLDER = "\uE000label\uE000";
+
+        private static final String CONTAINER = "container";
+
+        private final byte[] withoutLabel;
+
+        private final byte[][] withLabel;
+
+        private NodeTemplate(String prefix) throws XMLStreamException {
+            this.withoutLabel = render(prefix, null);
+            byte[] template = render(prefix, LABEL_PLACEHOLDER);
+            byte[] placeholder = ("<![CDATA[" + LABEL_PLACEHOLDER + "]]>").getBytes(UTF_8);
+            List<byte[]> fragments = new ArrayList<>();
+            int start = 0;
+            int end;
+            while ((end = indexOf(template, placeholder, start)) >= 0) {
+                fragments.add(Arrays.copyOfRange(template, start, end));
+                start = end + placeholder.length;
+            }
+            fragments.add(Arrays.copyOfRange(template, start, template.length));
+            this.withLabel = fragments.toArray(new byte[0][]);
+        }
+
+        private void write(XMLFragmentWriter fragmentWriter, XMLStreamWriter writer, String label) throws XMLStreamException {
+            if (label == null) {
+                fragmentWriter.writeFragment(withoutLabel);
+            } else {
+                fragmentWriter.writeFragment(withLabel[0]);
+                for (int i = 1; i < withLabel.length; i++) {
+                    writer.writeCData(label);
+                    fragmentWriter.writeFragment(withLabel[i]);
+                }
+            }
+        }
+
+        private static byte[] render(String prefix, String label) throws XMLStreamException {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            XMLStreamWriter writer = XMLOutputFactory.newInstance()
+                .createXMLStreamWriter(outputStream, UTF_8.name());
+            writer.setNamespaceContext(new TemplateNamespaceContext(prefix));
+            writer.writeStartElement(CONTAINER);
+            writer.writeCharacters("");
+            writer.flush();
+            int start = outputStream.size();
+            writeNodeElements(writer, label);
+            writer.flush();
+            int end = outputStream.size();
+            writer.writeEndElement();
+            writer.close();
+            return Arrays.copyOfRange(outputStream.toByteArray(), start, end);
+        }
+
+        private static int indexOf(byte[] bytes, byte[] pattern, int fromIndex) {
+            for (int i = fromIndex; i <= bytes.length - pattern.length; i++) {
+                int j = 0;
+                while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Resolves the prefix of the yEd namespace for rendering templates.
+     */
+    private static class TemplateNamespaceContext implements NamespaceContext {
 
-        private float bottomF = 0.0F;
-        private float leftF = 0.0F;
-        private float rightF = 0.0F;
-        private float topF = 0.0F;
+        private final String prefix;
+
+        private TemplateNamespaceContext(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            return this.prefix.equals(prefix) ? Y_NAMESPACE_URI : XMLConstants.NULL_NS_URI;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return Y_NAMESPACE_URI.equals(namespaceURI) ? prefix : XMLConstants.DEFAULT_NS_PREFIX;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            return Collections.singletonList(getPrefix(namespaceURI))
+                .iterator();
+        }
     }
 
 }
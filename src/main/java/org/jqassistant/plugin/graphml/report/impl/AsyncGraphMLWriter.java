@@ -0,0 +1,140 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+/**
+ * Writes GraphML reports on a bounded pool of worker threads.
+ * <p>
+ * The number of reports which have been submitted but are not yet completely written is limited, {@link #submit(String, Task)} blocks the calling thread
+ * until a slot becomes available. This keeps the number of sub graphs retained on the heap bounded.
+ */
+class AsyncGraphMLWriter {
+
+    /**
+     * A write operation.
+     */
+    interface Task {
+
+        void run() throws IOException, XMLStreamException, ReportException;
+
+    }
+
+    private final ExecutorService executorService;
+
+    private final Semaphore pendingReports;
+
+    private final List<PendingReport> submittedReports = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param threads The number of worker threads.
+     * @param maxPendingReports The maximum number of reports which may be pending at the same time.
+     */
+    AsyncGraphMLWriter(int threads, int maxPendingReports) {
+        this.executorService = Executors.newFixedThreadPool(threads, new WriterThreadFactory());
+        this.pendingReports = new Semaphore(maxPendingReports);
+    }
+
+    /**
+     * Submit a write operation.
+     *
+     * @param description The description of the report used for error messages.
+     * @param task The {@link Task}.
+     * @throws ReportException If the calling thread is interrupted while waiting for a free slot.
+     */
+    void submit(String description, Task task) throws ReportException {
+        try {
+            pendingReports.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new ReportException("Interrupted while waiting for pending GraphML reports.", e);
+        }
+        Future<?> future;
+        try {
+            future = executorService.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pendingReports.release();
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            pendingReports.release();
+            throw e;
+        }
+        submittedReports.add(new PendingReport(description, future));
+    }
+
+    /**
+     * Wait until all submitted reports have been written and shut down the worker threads.
+     *
+     * @throws ReportException If at least one report could not be written, further failures are added as suppressed exceptions.
+     */
+    void await() throws ReportException {
+        ReportException reportException = null;
+        try {
+            for (PendingReport pendingReport : submittedReports) {
+                try {
+                    pendingReport.future.get();
+                } catch (ExecutionException e) {
+                    ReportException failure = new ReportException("Cannot write GraphML report for " + pendingReport.description + ".", e.getCause());
+                    if (reportException == null) {
+                        reportException = failure;
+                    } else {
+                        reportException.addSuppressed(failure);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                        .interrupt();
+                    throw new ReportException("Interrupted while waiting for pending GraphML reports.", e);
+                }
+            }
+        } finally {
+            submittedReports.clear();
+            executorService.shutdownNow();
+        }
+        if (reportException != null) {
+            throw reportException;
+        }
+    }
+
+    private static class PendingReport {
+
+        private final String description;
+
+        private final Future<?> future;
+
+        private PendingReport(String description, Future<?> future) {
+            this.description = description;
+            this.future = future;
+        }
+    }
+
+    private static class WriterThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "graphml-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
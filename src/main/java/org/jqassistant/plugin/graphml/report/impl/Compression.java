@@ -0,0 +1,90 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The supported compressions of GraphML files.
+ */
+enum Compression {
+
+    /**
+     * Uncompressed output.
+     */
+    NONE("none", "") {
+        @Override
+        OutputStream wrap(OutputStream outputStream, int level) {
+            return outputStream;
+        }
+    },
+
+    /**
+     * GZIP compressed output.
+     */
+    GZIP("gzip", ".gz") {
+        @Override
+        OutputStream wrap(OutputStream outputStream, int level) throws IOException {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+    },
+
+    /**
+     * GZIP compressed output, independent blocks are compressed in parallel and written as consecutive GZIP members.
+     */
+    PARALLEL_GZIP("parallel-gzip", ".gz") {
+        @Override
+        OutputStream wrap(OutputStream outputStream, int level) {
+            return new ParallelGzipOutputStream(outputStream, level);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+
+    private final String fileExtension;
+
+    Compression(String name, String fileExtension) {
+        this.name = name;
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Return the extension which is appended to the names of compressed files.
+     *
+     * @return The file extension.
+     */
+    String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Wrap an {@link OutputStream} with a compressing one.
+     *
+     * @param outputStream The {@link OutputStream}.
+     * @param level        The compression level (0-9, or -1 for the default level).
+     * @return The compressing {@link OutputStream}.
+     * @throws IOException If the stream cannot be created.
+     */
+    abstract OutputStream wrap(OutputStream outputStream, int level) throws IOException;
+
+    /**
+     * Resolve a {@link Compression} from its configured name.
+     *
+     * @param name The name.
+     * @return The {@link Compression}.
+     */
+    static Compression of(String name) {
+        for (Compression compression : values()) {
+            if (compression.name.equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported GraphML compression '" + name + "', supported values are none, gzip and parallel-gzip.");
+    }
+}
@@ -0,0 +1,73 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free union-find (disjoint set) structure over the elements <code>0..size-1</code> which allows concurrent invocations of
+ * {@link #union(int, int)}.
+ * <p>
+ * Roots are always linked to the root with the lower index, therefore the representative of a set is its smallest element regardless of the order
+ * of the unions. Paths are shortened by path halving.
+ */
+class ConcurrentUnionFind {
+
+    private final AtomicIntegerArray parents;
+
+    /**
+     * Constructor.
+     *
+     * @param size The number of elements, each element initially forms its own set.
+     */
+    ConcurrentUnionFind(int size) {
+        parents = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            parents.set(i, i);
+        }
+    }
+
+    /**
+     * Return the representative of the set containing an element.
+     *
+     * @param element The element.
+     * @return The representative.
+     */
+    int find(int element) {
+        int current = element;
+        int parent;
+        while ((parent = parents.get(current)) != current) {
+            int grandParent = parents.get(parent);
+            if (grandParent != parent) {
+                parents.compareAndSet(current, parent, grandParent);
+            }
+            current = grandParent;
+        }
+        return current;
+    }
+
+    /**
+     * Merge the sets containing two elements.
+     *
+     * @param element1 The first element.
+     * @param element2 The second element.
+     */
+    void union(int element1, int element2) {
+        int root1 = element1;
+        int root2 = element2;
+        while (true) {
+            root1 = find(root1);
+            root2 = find(root2);
+            if (root1 == root2) {
+                return;
+            }
+            if (root1 < root2) {
+                int root = root1;
+                root1 = root2;
+                root2 = root;
+            }
+            // root1 has the higher index and is linked to root2, fails if it has been linked concurrently
+            if (parents.compareAndSet(root1, root1, root2)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An {@link OutputStream} writing to a {@link FileChannel} through a direct {@link ByteBuffer}, i.e. the data is copied once from the heap before
+ * it is passed to the operating system.
+ * <p>
+ * Allocating direct buffers is expensive, therefore the buffer of a closed stream is returned to a small pool shared by all threads and reused by
+ * the next stream. Buffers exceeding the capacity of the pool are left to the garbage collector. Data written in blocks which are at least as large as the buffer is passed to the channel directly. The file is truncated to the
+ * written length when the stream is closed.
+ */
+class FileChannelOutputStream extends OutputStream {
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum number of released buffers retained for reuse.
+     */
+    static final int MAX_RELEASED_BUFFERS = 4;
+
+    private static final BlockingQueue<ByteBuffer> RELEASED_BUFFERS = new ArrayBlockingQueue<>(MAX_RELEASED_BUFFERS);
+
+    private final FileChannel channel;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param file The file, it is created or truncated if it already exists.
+     * @throws IOException If the file cannot be opened.
+     */
+    FileChannelOutputStream(File file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file       The file, it is created or truncated if it already exists.
+     * @param bufferSize The size of the buffer.
+     * @throws IOException If the file cannot be opened.
+     */
+    FileChannelOutputStream(File file, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING);
+        this.buffer = acquireBuffer(bufferSize);
+    }
+
+    private static ByteBuffer acquireBuffer(int bufferSize) {
+        ByteBuffer releasedBuffer = RELEASED_BUFFERS.poll();
+        if (releasedBuffer != null && releasedBuffer.capacity() == bufferSize) {
+            releasedBuffer.clear();
+            return releasedBuffer;
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len >= buffer.capacity()) {
+            drain();
+            writeFully(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        if (len > buffer.remaining()) {
+            drain();
+        }
+        buffer.put(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            drain();
+            channel.truncate(channel.position());
+        } finally {
+            RELEASED_BUFFERS.offer(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("The stream is closed.");
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
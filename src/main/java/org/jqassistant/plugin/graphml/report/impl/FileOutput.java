@@ -0,0 +1,74 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The supported ways of writing report files to the file system.
+ */
+enum FileOutput {
+
+    /**
+     * A {@link FileOutputStream}.
+     */
+    STREAM("stream", false) {
+        @Override
+        OutputStream open(File file) throws IOException {
+            return new FileOutputStream(file);
+        }
+    },
+
+    /**
+     * A {@link FileChannelOutputStream} using a large direct buffer.
+     */
+    CHANNEL("channel", true) {
+        @Override
+        OutputStream open(File file) throws IOException {
+            return new FileChannelOutputStream(file);
+        }
+    };
+
+    private final String name;
+
+    private final boolean buffered;
+
+    FileOutput(String name, boolean buffered) {
+        this.name = name;
+        this.buffered = buffered;
+    }
+
+    /**
+     * Determine if the {@link OutputStream}s opened by {@link #open(File)} are buffered, i.e. they do not need to be wrapped by a buffering stream.
+     *
+     * @return <code>true</code> if the streams are buffered.
+     */
+    boolean isBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Open an {@link OutputStream} for writing a file, an existing file is truncated.
+     *
+     * @param file The file.
+     * @return The {@link OutputStream}.
+     * @throws IOException If the file cannot be opened.
+     */
+    abstract OutputStream open(File file) throws IOException;
+
+    /**
+     * Resolve a {@link FileOutput} from its configured name.
+     *
+     * @param name The name.
+     * @return The {@link FileOutput}.
+     */
+    static FileOutput of(String name) {
+        for (FileOutput fileOutput : values()) {
+            if (fileOutput.name.equalsIgnoreCase(name)) {
+                return fileOutput;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported file output '" + name + "', supported values are stream and channel.");
+    }
+}
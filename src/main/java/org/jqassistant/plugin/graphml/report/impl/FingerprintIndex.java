@@ -0,0 +1,107 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent index of the fingerprints of written reports identified by their file names, it is stored in the report directory.
+ * <p>
+ * A report is considered unchanged if its fingerprint matches and the file still exists with the size it had when it was written.
+ */
+class FingerprintIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintIndex.class);
+
+    static final String FILE_NAME = ".graphml-fingerprints";
+
+    private final File indexFile;
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    private FingerprintIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Load the index from a report directory, an empty index is returned if it does not exist or cannot be read.
+     *
+     * @param reportDirectory The report directory.
+     * @return The {@link FingerprintIndex}.
+     */
+    static FingerprintIndex load(File reportDirectory) {
+        FingerprintIndex fingerprintIndex = new FingerprintIndex(new File(reportDirectory, FILE_NAME));
+        if (fingerprintIndex.indexFile.exists()) {
+            Properties properties = new Properties();
+            try (InputStream inputStream = Files.newInputStream(fingerprintIndex.indexFile.toPath())) {
+                properties.load(inputStream);
+                for (String fileName : properties.stringPropertyNames()) {
+                    fingerprintIndex.entries.put(fileName, properties.getProperty(fileName));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Cannot read GraphML fingerprint index {}, all reports will be written.", fingerprintIndex.indexFile.getAbsolutePath(), e);
+                fingerprintIndex.entries.clear();
+            }
+        }
+        return fingerprintIndex;
+    }
+
+    /**
+     * Determine if a report file is up to date.
+     *
+     * @param file        The report file.
+     * @param fingerprint The fingerprint of the report.
+     * @return <code>true</code> if the file has been written for the same fingerprint and is unmodified.
+     */
+    boolean isUnchanged(File file, long fingerprint) {
+        String entry = entries.get(file.getName());
+        return entry != null && file.isFile() && entry.equals(entry(fingerprint, file.length()));
+    }
+
+    /**
+     * Remove the entry of a report file, e.g. before it is written.
+     *
+     * @param file The report file.
+     */
+    void remove(File file) {
+        entries.remove(file.getName());
+    }
+
+    /**
+     * Record the fingerprint of a written report file.
+     *
+     * @param file        The report file.
+     * @param fingerprint The fingerprint of the report.
+     */
+    void put(File file, long fingerprint) {
+        entries.put(file.getName(), entry(fingerprint, file.length()));
+    }
+
+    /**
+     * Store the index in the report directory.
+     *
+     * @throws IOException If the index cannot be written.
+     */
+    void store() throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        File tempFile = new File(indexFile.getParentFile(), FILE_NAME + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(outputStream, "Fingerprints of GraphML reports");
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String entry(long fingerprint, long length) {
+        return Long.toHexString(fingerprint) + ":" + length;
+    }
+}
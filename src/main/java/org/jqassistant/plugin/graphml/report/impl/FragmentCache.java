@@ -0,0 +1,246 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the serialized form of nodes and relationships across the reports of a run, i.e. an element contained in the results of several rules is
+ * only serialized and decorated once.
+ * <p>
+ * A fragment is identified by the id of the element, the decorator class and the {@link PropertyProjection.Filter} applied to the element. It is
+ * only reused if the fingerprint of the element (see {@link GraphFingerprint}) is unchanged, e.g. nodes created by an aggregation share their ids
+ * with other nodes. The size of the cache is bounded by a byte budget. Instances are thread-safe, looking up a fragment does not lock, i.e. the chunk
+ * workers of a parallel write do not contend. Fragments are evicted in the order they have been added, but a fragment which has been used since it
+ * was added or last visited by the eviction gets a second chance, i.e. it is evicted approximately least recently used.
+ */
+class FragmentCache {
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The estimated memory used by an entry in addition to the bytes of its fragment.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+
+    private final Map<Key, Fragment> fragments = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the cached fragments in the order of eviction.
+     */
+    private final Queue<Key> evictionQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes The maximum number of bytes of the cached fragments.
+     */
+    FragmentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Create the key of a node.
+     *
+     * @param decoratorClass The class of the decorator.
+     * @param filter         The {@link PropertyProjection.Filter} of the node.
+     * @param id             The id of the node.
+     * @return The key.
+     */
+    static Key nodeKey(Class<?> decoratorClass, PropertyProjection.Filter filter, long id) {
+        return new Key(decoratorClass, filter, false, id);
+    }
+
+    /**
+     * Create the key of a relationship.
+     *
+     * @param decoratorClass The class of the decorator.
+     * @param filter         The {@link PropertyProjection.Filter} of the relationship.
+     * @param id             The id of the relationship.
+     * @return The key.
+     */
+    static Key relationshipKey(Class<?> decoratorClass, PropertyProjection.Filter filter, long id) {
+        return new Key(decoratorClass, filter, true, id);
+    }
+
+    /**
+     * Return a cached fragment.
+     *
+     * @param key         The key.
+     * @param fingerprint The fingerprint of the element.
+     * @param metrics     The {@link ReportMetrics} counting the hits and misses, may be <code>null</code>.
+     * @return The fragment or <code>null</code> if it is not cached, an empty fragment represents an element which has been filtered by the decorator.
+     */
+    byte[] get(Key key, long fingerprint, ReportMetrics metrics) {
+        Fragment fragment = fragments.get(key);
+        if (fragment != null && fragment.fingerprint == fingerprint) {
+            // a racy hint for the eviction, it is only written if not yet set to avoid invalidating the cache line on every hit
+            if (!fragment.used) {
+                fragment.used = true;
+            }
+            hits.increment();
+            if (metrics != null) {
+                metrics.add(ReportMetrics.Counter.FRAGMENT_CACHE_HITS, 1);
+            }
+            return fragment.bytes;
+        }
+        misses.increment();
+        if (metrics != null) {
+            metrics.add(ReportMetrics.Counter.FRAGMENT_CACHE_MISSES, 1);
+        }
+        return null;
+    }
+
+    /**
+     * Add a fragment, fragments are evicted if the byte budget is exceeded.
+     *
+     * @param key         The key.
+     * @param fingerprint The fingerprint of the element.
+     * @param fragment    The fragment.
+     */
+    void put(Key key, long fingerprint, byte[] fragment) {
+        Fragment added = new Fragment(fingerprint, fragment);
+        if (added.size() > maxBytes) {
+            return;
+        }
+        Fragment previous = fragments.put(key, added);
+        if (previous == null) {
+            evictionQueue.add(key);
+        } else {
+            bytes.addAndGet(-previous.size());
+        }
+        if (bytes.addAndGet(added.size()) > maxBytes) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        Key key;
+        while (bytes.get() > maxBytes && (key = evictionQueue.poll()) != null) {
+            Fragment fragment = fragments.get(key);
+            if (fragment == null) {
+                continue;
+            }
+            if (fragment.used) {
+                fragment.used = false;
+                evictionQueue.add(key);
+            } else if (fragments.remove(key, fragment)) {
+                bytes.addAndGet(-fragment.size());
+            } else {
+                // replaced concurrently, the key is still cached
+                evictionQueue.add(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all fragments and reset the statistics, e.g. at the end of a run.
+     */
+    synchronized void clear() {
+        fragments.clear();
+        evictionQueue.clear();
+        bytes.set(0);
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Return the estimated number of bytes of the cached fragments.
+     *
+     * @return The number of bytes.
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Return the number of requested fragments which have been cached.
+     *
+     * @return The number of hits.
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of requested fragments which have not been cached.
+     *
+     * @return The number of misses.
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The key of a fragment.
+     */
+    static final class Key {
+
+        private final Class<?> decoratorClass;
+
+        private final PropertyProjection.Filter filter;
+
+        private final boolean relationship;
+
+        private final long id;
+
+        private final int hash;
+
+        private Key(Class<?> decoratorClass, PropertyProjection.Filter filter, boolean relationship, long id) {
+            this.decoratorClass = decoratorClass;
+            this.filter = filter;
+            this.relationship = relationship;
+            this.id = id;
+            this.hash = 31 * (31 * (31 * decoratorClass.hashCode() + filter.hashCode()) + Boolean.hashCode(relationship)) + Long.hashCode(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return id == key.id && relationship == key.relationship && decoratorClass == key.decoratorClass && filter.equals(key.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Fragment {
+
+        private final long fingerprint;
+
+        private final byte[] bytes;
+
+        /**
+         * Set if the fragment has been used since it has been added or visited by the eviction.
+         */
+        private boolean used;
+
+        private Fragment(long fingerprint, byte[] bytes) {
+            this.fingerprint = fingerprint;
+            this.bytes = bytes;
+        }
+
+        private long size() {
+            return (long) bytes.length + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses the nodes of a GraphML report into super nodes as declared by the report properties of a rule, e.g.
+ *
+ * <pre>
+ * graphml.report.aggregateBy=property:fqn
+ * graphml.report.aggregateBy.depth=3
+ * </pre>
+ * <p>
+ * Nodes are grouped by
+ * <ul>
+ * <li><code>label</code>: their label combination, e.g. <code>:Java:Type:Class</code></li>
+ * <li><code>label:Artifact,Package</code>: the first of the given labels they carry</li>
+ * <li><code>property:fqn</code>: the value of a property, optionally truncated to the first <code>depth</code> segments separated by
+ * <code>separator</code> (default <code>.</code>)</li>
+ * </ul>
+ * Nodes not matching any of the given labels or without the property are grouped as {@link #OTHER}. Each group is written as a node carrying the
+ * number of its members, all relationships between two groups are merged into one edge carrying the total number and the number per relationship
+ * type. The aggregation is done in one pass over the nodes and one over the relationships using primitive counters, the members are not
+ * retained.
+ */
+class GraphAggregation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphAggregation.class);
+
+    static final String GRAPHML_AGGREGATE_BY = "graphml.report.aggregateBy";
+    static final String GRAPHML_AGGREGATE_BY_DEPTH = "graphml.report.aggregateBy.depth";
+    static final String GRAPHML_AGGREGATE_BY_SEPARATOR = "graphml.report.aggregateBy.separator";
+
+    static final String AGGREGATE_LABEL = "Aggregate";
+    static final String AGGREGATED_TYPE = "AGGREGATED";
+    static final String OTHER = "(other)";
+
+    static final String GROUP = "group";
+    static final String MEMBERS = "members";
+    static final String WEIGHT = "weight";
+
+    static final String AGGREGATED_BY = "aggregatedBy";
+    static final String MEMBER_NODES = "memberNodes";
+    static final String MEMBER_EDGES = "memberEdges";
+
+    private static final String LABEL = "label";
+    private static final String PROPERTY = "property";
+
+    private final String aggregateBy;
+
+    private final List<String> labels;
+
+    private final String property;
+
+    private final int depth;
+
+    private final String separator;
+
+    private GraphAggregation(String aggregateBy, List<String> labels, String property, int depth, String separator) {
+        this.aggregateBy = aggregateBy;
+        this.labels = labels;
+        this.property = property;
+        this.depth = depth;
+        this.separator = separator;
+    }
+
+    /**
+     * Create the {@link GraphAggregation} of a rule.
+     *
+     * @param reportProperties The report properties of the rule.
+     * @return The {@link GraphAggregation} or <code>null</code> if no aggregation is declared.
+     */
+    static GraphAggregation of(Properties reportProperties) {
+        String value = reportProperties.getProperty(GRAPHML_AGGREGATE_BY);
+        if (value == null) {
+            return null;
+        }
+        String aggregateBy = value.trim();
+        int depth = getDepth(reportProperties);
+        String separator = reportProperties.getProperty(GRAPHML_AGGREGATE_BY_SEPARATOR, ".");
+        int colon = aggregateBy.indexOf(':');
+        String mode = colon < 0 ? aggregateBy : aggregateBy.substring(0, colon)
+            .trim();
+        String argument = colon < 0 ? null : aggregateBy.substring(colon + 1)
+            .trim();
+        if (LABEL.equals(mode)) {
+            List<String> labels = new ArrayList<>();
+            if (argument != null) {
+                for (String label : argument.split(",")) {
+                    if (!label.isBlank()) {
+                        labels.add(label.trim());
+                    }
+                }
+            }
+            return new GraphAggregation(aggregateBy, labels, null, depth, separator);
+        } else if (PROPERTY.equals(mode) && argument != null && !argument.isEmpty()) {
+            return new GraphAggregation(aggregateBy, null, argument, depth, separator);
+        }
+        throw new IllegalArgumentException(
+            "The value of " + GRAPHML_AGGREGATE_BY + " must be 'label', 'label:<Label>,...' or 'property:<name>' but is '" + value + "'");
+    }
+
+    private static int getDepth(Properties reportProperties) {
+        String value = reportProperties.getProperty(GRAPHML_AGGREGATE_BY_DEPTH);
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        int depth = Integer.parseInt(value.trim());
+        if (depth < 1) {
+            throw new IllegalArgumentException("The value of " + GRAPHML_AGGREGATE_BY_DEPTH + " must be greater than 0 but is " + depth);
+        }
+        return depth;
+    }
+
+    /**
+     * Aggregate a graph.
+     *
+     * @param graph The graph.
+     * @return The {@link Aggregate}.
+     */
+    Aggregate apply(SubGraph graph) {
+        LabelSetCache labelSetCache = new LabelSetCache();
+        Map<String, Integer> groupIndexes = new HashMap<>();
+        List<String> groups = new ArrayList<>();
+        long[] members = new long[16];
+        // the group of each node
+        LongIntHashMap nodeGroups = new LongIntHashMap(graph.getNodes()
+            .size(), -1);
+        Deque<SubGraph> subGraphs = new ArrayDeque<>();
+        subGraphs.push(graph);
+        while (!subGraphs.isEmpty()) {
+            SubGraph subGraph = subGraphs.pop();
+            if (subGraph.getParent() != null) {
+                members = addMember(subGraph.getParent(), nodeGroups, labelSetCache, groupIndexes, groups, members);
+            }
+            for (Node node : subGraph.getNodes()
+                .values()) {
+                members = addMember(node, nodeGroups, labelSetCache, groupIndexes, groups, members);
+            }
+            for (SubGraph nested : subGraph.getSubGraphs()
+                .values()) {
+                subGraphs.push(nested);
+            }
+        }
+
+        // the edges between groups identified by the pair of group indexes, the counts per type by the pair of edge and type index
+        LongIntHashMap edgeIndexes = new LongIntHashMap(groups.size(), -1);
+        List<int[]> edges = new ArrayList<>();
+        long[] weights = new long[16];
+        Map<String, Integer> typeIndexes = new HashMap<>();
+        List<String> types = new ArrayList<>();
+        LongIntHashMap typeCountIndexes = new LongIntHashMap(groups.size(), -1);
+        long[] typeCounts = new long[16];
+        long memberEdges = 0;
+        for (Relationship relationship : GraphIndex.of(graph, false, false)
+            .getRelationships()) {
+            int start = nodeGroups.get(relationship.getStartNode()
+                .getId());
+            int end = nodeGroups.get(relationship.getEndNode()
+                .getId());
+            if (start < 0 || end < 0) {
+                continue;
+            }
+            memberEdges++;
+            long edgeKey = ((long) start << 32) | end;
+            int edgeIndex = edgeIndexes.get(edgeKey);
+            if (edgeIndex < 0) {
+                edgeIndex = edges.size();
+                edgeIndexes.putIfAbsent(edgeKey, edgeIndex);
+                edges.add(new int[] { start, end });
+                weights = ensureCapacity(weights, edgeIndex);
+            }
+            weights[edgeIndex]++;
+            int typeIndex = typeIndexes.computeIfAbsent(relationship.getType(), type -> {
+                types.add(type);
+                return types.size() - 1;
+            });
+            long typeCountKey = ((long) edgeIndex << 32) | typeIndex;
+            int typeCountIndex = typeCountIndexes.get(typeCountKey);
+            if (typeCountIndex < 0) {
+                typeCountIndex = typeCountIndexes.size();
+                typeCountIndexes.putIfAbsent(typeCountKey, typeCountIndex);
+                typeCounts = ensureCapacity(typeCounts, typeCountIndex);
+            }
+            typeCounts[typeCountIndex]++;
+        }
+
+        SubGraph aggregatedGraph = new SubGraph();
+        aggregatedGraph.setId(graph.getId());
+        aggregatedGraph.setLabel(graph.getLabel());
+        List<Node> groupNodes = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            Node groupNode = new Node();
+            groupNode.setId(i + 1L);
+            groupNode.setLabel(groups.get(i));
+            groupNode.getLabels()
+                .add(AGGREGATE_LABEL);
+            groupNode.getProperties()
+                .put(GROUP, groups.get(i));
+            groupNode.getProperties()
+                .put(MEMBERS, members[i]);
+            groupNodes.add(groupNode);
+            aggregatedGraph.getNodes()
+                .put(groupNode.getId(), groupNode);
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            Relationship edge = new Relationship();
+            edge.setId(i + 1L);
+            edge.setStartNode(groupNodes.get(edges.get(i)[0]));
+            edge.setEndNode(groupNodes.get(edges.get(i)[1]));
+            edge.getProperties()
+                .put(WEIGHT, weights[i]);
+            String edgeType = null;
+            for (int typeIndex = 0; typeIndex < types.size(); typeIndex++) {
+                int typeCountIndex = typeCountIndexes.get(((long) i << 32) | typeIndex);
+                if (typeCountIndex >= 0) {
+                    String type = types.get(typeIndex);
+                    edge.getProperties()
+                        .put(type, typeCounts[typeCountIndex]);
+                    edgeType = edgeType == null ? type : AGGREGATED_TYPE;
+                }
+            }
+            edge.setType(edgeType);
+            aggregatedGraph.getRelationships()
+                .put(edge.getId(), edge);
+        }
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put(AGGREGATED_BY, aggregateBy);
+        graphData.put(MEMBER_NODES, (long) nodeGroups.size());
+        graphData.put(MEMBER_EDGES, memberEdges);
+        LOGGER.info("Aggregated GraphML report from {} nodes and {} edges to {} nodes and {} edges.", nodeGroups.size(), memberEdges, groups.size(),
+            edges.size());
+        return new Aggregate(aggregatedGraph, graphData);
+    }
+
+    private long[] addMember(Node node, LongIntHashMap nodeGroups, LabelSetCache labelSetCache, Map<String, Integer> groupIndexes, List<String> groups,
+        long[] members) {
+        if (nodeGroups.get(node.getId()) >= 0) {
+            return members;
+        }
+        int groupIndex = groupIndexes.computeIfAbsent(getGroup(node, labelSetCache), group -> {
+            groups.add(group);
+            return groups.size() - 1;
+        });
+        nodeGroups.putIfAbsent(node.getId(), groupIndex);
+        long[] counters = ensureCapacity(members, groupIndex);
+        counters[groupIndex]++;
+        return counters;
+    }
+
+    private String getGroup(Node node, LabelSetCache labelSetCache) {
+        if (labels != null) {
+            if (labels.isEmpty()) {
+                return labelSetCache.get(node)
+                    .getLabelsString();
+            }
+            for (String label : labels) {
+                if (node.getLabels()
+                    .contains(label)) {
+                    return label;
+                }
+            }
+            return OTHER;
+        }
+        Object value = node.getProperties()
+            .get(property);
+        if (value == null) {
+            return OTHER;
+        }
+        String group = value.toString();
+        if (depth == Integer.MAX_VALUE || separator.isEmpty()) {
+            return group;
+        }
+        int end = -separator.length();
+        for (int segment = 0; segment < depth; segment++) {
+            end = group.indexOf(separator, end + separator.length());
+            if (end < 0) {
+                return group;
+            }
+        }
+        return group.substring(0, end);
+    }
+
+    private static long[] ensureCapacity(long[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, Math.max(index + 1, array.length << 1));
+    }
+
+    /**
+     * The result of an aggregation.
+     */
+    static class Aggregate {
+
+        private final SubGraph graph;
+
+        private final Map<String, Object> graphData;
+
+        private Aggregate(SubGraph graph, Map<String, Object> graphData) {
+            this.graph = graph;
+            this.graphData = graphData;
+        }
+
+        /**
+         * Return the graph containing the groups and the edges between them.
+         *
+         * @return The graph.
+         */
+        SubGraph getGraph() {
+            return graph;
+        }
+
+        /**
+         * Return the data describing the aggregation which is written for the graph.
+         *
+         * @return The graph data.
+         */
+        Map<String, Object> getGraphData() {
+            return graphData;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+/**
+ * Computes a 64 bit fingerprint of everything that determines the content of a GraphML report, i.e. the {@link SubGraph} (ids, labels, properties and
+ * structure), the data of the graph, the report properties of the rule and the configuration of the plugin including the decorator.
+ * <p>
+ * The elements are hashed in the order in which they are written, therefore equal fingerprints imply equal files unless a hash collision occurs. The
+ * fingerprint is not a cryptographic hash.
+ */
+class GraphFingerprint {
+
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    private static final long NULL = 0x6a09e667f3bcc909L;
+
+    /**
+     * The hashes of the names of value classes, the class is part of the fingerprint as it determines the GraphML type of a key.
+     */
+    private static final ClassValue<Long> CLASS_HASHES = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            GraphFingerprint fingerprint = new GraphFingerprint();
+            fingerprint.update(type.getName());
+            return fingerprint.hash;
+        }
+    };
+
+    private long hash = 0xcbf29ce484222325L;
+
+    private GraphFingerprint() {
+    }
+
+    /**
+     * Compute the fingerprint of a report.
+     *
+     * @param graph            The {@link SubGraph}.
+     * @param graphData        The data of the graph, e.g. the number of dropped elements if the graph has been truncated.
+     * @param ruleId           The id of the rule.
+     * @param reportProperties The report properties of the rule.
+     * @param decoratorClass   The class name of the default decorator.
+     * @param properties       The properties of the plugin configuration.
+     * @return The fingerprint.
+     */
+    static long of(SubGraph graph, Map<String, Object> graphData, String ruleId, Properties reportProperties, String decoratorClass,
+        Map<String, Object> properties) {
+        GraphFingerprint fingerprint = new GraphFingerprint();
+        fingerprint.update(GraphFingerprint.class.getPackage()
+            .getImplementationVersion());
+        fingerprint.update(ruleId);
+        fingerprint.update(decoratorClass);
+        // configurations are hashed in the order of their keys as their iteration order is not defined
+        fingerprint.update(new TreeMap<>(reportProperties));
+        fingerprint.update(new TreeMap<>(properties));
+        // the graph data is written in its iteration order
+        fingerprint.update(graphData);
+        SubGraphTraversal.traverse(graph, fingerprint::update);
+        return LongHashSet.mix(fingerprint.hash);
+    }
+
+    /**
+     * Compute the fingerprint of a node, i.e. its id, label, labels and properties.
+     *
+     * @param node The {@link Node}.
+     * @return The fingerprint.
+     */
+    static long of(Node node) {
+        GraphFingerprint fingerprint = new GraphFingerprint();
+        fingerprint.update(node);
+        return LongHashSet.mix(fingerprint.hash);
+    }
+
+    /**
+     * Compute the fingerprint of a relationship, i.e. its id, type, the ids of its nodes and its properties.
+     *
+     * @param relationship The {@link Relationship}.
+     * @return The fingerprint.
+     */
+    static long of(Relationship relationship) {
+        GraphFingerprint fingerprint = new GraphFingerprint();
+        fingerprint.update(relationship);
+        return LongHashSet.mix(fingerprint.hash);
+    }
+
+    private void update(SubGraph graph) {
+        update(graph.getId());
+        Node parent = graph.getParent();
+        if (parent != null) {
+            update(parent);
+        } else {
+            update(NULL);
+        }
+        update(graph.getNodes()
+            .size());
+        for (Node node : graph.getNodes()
+            .values()) {
+            update(node);
+        }
+        update(graph.getRelationships()
+            .size());
+        for (Relationship relationship : graph.getRelationships()
+            .values()) {
+            update(relationship);
+        }
+        // the nested sub graphs are hashed by the traversal after their count
+        update(graph.getSubGraphs()
+            .size());
+    }
+
+    private void update(Node node) {
+        update(node.getId());
+        update(node.getLabel());
+        update(node.getLabels()
+            .size());
+        for (String label : node.getLabels()) {
+            update(label);
+        }
+        updateProperties(node);
+    }
+
+    private void update(Relationship relationship) {
+        update(relationship.getId());
+        update(relationship.getType());
+        update(relationship.getStartNode()
+            .getId());
+        update(relationship.getEndNode()
+            .getId());
+        updateProperties(relationship);
+    }
+
+    private void updateProperties(PropertyContainer propertyContainer) {
+        update(propertyContainer.getProperties());
+    }
+
+    private void update(Map<?, ?> map) {
+        update(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            updateValue(entry.getKey());
+            updateValue(entry.getValue());
+        }
+    }
+
+    private void updateValue(Object value) {
+        if (value == null) {
+            update(NULL);
+        } else if (value.getClass()
+            .isArray()) {
+            int length = Array.getLength(value);
+            update(length);
+            for (int i = 0; i < length; i++) {
+                updateValue(Array.get(value, i));
+            }
+        } else {
+            update(CLASS_HASHES.get(value.getClass()));
+            // numbers and booleans are hashed without creating their string representation
+            if (value instanceof String) {
+                update((String) value);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                update(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                update(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof Boolean) {
+                update((Boolean) value ? 1 : 0);
+            } else {
+                update(value.toString());
+            }
+        }
+    }
+
+    private void update(String value) {
+        if (value == null) {
+            update(NULL);
+            return;
+        }
+        int length = value.length();
+        update(length);
+        long chunk = 0;
+        for (int i = 0; i < length; i++) {
+            chunk = (chunk << 16) | value.charAt(i);
+            if ((i & 3) == 3) {
+                update(chunk);
+                chunk = 0;
+            }
+        }
+        if ((length & 3) != 0) {
+            update(chunk);
+        }
+    }
+
+    private void update(long value) {
+        hash = (Long.rotateLeft(hash, 23) ^ value) * MULTIPLIER;
+    }
+}
@@ -0,0 +1,241 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * A compact index of a {@link SubGraph} tree which is built by a single traversal.
+ * <p>
+ * The index does not copy nodes or relationships, it only holds the ids of all contained nodes (including parents of nested sub graphs), references to
+ * the relationships (de-duplicated by their ids), the key types of the projected node and relationship properties and optionally their
+ * {@link KeyDefaults}.
+ */
+class GraphIndex {
+
+    private static final String LABELS = "labels";
+
+    private final LongHashSet nodeIds = new LongHashSet();
+
+    private final LongHashSet relationshipIds = new LongHashSet();
+
+    private final List<Relationship> relationships = new ArrayList<>();
+
+    private final Map<String, Class<?>> nodeKeyTypes = new HashMap<>();
+
+    private final Map<String, Class<?>> relationshipKeyTypes = new HashMap<>();
+
+    private final PropertyProjection projection;
+
+    private final boolean inferNodeKeyTypes;
+
+    private final boolean inferRelationshipKeyTypes;
+
+    private final KeyDefaults nodeKeyDefaults;
+
+    private final KeyDefaults relationshipKeyDefaults;
+
+    private GraphIndex(PropertyProjection projection, boolean inferNodeKeyTypes, boolean inferRelationshipKeyTypes, boolean keyDefaults) {
+        this.projection = projection;
+        this.inferNodeKeyTypes = inferNodeKeyTypes;
+        this.inferRelationshipKeyTypes = inferRelationshipKeyTypes;
+        this.nodeKeyDefaults = inferNodeKeyTypes && keyDefaults ? new KeyDefaults() : null;
+        this.relationshipKeyDefaults = inferRelationshipKeyTypes && keyDefaults ? new KeyDefaults() : null;
+        nodeKeyTypes.put(LABELS, String.class);
+    }
+
+    /**
+     * Build the index for a {@link SubGraph} including all nested sub graphs.
+     *
+     * @param graph The {@link SubGraph}.
+     * @return The {@link GraphIndex}.
+     */
+    static GraphIndex of(SubGraph graph) {
+        return of(graph, true, true);
+    }
+
+    /**
+     * Build the index for a {@link SubGraph} including all nested sub graphs.
+     *
+     * @param graph                     The {@link SubGraph}.
+     * @param inferNodeKeyTypes         If <code>true</code> the key types of node properties are inferred.
+     * @param inferRelationshipKeyTypes If <code>true</code> the key types of relationship properties are inferred.
+     * @return The {@link GraphIndex}.
+     */
+    static GraphIndex of(SubGraph graph, boolean inferNodeKeyTypes, boolean inferRelationshipKeyTypes) {
+        return of(graph, PropertyProjection.all(), inferNodeKeyTypes, inferRelationshipKeyTypes);
+    }
+
+    /**
+     * Build the index for a {@link SubGraph} including all nested sub graphs.
+     *
+     * @param graph                     The {@link SubGraph}.
+     * @param projection                The {@link PropertyProjection} restricting the inferred keys.
+     * @param inferNodeKeyTypes         If <code>true</code> the key types of node properties are inferred.
+     * @param inferRelationshipKeyTypes If <code>true</code> the key types of relationship properties are inferred.
+     * @return The {@link GraphIndex}.
+     */
+    static GraphIndex of(SubGraph graph, PropertyProjection projection, boolean inferNodeKeyTypes, boolean inferRelationshipKeyTypes) {
+        return of(graph, new GraphIndex(projection, inferNodeKeyTypes, inferRelationshipKeyTypes, false));
+    }
+
+    /**
+     * Build the index for a {@link SubGraph} including all nested sub graphs, the keys which are not declared by the {@link KeySchema} are inferred.
+     *
+     * @param graph     The {@link SubGraph}.
+     * @param keySchema The {@link KeySchema}.
+     * @return The {@link GraphIndex}.
+     */
+    static GraphIndex of(SubGraph graph, KeySchema keySchema) {
+        return of(graph, new GraphIndex(keySchema.getProjection(), !keySchema.hasNodeKeys(), !keySchema.hasEdgeKeys(), keySchema.isKeyDefaults()));
+    }
+
+    private static GraphIndex of(SubGraph graph, GraphIndex graphIndex) {
+        SubGraphTraversal.traverse(graph, graphIndex::add);
+        return graphIndex;
+    }
+
+    private void add(SubGraph graph) {
+        Node parent = graph.getParent();
+        if (parent != null) {
+            addNode(parent);
+        }
+        for (Node node : graph.getNodes()
+            .values()) {
+            addNode(node);
+        }
+        for (Relationship relationship : graph.getRelationships()
+            .values()) {
+            if (relationshipIds.add(relationship.getId())) {
+                relationships.add(relationship);
+                if (inferRelationshipKeyTypes) {
+                    PropertyProjection.Filter filter = projection.forRelationship(relationship.getType());
+                    updateKeyTypes(relationshipKeyTypes, relationship, filter);
+                    if (relationshipKeyDefaults != null) {
+                        relationshipKeyDefaults.add(relationship, filter);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addNode(Node node) {
+        if (nodeIds.add(node.getId()) && inferNodeKeyTypes) {
+            PropertyProjection.Filter filter = projection.forNode(node.getLabels());
+            updateKeyTypes(nodeKeyTypes, node, filter);
+            if (nodeKeyDefaults != null) {
+                addKeyDefaults(nodeKeyDefaults, node, filter);
+            }
+        }
+    }
+
+    /**
+     * Add a node to the {@link KeyDefaults} including its labels.
+     *
+     * @param keyDefaults The {@link KeyDefaults}.
+     * @param node        The {@link Node}.
+     * @param filter      The {@link PropertyProjection.Filter} of the node.
+     */
+    private static void addKeyDefaults(KeyDefaults keyDefaults, Node node, PropertyProjection.Filter filter) {
+        keyDefaults.add(node, filter);
+        if (!node.getLabels()
+            .isEmpty()) {
+            keyDefaults.offer(LABELS, node.getLabels());
+        }
+    }
+
+    /**
+     * Update key types by the projected properties of a node or relationship, {@link Void#TYPE} represents keys with values of different types.
+     *
+     * @param keyTypes The key types identified by their keys.
+     * @param pc       The {@link PropertyContainer}.
+     * @param filter   The {@link PropertyProjection.Filter} of the node or relationship.
+     */
+    static void updateKeyTypes(Map<String, Class<?>> keyTypes, PropertyContainer pc, PropertyProjection.Filter filter) {
+        for (Map.Entry<String, Object> entry : pc.getProperties()
+            .entrySet()) {
+            String prop = entry.getKey();
+            if (!filter.isIncluded(prop)) {
+                continue;
+            }
+            Object value = entry.getValue();
+            Class<?> storedClass = keyTypes.computeIfAbsent(prop, p -> value.getClass());
+            if (!(storedClass == void.class || storedClass.equals(value.getClass()))) {
+                keyTypes.put(prop, void.class);
+            }
+        }
+    }
+
+    /**
+     * Determine if a node is contained in the indexed graph.
+     *
+     * @param node The {@link Node}.
+     * @return <code>true</code> if the node is contained.
+     */
+    boolean containsNode(Node node) {
+        return nodeIds.contains(node.getId());
+    }
+
+    /**
+     * Return the number of nodes of the indexed graph.
+     *
+     * @return The number of nodes.
+     */
+    int getNodeCount() {
+        return nodeIds.size();
+    }
+
+    /**
+     * Return all relationships of the indexed graph in the order of their first occurrence.
+     *
+     * @return The relationships.
+     */
+    List<Relationship> getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * Return the types of node properties identified by their keys including the key for labels, {@link Void#TYPE} represents keys with values of
+     * different types.
+     *
+     * @return The node key types.
+     */
+    Map<String, Class<?>> getNodeKeyTypes() {
+        return nodeKeyTypes;
+    }
+
+    /**
+     * Return the types of relationship properties identified by their keys, {@link Void#TYPE} represents keys with values of different types.
+     *
+     * @return The relationship key types.
+     */
+    Map<String, Class<?>> getRelationshipKeyTypes() {
+        return relationshipKeyTypes;
+    }
+
+    /**
+     * Return the default values of the inferred node keys, the default of the labels is a set of labels.
+     *
+     * @return The node key defaults identified by their keys, empty if key defaults are not enabled.
+     */
+    Map<String, Object> getNodeKeyDefaults() {
+        return nodeKeyDefaults != null ? nodeKeyDefaults.getDefaults(nodeKeyTypes) : emptyMap();
+    }
+
+    /**
+     * Return the default values of the inferred relationship keys.
+     *
+     * @return The relationship key defaults identified by their keys, empty if key defaults are not enabled.
+     */
+    Map<String, Object> getRelationshipKeyDefaults() {
+        return relationshipKeyDefaults != null ? relationshipKeyDefaults.getDefaults(relationshipKeyTypes) : emptyMap();
+    }
+}
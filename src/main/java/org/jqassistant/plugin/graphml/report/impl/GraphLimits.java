@@ -0,0 +1,311 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of nodes and edges of a GraphML report as declared by the report properties of a rule, e.g.
+ *
+ * <pre>
+ * graphml.report.maxNodes=5000
+ * graphml.report.maxEdges=20000
+ * graphml.report.priorityProperty=effectiveLineCount
+ * </pre>
+ * <p>
+ * If a graph exceeds a limit the most important elements are kept: nodes are ranked by the numeric value of the priority property (if declared) and
+ * their degree, edges by the priority property and the degrees of their nodes. The elements are selected by {@link TopK} without sorting the graph.
+ * Edges to dropped nodes are dropped as well, the children of dropped parent nodes are moved to the enclosing graph.
+ */
+class GraphLimits {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphLimits.class);
+
+    static final String GRAPHML_MAX_NODES = "graphml.report.maxNodes";
+    static final String GRAPHML_MAX_EDGES = "graphml.report.maxEdges";
+    static final String GRAPHML_PRIORITY_PROPERTY = "graphml.report.priorityProperty";
+
+    static final String TRUNCATED = "truncated";
+    static final String TOTAL_NODES = "totalNodes";
+    static final String TOTAL_EDGES = "totalEdges";
+    static final String DROPPED_NODES = "droppedNodes";
+    static final String DROPPED_EDGES = "droppedEdges";
+    static final String PRIORITY = "truncationPriority";
+
+    private static final String DEGREE = "degree";
+
+    private final int maxNodes;
+
+    private final int maxEdges;
+
+    private final String priorityProperty;
+
+    private GraphLimits(int maxNodes, int maxEdges, String priorityProperty) {
+        this.maxNodes = maxNodes;
+        this.maxEdges = maxEdges;
+        this.priorityProperty = priorityProperty;
+    }
+
+    /**
+     * Create the {@link GraphLimits} of a rule.
+     *
+     * @param reportProperties The report properties of the rule.
+     * @return The {@link GraphLimits} or <code>null</code> if no limit is declared.
+     */
+    static GraphLimits of(Properties reportProperties) {
+        int maxNodes = getLimit(reportProperties, GRAPHML_MAX_NODES);
+        int maxEdges = getLimit(reportProperties, GRAPHML_MAX_EDGES);
+        if (maxNodes == Integer.MAX_VALUE && maxEdges == Integer.MAX_VALUE) {
+            return null;
+        }
+        return new GraphLimits(maxNodes, maxEdges, reportProperties.getProperty(GRAPHML_PRIORITY_PROPERTY));
+    }
+
+    private static int getLimit(Properties reportProperties, String property) {
+        String value = reportProperties.getProperty(property);
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        int limit = Integer.parseInt(value.trim());
+        if (limit < 1) {
+            throw new IllegalArgumentException("The value of " + property + " must be greater than 0 but is " + limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Apply the limits to a graph.
+     *
+     * @param graph The graph.
+     * @return The {@link Truncation}.
+     */
+    Truncation apply(SubGraph graph) {
+        // index all nodes and the relationships between them
+        List<Node> nodes = new ArrayList<>();
+        LongIntHashMap nodeIndexes = new LongIntHashMap(graph.getNodes()
+            .size(), -1);
+        Deque<SubGraph> subGraphs = new ArrayDeque<>();
+        subGraphs.push(graph);
+        while (!subGraphs.isEmpty()) {
+            SubGraph subGraph = subGraphs.pop();
+            if (subGraph.getParent() != null) {
+                addNode(subGraph.getParent(), nodes, nodeIndexes);
+            }
+            for (Node node : subGraph.getNodes()
+                .values()) {
+                addNode(node, nodes, nodeIndexes);
+            }
+            for (SubGraph nested : subGraph.getSubGraphs()
+                .values()) {
+                subGraphs.push(nested);
+            }
+        }
+        List<Relationship> relationships = new ArrayList<>();
+        int[] degrees = new int[nodes.size()];
+        for (Relationship relationship : GraphIndex.of(graph, false, false)
+            .getRelationships()) {
+            int start = nodeIndexes.get(relationship.getStartNode()
+                .getId());
+            int end = nodeIndexes.get(relationship.getEndNode()
+                .getId());
+            if (start >= 0 && end >= 0) {
+                relationships.add(relationship);
+                degrees[start]++;
+                degrees[end]++;
+            }
+        }
+        if (nodes.size() <= maxNodes && relationships.size() <= maxEdges) {
+            return new Truncation(graph, null);
+        }
+
+        // select the nodes
+        boolean[] keptNodes = new boolean[nodes.size()];
+        int keptNodeCount = select(nodes, maxNodes, keptNodes, i -> priority(nodes.get(i)), i -> degrees[i]);
+        // select the edges between kept nodes
+        List<Relationship> candidates = new ArrayList<>();
+        for (Relationship relationship : relationships) {
+            if (keptNodes[nodeIndexes.get(relationship.getStartNode()
+                .getId())] && keptNodes[nodeIndexes.get(relationship.getEndNode()
+                .getId())]) {
+                candidates.add(relationship);
+            }
+        }
+        boolean[] keptEdges = new boolean[candidates.size()];
+        int keptEdgeCount = select(candidates, maxEdges, keptEdges, i -> priority(candidates.get(i)), i -> {
+            Relationship relationship = candidates.get(i);
+            return (long) degrees[nodeIndexes.get(relationship.getStartNode()
+                .getId())] + degrees[nodeIndexes.get(relationship.getEndNode()
+                .getId())];
+        });
+
+        SubGraph truncatedGraph = copy(graph, nodeIndexes, keptNodes);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (keptEdges[i]) {
+                Relationship relationship = candidates.get(i);
+                truncatedGraph.getRelationships()
+                    .put(relationship.getId(), relationship);
+            }
+        }
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put(TRUNCATED, true);
+        graphData.put(TOTAL_NODES, (long) nodes.size());
+        graphData.put(TOTAL_EDGES, (long) relationships.size());
+        graphData.put(DROPPED_NODES, (long) (nodes.size() - keptNodeCount));
+        graphData.put(DROPPED_EDGES, (long) (relationships.size() - keptEdgeCount));
+        graphData.put(PRIORITY, priorityProperty != null ? priorityProperty + "," + DEGREE : DEGREE);
+        LOGGER.info("Truncated GraphML report from {} nodes and {} edges to {} nodes and {} edges.", nodes.size(), relationships.size(), keptNodeCount,
+            keptEdgeCount);
+        return new Truncation(truncatedGraph, graphData);
+    }
+
+    private static void addNode(Node node, List<Node> nodes, LongIntHashMap nodeIndexes) {
+        if (nodeIndexes.putIfAbsent(node.getId(), nodes.size())) {
+            nodes.add(node);
+        }
+    }
+
+    private interface PrimaryScore {
+
+        double get(int index);
+
+    }
+
+    private interface SecondaryScore {
+
+        long get(int index);
+
+    }
+
+    private static int select(List<?> elements, int limit, boolean[] kept, PrimaryScore primaryScore, SecondaryScore secondaryScore) {
+        if (elements.size() <= limit) {
+            Arrays.fill(kept, true);
+            return elements.size();
+        }
+        TopK topK = new TopK(limit);
+        for (int i = 0; i < elements.size(); i++) {
+            topK.offer(i, primaryScore.get(i), secondaryScore.get(i));
+        }
+        int[] selected = topK.getElements();
+        for (int index : selected) {
+            kept[index] = true;
+        }
+        return selected.length;
+    }
+
+    /**
+     * Return the value of the priority property, elements without a numeric value are ranked lowest.
+     */
+    private double priority(PropertyContainer propertyContainer) {
+        if (priorityProperty != null) {
+            Object value = propertyContainer.getProperties()
+                .get(priorityProperty);
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+        }
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Copy the structure of a graph with the kept nodes, the content of a sub graph with a dropped parent is moved to the enclosing graph.
+     */
+    private static SubGraph copy(SubGraph graph, LongIntHashMap nodeIndexes, boolean[] keptNodes) {
+        SubGraph copy = copyOf(graph);
+        // the copies of the sub graphs on the current path, the nodes of a sub graph whose parent is dropped are moved to the enclosing copy
+        Deque<SubGraph> targets = new ArrayDeque<>();
+        SubGraphTraversal.traverse(graph, new SubGraphTraversal.Visitor<RuntimeException>() {
+            @Override
+            public void enter(SubGraph subGraph) {
+                SubGraph target;
+                Node parent = subGraph.getParent();
+                if (subGraph == graph) {
+                    target = copy;
+                } else if (parent == null || keptNodes[nodeIndexes.get(parent.getId())]) {
+                    target = copyOf(subGraph);
+                    targets.peek()
+                        .getSubGraphs()
+                        .put(subGraph.getId(), target);
+                } else {
+                    target = targets.peek();
+                }
+                for (Node node : subGraph.getNodes()
+                    .values()) {
+                    if (keptNodes[nodeIndexes.get(node.getId())]) {
+                        target.getNodes()
+                            .put(node.getId(), node);
+                    }
+                }
+                targets.push(target);
+            }
+
+            @Override
+            public void leave(SubGraph subGraph) {
+                targets.pop();
+            }
+        });
+        return copy;
+    }
+
+    private static SubGraph copyOf(SubGraph graph) {
+        SubGraph copy = new SubGraph();
+        copy.setId(graph.getId());
+        copy.setLabel(graph.getLabel());
+        copy.setParent(graph.getParent());
+        return copy;
+    }
+
+    /**
+     * The result of applying the limits.
+     */
+    static class Truncation {
+
+        private final SubGraph graph;
+
+        private final Map<String, Object> graphData;
+
+        private Truncation(SubGraph graph, Map<String, Object> graphData) {
+            this.graph = graph;
+            this.graphData = graphData;
+        }
+
+        /**
+         * Determine if elements have been dropped.
+         *
+         * @return <code>true</code> if elements have been dropped.
+         */
+        boolean isTruncated() {
+            return graphData != null;
+        }
+
+        /**
+         * Return the graph containing the kept elements.
+         *
+         * @return The graph.
+         */
+        SubGraph getGraph() {
+            return graph;
+        }
+
+        /**
+         * Return the data describing the truncation which is written for the graph.
+         *
+         * @return The graph data.
+         */
+        Map<String, Object> getGraphData() {
+            return graphData;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+
+/**
+ * Resolves and creates the {@link GraphMLDecorator} of a rule, i.e. the one declared by its report properties or the default decorator.
+ */
+class GraphMLDecorators {
+
+    static final String GRAPHML_DECORATOR = "graphml.report.decorator";
+
+    private final ClassHelper classHelper;
+
+    private final Class<? extends GraphMLDecorator> defaultDecoratorClass;
+
+    private final Map<Class<? extends GraphMLDecorator>, Boolean> streamable = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param classHelper           The class helper instance.
+     * @param defaultDecoratorClass The class for the default decorator.
+     */
+    GraphMLDecorators(ClassHelper classHelper, Class<? extends GraphMLDecorator> defaultDecoratorClass) {
+        this.classHelper = classHelper;
+        this.defaultDecoratorClass = defaultDecoratorClass;
+    }
+
+    /**
+     * Determine the class of the selected {@link GraphMLDecorator}.
+     *
+     * @param result The rule result.
+     * @return The class of the {@link GraphMLDecorator}.
+     */
+    Class<? extends GraphMLDecorator> getDecoratorClass(Result<?> result) {
+        String graphMLDecorator = result.getRule().getReport().getProperties().getProperty(GRAPHML_DECORATOR);
+        if (graphMLDecorator != null) {
+            return classHelper.getType(graphMLDecorator);
+        }
+        return defaultDecoratorClass;
+    }
+
+    /**
+     * Determine if the selected {@link GraphMLDecorator} supports streamed documents.
+     *
+     * @param decoratorClass The class of the {@link GraphMLDecorator}.
+     * @return <code>true</code> if {@link GraphMLDecorator#isStreamable()} holds for its instances.
+     */
+    boolean isStreamable(Class<? extends GraphMLDecorator> decoratorClass) {
+        return streamable.computeIfAbsent(decoratorClass, c -> classHelper.createInstance(c)
+            .isStreamable());
+    }
+
+    /**
+     * Creates an instance of the selected {@link GraphMLDecorator}.
+     *
+     * @param decoratorClass The class of the {@link GraphMLDecorator}.
+     * @param metrics        The {@link ReportMetrics} or <code>null</code>.
+     * @return The {@link GraphMLDecorator}, recording the metrics if requested.
+     */
+    GraphMLDecorator create(Class<? extends GraphMLDecorator> decoratorClass, ReportMetrics metrics) {
+        GraphMLDecorator decorator = classHelper.createInstance(decoratorClass);
+        return metrics != null ? MeteredGraphMLDecorator.of(decorator, metrics) : decorator;
+    }
+}
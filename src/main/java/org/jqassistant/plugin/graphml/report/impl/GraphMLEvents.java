@@ -0,0 +1,228 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events emitted while creating GraphML reports.
+ * <p>
+ * The events follow the usual JFR pattern: they are created and started unconditionally, their fields are only computed if
+ * {@link Event#shouldCommit()} returns <code>true</code>. If an event type is not enabled in the recording (or no recording is running) the JIT removes
+ * the allocation and the calls. The decorator callbacks are not recorded individually but aggregated per file in a {@link DecoratorEvent}.
+ */
+final class GraphMLEvents {
+
+    private static final String CATEGORY = "jQAssistant";
+
+    private static final String SUB_CATEGORY = "GraphML";
+
+    private GraphMLEvents() {
+    }
+
+    /**
+     * The creation of the GraphML report of a rule, including writing the files if they are not written asynchronously.
+     */
+    @Name("org.jqassistant.graphml.Report")
+    @Label("GraphML Report")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class ReportEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("Files")
+        int files;
+
+        @Label("Skipped")
+        @Description("The report is unchanged and has not been written.")
+        boolean skipped;
+
+        @Label("Asynchronous")
+        @Description("The files are written asynchronously and are not covered by the event.")
+        boolean async;
+
+        void end(String ruleId, int files, boolean skipped, boolean async) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.files = files;
+                this.skipped = skipped;
+                this.async = async;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Writing a GraphML file.
+     */
+    @Name("org.jqassistant.graphml.Write")
+    @Label("GraphML Write")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class WriteEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("File")
+        String file;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Relationships")
+        long relationships;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+
+        void end(String ruleId, File file, long nodes, long relationships) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.file = file.getName();
+                this.nodes = nodes;
+                this.relationships = relationships;
+                this.bytes = file.length();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Indexing the sub graph and inferring the key types.
+     */
+    @Name("org.jqassistant.graphml.KeyInference")
+    @Label("GraphML Key Inference")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class KeyInferenceEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Relationships")
+        long relationships;
+
+        void end(String ruleId, long nodes, long relationships) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.nodes = nodes;
+                this.relationships = relationships;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Traversing the sub graph and writing the nodes.
+     */
+    @Name("org.jqassistant.graphml.Traversal")
+    @Label("GraphML Sub Graph Traversal")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class TraversalEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("Nodes")
+        long nodes;
+
+        void end(String ruleId, long nodes) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.nodes = nodes;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Writing the relationships.
+     */
+    @Name("org.jqassistant.graphml.RelationshipPass")
+    @Label("GraphML Relationship Pass")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class RelationshipPassEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("Relationships")
+        long relationships;
+
+        void end(String ruleId, long relationships) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.relationships = relationships;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * The decorator callbacks while writing a file, aggregated from the {@link ReportMetrics} recorded by a {@link MeteredGraphMLDecorator}.
+     */
+    @Name("org.jqassistant.graphml.Decorator")
+    @Label("GraphML Decorator")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    @StackTrace(false)
+    static class DecoratorEvent extends Event {
+
+        @Label("Rule")
+        String ruleId;
+
+        @Label("Decorator")
+        String decorator;
+
+        @Label("Decorator Time")
+        @Description("The total time spent in the callbacks of the decorator.")
+        @Timespan
+        long decoratorTime;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Edges")
+        long edges;
+
+        @Label("Filtered Nodes")
+        long filteredNodes;
+
+        @Label("Filtered Edges")
+        long filteredEdges;
+
+        void end(String ruleId, String decorator, ReportMetrics metrics) {
+            end();
+            if (shouldCommit()) {
+                this.ruleId = ruleId;
+                this.decorator = decorator;
+                this.decoratorTime = metrics.getNanos(ReportMetrics.Phase.DECORATOR);
+                this.nodes = metrics.get(ReportMetrics.Counter.NODES);
+                this.edges = metrics.get(ReportMetrics.Counter.EDGES);
+                this.filteredNodes = metrics.get(ReportMetrics.Counter.FILTERED_NODES);
+                this.filteredEdges = metrics.get(ReportMetrics.Counter.FILTERED_EDGES);
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Collects the {@link ReportMetrics} of all reports of a run, stores them as JSON file in the report directory and logs a summary.
+ */
+class GraphMLMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphMLMetrics.class);
+
+    static final String FILE_NAME = "graphml-metrics.json";
+
+    private final Queue<ReportMetrics> reports = new ConcurrentLinkedQueue<>();
+
+    private final long start = System.nanoTime();
+
+    /**
+     * Create the {@link ReportMetrics} of a rule.
+     *
+     * @param ruleId The id of the rule.
+     * @return The {@link ReportMetrics}.
+     */
+    ReportMetrics create(String ruleId) {
+        ReportMetrics reportMetrics = new ReportMetrics(ruleId);
+        reports.add(reportMetrics);
+        return reportMetrics;
+    }
+
+    /**
+     * Return the totals of all reports.
+     *
+     * @return The totals.
+     */
+    ReportMetrics getTotal() {
+        ReportMetrics total = new ReportMetrics(null);
+        for (ReportMetrics report : reports) {
+            total.add(report);
+        }
+        return total;
+    }
+
+    /**
+     * Store the metrics in a report directory.
+     *
+     * @param reportDirectory The report directory.
+     * @throws IOException If the file cannot be written.
+     */
+    void store(File reportDirectory) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(new File(reportDirectory, FILE_NAME).toPath(), UTF_8)) {
+            writer.write("{\n  \"reports\" : [");
+            String separator = "\n";
+            for (ReportMetrics report : reports) {
+                writer.write(separator);
+                writer.write("    ");
+                writeReport(writer, report);
+                separator = ",\n";
+            }
+            writer.write("\n  ],\n  \"total\" : ");
+            ReportMetrics total = getTotal();
+            writer.write("{ \"reports\" : " + reports.size() + ", \"skipped\" : " + getSkipped() + ", ");
+            writer.write("\"wallNanos\" : " + (System.nanoTime() - start) + ", ");
+            writeMetrics(writer, total);
+            writer.write(" }\n}\n");
+        }
+    }
+
+    /**
+     * Log a summary of the run.
+     */
+    void logSummary() {
+        ReportMetrics total = getTotal();
+        LOGGER.info(
+            "Created {} GraphML reports ({} skipped) with {} nodes and {} edges ({} bytes) in {} ms: sub graphs {} ms, key inference {} ms, " +
+                "nodes {} ms, edges {} ms, decorators {} ms, close {} ms.",
+            reports.size(), getSkipped(), total.get(ReportMetrics.Counter.NODES), total.get(ReportMetrics.Counter.EDGES),
+            total.get(ReportMetrics.Counter.BYTES), millis(System.nanoTime() - start), millis(total.getNanos(ReportMetrics.Phase.SUB_GRAPH)),
+            millis(total.getNanos(ReportMetrics.Phase.KEY_INFERENCE)), millis(total.getNanos(ReportMetrics.Phase.NODES)),
+            millis(total.getNanos(ReportMetrics.Phase.EDGES)), millis(total.getNanos(ReportMetrics.Phase.DECORATOR)),
+            millis(total.getNanos(ReportMetrics.Phase.CLOSE)));
+    }
+
+    private long getSkipped() {
+        return reports.stream()
+            .filter(ReportMetrics::isSkipped)
+            .count();
+    }
+
+    private static void writeReport(Writer writer, ReportMetrics report) throws IOException {
+        writer.write("{ \"rule\" : " + quote(report.getRuleId()) + ", \"files\" : [");
+        List<String> files = new ArrayList<>();
+        for (String file : report.getFiles()) {
+            files.add(quote(file));
+        }
+        writer.write(String.join(", ", files));
+        writer.write("], \"skipped\" : " + report.isSkipped() + ", ");
+        writeMetrics(writer, report);
+        writer.write(" }");
+    }
+
+    private static void writeMetrics(Writer writer, ReportMetrics metrics) throws IOException {
+        writer.write("\"nanos\" : {");
+        String separator = " ";
+        for (ReportMetrics.Phase phase : ReportMetrics.Phase.values()) {
+            writer.write(separator + quote(phase.getName()) + " : " + metrics.getNanos(phase));
+            separator = ", ";
+        }
+        writer.write(" }");
+        for (ReportMetrics.Counter counter : ReportMetrics.Counter.values()) {
+            writer.write(", " + quote(counter.getName()) + " : " + metrics.get(counter));
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\')
+                    .append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"')
+            .toString();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -2,7 +2,14 @@ package org.jqassistant.plugin.graphml.report.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -13,7 +20,9 @@ import com.buschmais.jqassistant.core.report.api.ReportPlugin;
 import com.buschmais.jqassistant.core.report.api.graph.SubGraphFactory;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
 import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
 import com.buschmais.jqassistant.core.rule.api.model.ExecutableRule;
+import com.buschmais.jqassistant.core.rule.api.model.Report;
 import com.buschmais.jqassistant.core.rule.api.model.Rule;
 import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
 import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
@@ -22,6 +31,9 @@ import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
 /**
  * A report plugin that creates GraphML files based on the results of a concept.
  *
@@ -36,11 +48,72 @@ public class GraphMLReportPlugin implements ReportPlugin {
 
     private static final String GRAPHMML_REPORT_DIRECTORY = "graphml.report.directory";
     private static final String GRAPHML_DEFAULT_DECORATOR = "graphml.report.defaultDecorator";
+    private static final String GRAPHML_ASYNC = "graphml.report.async";
+    private static final String GRAPHML_ASYNC_THREADS = "graphml.report.async.threads";
+    private static final String GRAPHML_ASYNC_MAX_PENDING_REPORTS = "graphml.report.async.maxPendingReports";
+    private static final String GRAPHML_COMPRESSION = "graphml.report.compression";
+    private static final String GRAPHML_COMPRESSION_LEVEL = "graphml.report.compression.level";
+    private static final String GRAPHML_XML_WRITER = "graphml.report.xmlWriter";
+    private static final String GRAPHML_FILE_OUTPUT = "graphml.report.fileOutput";
+    private static final String GRAPHML_SKIP_UNCHANGED = "graphml.report.skipUnchanged";
+    private static final String GRAPHML_SHARD_MAX_NODES = "graphml.report.shard.maxNodes";
+    private static final String GRAPHML_SHARD_MAX_EDGES = "graphml.report.shard.maxEdges";
+    private static final String GRAPHML_SHARD_MAX_BYTES = "graphml.report.shard.maxBytes";
+    private static final String GRAPHML_METRICS = "graphml.report.metrics";
+    private static final String GRAPHML_STREAMING = "graphml.report.streaming";
+    private static final String GRAPHML_PARALLEL = "graphml.report.parallel";
+    private static final String GRAPHML_MERGED = "graphml.report.merged";
+    private static final String GRAPHML_FRAGMENT_CACHE = "graphml.report.fragmentCache";
+    private static final String GRAPHML_FRAGMENT_CACHE_MAX_BYTES = "graphml.report.fragmentCache.maxBytes";
+
+    private static final String SHARD_INFIX = ".shard-";
+
+    private static final String MERGED_RULE_ID = "graphml:Merged";
+    private static final String MERGED_FILE_NAME = "graphml_Merged";
+
+    /**
+     * The report properties controlling how the graph of a rule is written, these cannot be applied within the merged document.
+     */
+    private static final List<String> OUTPUT_PROPERTIES = List.of(GraphMLDecorators.GRAPHML_DECORATOR, KeySchema.GRAPHML_NODE_KEYS,
+        KeySchema.GRAPHML_EDGE_KEYS, PropertyProjection.GRAPHML_INCLUDE_PROPERTIES, PropertyProjection.GRAPHML_EXCLUDE_PROPERTIES,
+        PropertyProjection.GRAPHML_MAX_VALUE_LENGTH);
 
     private ReportContext reportContext;
     private File reportDirectory;
     private SubGraphFactory subGraphFactory;
     private XmlGraphMLWriter xmlGraphMLWriter;
+    private JsonLinesGraphWriter jsonLinesGraphWriter;
+    private ReportOutput reportOutput;
+    private boolean async;
+    private int asyncThreads;
+    private int asyncMaxPendingReports;
+    private AsyncGraphMLWriter asyncGraphMLWriter;
+    private Map<String, Object> properties;
+    private String defaultDecorator;
+    private boolean skipUnchanged;
+    private FingerprintIndex fingerprintIndex;
+    private GraphSharder graphSharder;
+    private boolean metrics;
+    private GraphMLMetrics graphMLMetrics;
+    private boolean streaming;
+    private boolean merged;
+    private MergedGraph mergedGraph;
+    private FragmentCache fragmentCache;
+
+    private final Supplier<SubGraphFactory> subGraphFactorySupplier;
+
+    public GraphMLReportPlugin() {
+        this(SubGraphFactory::new);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param subGraphFactorySupplier The {@link Supplier} of the {@link SubGraphFactory} used for each analysis.
+     */
+    GraphMLReportPlugin(Supplier<SubGraphFactory> subGraphFactorySupplier) {
+        this.subGraphFactorySupplier = subGraphFactorySupplier;
+    }
 
     @Override
     public void configure(ReportContext reportContext, Map<String, Object> properties) {
@@ -51,10 +124,41 @@ public class GraphMLReportPlugin implements ReportPlugin {
         if (reportDirectory.mkdirs()) {
             LOGGER.info("Created directory " + reportDirectory.getAbsolutePath());
         }
-        String defaultDecorator = getProperty(properties, GRAPHML_DEFAULT_DECORATOR, YedGraphMLDecorator.class.getName());
+        this.properties = properties;
+        this.defaultDecorator = getProperty(properties, GRAPHML_DEFAULT_DECORATOR, YedGraphMLDecorator.class.getName());
         ClassHelper classHelper = new ClassHelper(GraphMLReportPlugin.class.getClassLoader());
         Class<GraphMLDecorator> defaultDecoratorType = classHelper.getType(defaultDecorator);
-        xmlGraphMLWriter = new XmlGraphMLWriter(classHelper, defaultDecoratorType, properties);
+        Compression compression = Compression.of(getProperty(properties, GRAPHML_COMPRESSION, "none"));
+        int compressionLevel = Integer.parseInt(getProperty(properties, GRAPHML_COMPRESSION_LEVEL, Integer.toString(Deflater.DEFAULT_COMPRESSION)));
+        XmlStreamWriterType xmlStreamWriterType = XmlStreamWriterType.of(getProperty(properties, GRAPHML_XML_WRITER, "stax"));
+        FileOutput fileOutput = FileOutput.of(getProperty(properties, GRAPHML_FILE_OUTPUT, "stream"));
+        reportOutput = new ReportOutput(compression, compressionLevel, xmlStreamWriterType, fileOutput);
+        if (Boolean.parseBoolean(getProperty(properties, GRAPHML_FRAGMENT_CACHE, Boolean.FALSE.toString()))) {
+            fragmentCache = new FragmentCache(getLongProperty(properties, GRAPHML_FRAGMENT_CACHE_MAX_BYTES, FragmentCache.DEFAULT_MAX_BYTES));
+        } else {
+            fragmentCache = null;
+        }
+        WriterOptions writerOptions = WriterOptions.DEFAULT.withReportOutput(reportOutput)
+            .withParallel(Boolean.parseBoolean(getProperty(properties, GRAPHML_PARALLEL, Boolean.FALSE.toString())))
+            .withFragmentCache(fragmentCache);
+        xmlGraphMLWriter = new XmlGraphMLWriter(classHelper, defaultDecoratorType, properties, writerOptions);
+        jsonLinesGraphWriter = new JsonLinesGraphWriter(classHelper, defaultDecoratorType, properties, reportOutput);
+        async = Boolean.parseBoolean(getProperty(properties, GRAPHML_ASYNC, Boolean.FALSE.toString()));
+        asyncThreads = getIntProperty(properties, GRAPHML_ASYNC_THREADS, Runtime.getRuntime()
+            .availableProcessors());
+        asyncMaxPendingReports = getIntProperty(properties, GRAPHML_ASYNC_MAX_PENDING_REPORTS, 2 * asyncThreads);
+        skipUnchanged = Boolean.parseBoolean(getProperty(properties, GRAPHML_SKIP_UNCHANGED, Boolean.FALSE.toString()));
+        long shardMaxNodes = getLongProperty(properties, GRAPHML_SHARD_MAX_NODES, Long.MAX_VALUE);
+        long shardMaxEdges = getLongProperty(properties, GRAPHML_SHARD_MAX_EDGES, Long.MAX_VALUE);
+        long shardMaxBytes = getLongProperty(properties, GRAPHML_SHARD_MAX_BYTES, Long.MAX_VALUE);
+        if (shardMaxNodes < Long.MAX_VALUE || shardMaxEdges < Long.MAX_VALUE || shardMaxBytes < Long.MAX_VALUE) {
+            graphSharder = new GraphSharder(shardMaxNodes, shardMaxEdges, shardMaxBytes);
+        } else {
+            graphSharder = null;
+        }
+        metrics = Boolean.parseBoolean(getProperty(properties, GRAPHML_METRICS, Boolean.FALSE.toString()));
+        streaming = Boolean.parseBoolean(getProperty(properties, GRAPHML_STREAMING, Boolean.FALSE.toString()));
+        merged = Boolean.parseBoolean(getProperty(properties, GRAPHML_MERGED, Boolean.FALSE.toString()));
     }
 
     private String getProperty(Map<String, Object> properties, String property, String defaultValue) {
@@ -62,23 +166,451 @@ public class GraphMLReportPlugin implements ReportPlugin {
         return value != null ? value : defaultValue;
     }
 
+    private int getIntProperty(Map<String, Object> properties, String property, int defaultValue) {
+        int value = Integer.parseInt(getProperty(properties, property, Integer.toString(defaultValue)));
+        if (value < 1) {
+            throw new IllegalArgumentException("The value of " + property + " must be greater than 0 but is " + value);
+        }
+        return value;
+    }
+
+    private long getLongProperty(Map<String, Object> properties, String property, long defaultValue) {
+        long value = Long.parseLong(getProperty(properties, property, Long.toString(defaultValue)));
+        if (value < 1) {
+            throw new IllegalArgumentException("The value of " + property + " must be greater than 0 but is " + value);
+        }
+        return value;
+    }
+
     @Override
     public void begin() {
-        subGraphFactory = new SubGraphFactory();
+        subGraphFactory = subGraphFactorySupplier.get();
+        if (async) {
+            asyncGraphMLWriter = new AsyncGraphMLWriter(asyncThreads, asyncMaxPendingReports);
+        }
+        if (skipUnchanged) {
+            fingerprintIndex = FingerprintIndex.load(reportDirectory);
+        }
+        if (metrics) {
+            graphMLMetrics = new GraphMLMetrics();
+        }
+        if (merged) {
+            mergedGraph = new MergedGraph();
+        }
+    }
+
+    @Override
+    public void end() throws ReportException {
+        try {
+            if (asyncGraphMLWriter != null) {
+                try {
+                    asyncGraphMLWriter.await();
+                } finally {
+                    asyncGraphMLWriter = null;
+                }
+            }
+            if (mergedGraph != null) {
+                writeMergedGraph();
+            }
+        } finally {
+            mergedGraph = null;
+            if (fingerprintIndex != null) {
+                storeFingerprintIndex();
+            }
+            if (graphMLMetrics != null) {
+                storeMetrics();
+            }
+            if (fragmentCache != null) {
+                LOGGER.info("GraphML fragment cache: {} hits, {} misses, {} bytes.", fragmentCache.getHits(), fragmentCache.getMisses(),
+                    fragmentCache.getBytes());
+                fragmentCache.clear();
+            }
+        }
+    }
+
+    /**
+     * Write the graphs of all rules collected in merged mode as a single document.
+     */
+    private void writeMergedGraph() throws ReportException {
+        File file = getMergedFile();
+        ReportMetrics reportMetrics = graphMLMetrics != null ? graphMLMetrics.create(MERGED_RULE_ID) : null;
+        Concept concept = Concept.builder()
+            .id(MERGED_RULE_ID)
+            .report(Report.builder()
+                .build())
+            .build();
+        Result<Concept> result = Result.<Concept>builder()
+            .rule(concept)
+            .build();
+        try {
+            xmlGraphMLWriter.writeIndex(result, mergedGraph.getGraph(), file, emptyMap(), reportMetrics);
+        } catch (IOException | XMLStreamException e) {
+            throw new ReportException("Cannot write merged GraphML report " + file.getAbsolutePath(), e);
+        }
+        LOGGER.info("Merged the GraphML reports of {} rules with {} distinct nodes into {}.", mergedGraph.getRules(), mergedGraph.getNodes(),
+            file.getName());
+    }
+
+    private File getMergedFile() {
+        return new File(reportDirectory, MERGED_FILE_NAME + FILEEXTENSION_GRAPHML + reportOutput.getFileExtension());
+    }
+
+    private void storeFingerprintIndex() {
+        try {
+            fingerprintIndex.store();
+        } catch (IOException e) {
+            LOGGER.warn("Cannot store GraphML fingerprint index in " + reportDirectory.getAbsolutePath(), e);
+        } finally {
+            fingerprintIndex = null;
+        }
+    }
+
+    private void storeMetrics() {
+        try {
+            graphMLMetrics.logSummary();
+            graphMLMetrics.store(reportDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot store GraphML metrics in " + reportDirectory.getAbsolutePath(), e);
+        } finally {
+            graphMLMetrics = null;
+        }
     }
 
     @Override
     public void setResult(Result<? extends ExecutableRule> result) throws ReportException {
+        GraphMLEvents.ReportEvent reportEvent = new GraphMLEvents.ReportEvent();
+        reportEvent.begin();
+        Rule rule = result.getRule();
+        ReportMetrics reportMetrics = graphMLMetrics != null ? graphMLMetrics.create(rule.getId()) : null;
+        Properties reportProperties = result.getRule()
+            .getReport()
+            .getProperties();
+        verifyReportProperties(rule, reportProperties);
+        RuleReport ruleReport = prepare(result, reportProperties, reportMetrics);
+        boolean skipped = isUnchanged(ruleReport);
+        if (skipped) {
+            LOGGER.debug("GraphML report of {} is unchanged, skipping.", rule.getId());
+            if (reportMetrics != null) {
+                reportMetrics.setSkipped(true);
+            }
+        } else {
+            write(rule, ruleReport);
+        }
+        addLinks(rule, ruleReport);
+        reportEvent.end(rule.getId(), ruleReport.files.size(), skipped, asyncGraphMLWriter != null && !ruleReport.streamed);
+    }
+
+    /**
+     * Prepare the report of a rule, i.e. determine its files and the tasks writing them. The graph of the rule is either streamed, added to the
+     * merged document or created and transformed.
+     */
+    private RuleReport prepare(Result<? extends ExecutableRule> result, Properties reportProperties, ReportMetrics reportMetrics)
+        throws ReportException {
+        long allocatedBytes = reportMetrics != null ? ReportMetrics.allocatedBytes() : -1;
+        long time = System.nanoTime();
         Rule rule = result.getRule();
-        SubGraph subGraph = subGraphFactory.createSubGraph(result);
+        RuleReport ruleReport;
+        if (isStreaming(result)) {
+            File file = new File(reportDirectory, ReportHelper.escapeRuleId(rule) + FILEEXTENSION_GRAPHML + reportOutput.getFileExtension());
+            // the rows are backed by the store, i.e. they are consumed synchronously within the transaction of the analysis
+            ruleReport = new RuleReport(
+                List.of(new ReportFile("GraphML", file, () -> xmlGraphMLWriter.stream(result, subGraphFactory, file, reportMetrics))), 0, false, true);
+        } else {
+            SubGraph subGraph = subGraphFactory.createSubGraph(result);
+            if (reportMetrics != null) {
+                time = reportMetrics.addTime(ReportMetrics.Phase.SUB_GRAPH, time);
+            }
+            TransformedGraph graph = transform(subGraph, reportProperties);
+            if (isMerged(reportProperties, graph)) {
+                mergedGraph.add(rule, graph.subGraph);
+                ruleReport = new RuleReport(emptyList(), 0, true, false);
+            } else {
+                List<ReportFile> reportFiles = getReportFiles(result, graph.subGraph, graph.graphData, ReportFormat.of(reportProperties), reportMetrics);
+                long fingerprint = fingerprintIndex != null ?
+                    GraphFingerprint.of(graph.subGraph, graph.graphData, rule.getId(), reportProperties, defaultDecorator, properties) :
+                    0;
+                ruleReport = new RuleReport(reportFiles, fingerprint, false, false);
+            }
+        }
+        if (reportMetrics != null) {
+            reportMetrics.addTime(ReportMetrics.Phase.PREPARE, time);
+            reportMetrics.addAllocatedBytes(allocatedBytes);
+            for (ReportFile reportFile : ruleReport.files) {
+                reportMetrics.getFiles()
+                    .add(reportFile.file.getName());
+            }
+        }
+        return ruleReport;
+    }
+
+    /**
+     * Apply the aggregation and the limits declared by the report properties of a rule to its graph.
+     */
+    private TransformedGraph transform(SubGraph subGraph, Properties reportProperties) {
+        SubGraph graph = subGraph;
+        Map<String, Object> graphData = emptyMap();
+        GraphAggregation graphAggregation = GraphAggregation.of(reportProperties);
+        if (graphAggregation != null) {
+            GraphAggregation.Aggregate aggregate = graphAggregation.apply(graph);
+            graph = aggregate.getGraph();
+            graphData = aggregate.getGraphData();
+        }
+        GraphLimits graphLimits = GraphLimits.of(reportProperties);
+        if (graphLimits != null) {
+            GraphLimits.Truncation truncation = graphLimits.apply(graph);
+            if (truncation.isTruncated()) {
+                graph = truncation.getGraph();
+                Map<String, Object> truncationData = new LinkedHashMap<>(graphData);
+                truncationData.putAll(truncation.getGraphData());
+                graphData = truncationData;
+            }
+        }
+        return new TransformedGraph(graph, graphData, graphAggregation != null);
+    }
+
+    /**
+     * Determine if all files of a report are unchanged since the previous run, this requires skipUnchanged.
+     */
+    private boolean isUnchanged(RuleReport ruleReport) {
+        FingerprintIndex index = fingerprintIndex;
+        return index != null && !ruleReport.files.isEmpty() && ruleReport.files.stream()
+            .allMatch(reportFile -> index.isUnchanged(reportFile.file, ruleReport.fingerprint));
+    }
+
+    /**
+     * Write the files of a report and update their fingerprints if skipUnchanged is enabled.
+     */
+    private void write(Rule rule, RuleReport ruleReport) throws ReportException {
+        if (ruleReport.files.isEmpty()) {
+            return;
+        }
+        FingerprintIndex index = fingerprintIndex;
+        if (index != null) {
+            write(rule, true, () -> {
+                for (ReportFile reportFile : ruleReport.files) {
+                    index.remove(reportFile.file);
+                }
+                for (ReportFile reportFile : ruleReport.files) {
+                    reportFile.task.run();
+                    index.put(reportFile.file, ruleReport.fingerprint);
+                }
+            });
+        } else {
+            write(rule, !ruleReport.streamed, () -> {
+                for (ReportFile reportFile : ruleReport.files) {
+                    reportFile.task.run();
+                }
+            });
+        }
+    }
+
+    private void addLinks(Rule rule, RuleReport ruleReport) throws ReportException {
+        for (ReportFile reportFile : ruleReport.files) {
+            addLink(reportFile.label, rule, reportFile.file);
+        }
+        if (ruleReport.merged) {
+            addLink("GraphML (merged)", rule, getMergedFile());
+        }
+    }
+
+    /**
+     * Verify the report properties of a rule, they are parsed again while writing its report which may happen asynchronously.
+     */
+    private void verifyReportProperties(Rule rule, Properties reportProperties) throws ReportException {
         try {
-            String fileName = ReportHelper.escapeRuleId(rule) + FILEEXTENSION_GRAPHML;
-            File file = new File(reportDirectory, fileName);
-            xmlGraphMLWriter.write(result, subGraph, file);
-            reportContext.addReport("GraphML", result.getRule(), ReportContext.ReportType.LINK, file.toURI()
+            ReportFormat.of(reportProperties);
+            KeySchema.of(rule, reportProperties);
+            GraphAggregation.of(reportProperties);
+            GraphLimits.of(reportProperties);
+        } catch (IllegalArgumentException e) {
+            throw new ReportException("Invalid GraphML report properties of " + rule.getId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void addLink(String label, Rule rule, File file) throws ReportException {
+        try {
+            reportContext.addReport(label, rule, ReportContext.ReportType.LINK, file.toURI()
                 .toURL());
-        } catch (IOException | XMLStreamException e) {
-            throw new ReportException("Cannot write custom report.", e);
+        } catch (MalformedURLException e) {
+            throw new ReportException("Cannot create link to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Determine if the graph of a rule is added to the merged document, this requires the GraphML format, that the ids of the nodes are the ids of
+     * the database, i.e. the graph is not aggregated, and that the graph is written like the ones of all other rules, i.e. without a decorator,
+     * keys, property projection or graph data of its own.
+     */
+    private boolean isMerged(Properties reportProperties, TransformedGraph graph) {
+        if (mergedGraph == null || ReportFormat.of(reportProperties) != ReportFormat.GRAPHML) {
+            return false;
+        }
+        if (graph.aggregated) {
+            LOGGER.debug("Aggregated graphs are not added to the merged document.");
+            return false;
+        }
+        if (!graph.graphData.isEmpty()) {
+            LOGGER.debug("Truncated graphs are not added to the merged document.");
+            return false;
+        }
+        if (hasOutputProperties(reportProperties)) {
+            LOGGER.debug("Graphs using their own decorator, keys or property projection are not added to the merged document.");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasOutputProperties(Properties reportProperties) {
+        if (Boolean.parseBoolean(reportProperties.getProperty(KeySchema.GRAPHML_KEY_DEFAULTS))) {
+            return true;
+        }
+        for (String name : reportProperties.stringPropertyNames()) {
+            for (String outputProperty : OUTPUT_PROPERTIES) {
+                if (name.equals(outputProperty) || name.startsWith(outputProperty + ".")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine if the result of a rule is written by consuming its rows, this requires that neither the complete graph (aggregation, limits,
+     * sharding) nor its fingerprint is needed and a decorator supporting it.
+     */
+    private boolean isStreaming(Result<? extends ExecutableRule> result) {
+        if (!streaming) {
+            return false;
+        }
+        Properties reportProperties = result.getRule()
+            .getReport()
+            .getProperties();
+        if (ReportFormat.of(reportProperties) != ReportFormat.GRAPHML) {
+            LOGGER.debug("Streaming is only supported for the GraphML format.");
+            return false;
+        }
+        if (mergedGraph != null || fingerprintIndex != null || graphSharder != null || GraphAggregation.of(reportProperties) != null || GraphLimits.of(reportProperties) != null) {
+            LOGGER.debug("Streaming is not supported in combination with merging, skipUnchanged, sharding, aggregation or limits.");
+            return false;
+        }
+        if (!xmlGraphMLWriter.isStreamable(result)) {
+            LOGGER.info("Streaming of {} requires declared node and edge keys and a decorator supporting it, writing the complete graph instead.",
+                result.getRule()
+                    .getId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determine the files of a report, these are either a single file or the shards followed by their index if the graph exceeds the thresholds.
+     * Reports in the JSON Lines format are never sharded.
+     */
+    private List<ReportFile> getReportFiles(Result<? extends ExecutableRule> result, SubGraph subGraph, Map<String, Object> graphData,
+        ReportFormat reportFormat, ReportMetrics reportMetrics) {
+        String baseName = ReportHelper.escapeRuleId(result.getRule());
+        if (reportFormat == ReportFormat.JSONL) {
+            File file = new File(reportDirectory, baseName + reportFormat.getFileExtension() + reportOutput.getFileExtension());
+            return List.of(
+                new ReportFile(reportFormat.getLabel(), file, () -> jsonLinesGraphWriter.write(result, subGraph, file, graphData, reportMetrics)));
+        }
+        String fileExtension = FILEEXTENSION_GRAPHML + reportOutput.getFileExtension();
+        File file = new File(reportDirectory, baseName + fileExtension);
+        GraphSharder.Shards shards = graphSharder != null ? graphSharder.shard(subGraph) : null;
+        if (shards == null || !shards.isSplit()) {
+            return List.of(new ReportFile("GraphML", file, () -> xmlGraphMLWriter.write(result, subGraph, file, graphData, reportMetrics)));
+        }
+        List<ReportFile> reportFiles = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < shards.getShards()
+            .size(); i++) {
+            String fileName = baseName + SHARD_INFIX + (i + 1) + fileExtension;
+            File shardFile = new File(reportDirectory, fileName);
+            SubGraph shard = shards.getShards()
+                .get(i);
+            fileNames.add(fileName);
+            reportFiles.add(new ReportFile("GraphML (shard " + (i + 1) + ")", shardFile, () -> xmlGraphMLWriter.write(result, shard, shardFile, graphData, reportMetrics)));
+        }
+        SubGraph indexGraph = shards.createIndexGraph(fileNames);
+        reportFiles.add(new ReportFile("GraphML", file, () -> xmlGraphMLWriter.writeIndex(result, indexGraph, file, graphData, reportMetrics)));
+        LOGGER.info("Splitting GraphML report of {} into {} shards with {} crossing relationships.", result.getRule()
+            .getId(), fileNames.size(), shards.getCrossingRelationships()
+            .size());
+        return reportFiles;
+    }
+
+    /**
+     * Run a task writing report files, asynchronously if enabled and supported by the report.
+     */
+    private void write(Rule rule, boolean async, AsyncGraphMLWriter.Task task) throws ReportException {
+        if (async && asyncGraphMLWriter != null) {
+            asyncGraphMLWriter.submit(rule.getId(), task);
+        } else {
+            try {
+                task.run();
+            } catch (ReportException e) {
+                throw e;
+            } catch (IOException | XMLStreamException e) {
+                throw new ReportException("Cannot write custom report.", e);
+            }
+        }
+    }
+
+    /**
+     * The graph of a rule after applying its aggregation and limits.
+     */
+    private static class TransformedGraph {
+
+        private final SubGraph subGraph;
+
+        private final Map<String, Object> graphData;
+
+        private final boolean aggregated;
+
+        private TransformedGraph(SubGraph subGraph, Map<String, Object> graphData, boolean aggregated) {
+            this.subGraph = subGraph;
+            this.graphData = graphData;
+            this.aggregated = aggregated;
+        }
+    }
+
+    /**
+     * The prepared report of a rule: the files to write, the fingerprint of the graph if skipUnchanged is enabled and whether the graph has been
+     * added to the merged document or is streamed.
+     */
+    private static class RuleReport {
+
+        private final List<ReportFile> files;
+
+        private final long fingerprint;
+
+        private final boolean merged;
+
+        private final boolean streamed;
+
+        private RuleReport(List<ReportFile> files, long fingerprint, boolean merged, boolean streamed) {
+            this.files = files;
+            this.fingerprint = fingerprint;
+            this.merged = merged;
+            this.streamed = streamed;
+        }
+    }
+
+    /**
+     * A file of a report and the task writing it.
+     */
+    private static class ReportFile {
+
+        private final String label;
+
+        private final File file;
+
+        private final AsyncGraphMLWriter.Task task;
+
+        private ReportFile(String label, File file, AsyncGraphMLWriter.Task task) {
+            this.label = label;
+            this.file = file;
+            this.task = task;
         }
     }
 }
@@ -0,0 +1,647 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jqassistant.plugin.graphml.report.api.XMLFragmentWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A non-validating {@link XMLStreamWriter} dedicated to writing GraphML documents.
+ * <p>
+ * In contrast to the generic StAX implementation of the JDK it does not maintain namespace scopes (prefixes bound by {@link #setPrefix(String, String)}
+ * are valid for the rest of the document and take precedence over the {@link NamespaceContext}) and encodes directly into a reusable UTF-8 byte
+ * buffer:
+ * <ul>
+ * <li>element and attribute names are encoded once and cached as byte sequences,</li>
+ * <li>text and attribute values are escaped and encoded in a single pass with a fast path for ASCII characters.</li>
+ * </ul>
+ * The produced output is the same as the one of the JDK implementation for the operations used by the GraphML writer and the decorators.
+ */
+class GraphMLStreamWriter implements XMLStreamWriter, XMLFragmentWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of bytes a single char may be encoded to, i.e. an escaped quote (<code>&amp;quot;</code>).
+     */
+    private static final int MAX_BYTES_PER_CHAR = 6;
+
+    private static final int MAX_CACHED_NAMES = 4096;
+
+    private static final byte[] START_DOCUMENT_VERSION = "<?xml version=\"".getBytes(UTF_8);
+    private static final byte[] START_DOCUMENT_ENCODING = "\" encoding=\"".getBytes(UTF_8);
+    private static final byte[] START_DOCUMENT_END = "\"?>".getBytes(UTF_8);
+    private static final byte[] START_DOCUMENT_NO_ENCODING_END = "\" ?>".getBytes(UTF_8);
+    private static final byte[] END_TAG_START = "</".getBytes(UTF_8);
+    private static final byte[] EMPTY_TAG_END = "/>".getBytes(UTF_8);
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(UTF_8);
+    private static final byte[] CDATA_END = "]]>".getBytes(UTF_8);
+    private static final byte[] COMMENT_START = "<!--".getBytes(UTF_8);
+    private static final byte[] COMMENT_END = "-->".getBytes(UTF_8);
+    private static final byte[] PI_START = "<?".getBytes(UTF_8);
+    private static final byte[] PI_END = "?>".getBytes(UTF_8);
+    private static final byte[] AMP = "&amp;".getBytes(UTF_8);
+    private static final byte[] LT = "&lt;".getBytes(UTF_8);
+    private static final byte[] GT = "&gt;".getBytes(UTF_8);
+    private static final byte[] QUOT = "&quot;".getBytes(UTF_8);
+
+    private final OutputStream outputStream;
+
+    private final byte[] buffer;
+
+    private int position = 0;
+
+    /**
+     * Cache of encoded element names, used as <code>&lt;name</code> and <code>&lt;/name</code>.
+     */
+    private final Map<String, byte[]> elementNames = new HashMap<>();
+
+    /**
+     * Cache of encoded element names within namespaces, identified by namespace URI and local name.
+     */
+    private final Map<String, Map<String, byte[]>> namespaceElementNames = new HashMap<>();
+
+    /**
+     * Cache of encoded attribute names including the leading space and the trailing <code>="</code>.
+     */
+    private final Map<String, byte[]> attributeNames = new HashMap<>();
+
+    private byte[][] openElements = new byte[32][];
+
+    private int depth = 0;
+
+    private boolean startTagOpen = false;
+
+    private boolean emptyElement = false;
+
+    private NamespaceContext namespaceContext;
+
+    /**
+     * The prefixes bound by {@link #setPrefix(String, String)} identified by their namespace URIs.
+     */
+    private final Map<String, String> boundPrefixes = new HashMap<>();
+
+    /**
+     * The namespace URIs bound by {@link #setPrefix(String, String)} identified by their prefixes.
+     */
+    private final Map<String, String> boundNamespaceURIs = new HashMap<>();
+
+    private final NamespaceContext layeredNamespaceContext = new LayeredNamespaceContext();
+
+    private ByteArrayOutputStream capture;
+
+    private int captureStart;
+
+    private int captureDepth;
+
+    /**
+     * Constructor.
+     *
+     * @param outputStream The {@link OutputStream} to write UTF-8 encoded output to.
+     */
+    GraphMLStreamWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        startElement(elementName(localName), false);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        startElement(elementName(namespaceURI, localName), false);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        startElement(elementName(qualifiedName(prefix, localName)), false);
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        startElement(elementName(namespaceURI, localName), true);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        startElement(elementName(qualifiedName(prefix, localName)), true);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        startElement(elementName(localName), true);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        closeStartTag();
+        if (depth == 0) {
+            throw new XMLStreamException("No element to close.");
+        }
+        byte[] name = openElements[--depth];
+        openElements[depth] = null;
+        write(END_TAG_START);
+        write(name);
+        write('>');
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        while (depth > 0) {
+            writeEndElement();
+        }
+        closeStartTag();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            flushBuffer();
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException("Cannot flush GraphML output.", e);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        attribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+        attribute(qualifiedName(prefix, localName), value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        attribute(qualifiedName(getPrefix(namespaceURI), localName), value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (prefix == null || prefix.isEmpty() || "xmlns".equals(prefix)) {
+            writeDefaultNamespace(namespaceURI);
+        } else {
+            attribute("xmlns:" + prefix, namespaceURI);
+        }
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        attribute("xmlns", namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        closeStartTag();
+        write(COMMENT_START);
+        if (data != null) {
+            writeUnescaped(data);
+        }
+        write(COMMENT_END);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        writeProcessingInstruction(target, null);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        closeStartTag();
+        write(PI_START);
+        writeUnescaped(target);
+        if (data != null) {
+            write(' ');
+            writeUnescaped(data);
+        }
+        write(PI_END);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        closeStartTag();
+        write(CDATA_START);
+        int start = 0;
+        int end;
+        // a CDATA section cannot contain "]]>", therefore it is split into two sections
+        while ((end = data.indexOf("]]>", start)) >= 0) {
+            writeUnescaped(data.substring(start, end + 2));
+            write(CDATA_END);
+            write(CDATA_START);
+            start = end + 2;
+        }
+        writeUnescaped(start == 0 ? data : data.substring(start));
+        write(CDATA_END);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        closeStartTag();
+        writeUnescaped(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        closeStartTag();
+        write('&');
+        writeUnescaped(name);
+        write(';');
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        write(START_DOCUMENT_VERSION);
+        write('1');
+        write('.');
+        write('0');
+        write(START_DOCUMENT_NO_ENCODING_END);
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        write(START_DOCUMENT_VERSION);
+        writeUnescaped(version);
+        write(START_DOCUMENT_NO_ENCODING_END);
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        if (!UTF_8.name()
+            .equalsIgnoreCase(encoding)) {
+            throw new XMLStreamException("Unsupported encoding " + encoding + ", only " + UTF_8.name() + " is supported.");
+        }
+        write(START_DOCUMENT_VERSION);
+        writeUnescaped(version);
+        write(START_DOCUMENT_ENCODING);
+        writeUnescaped(encoding);
+        write(START_DOCUMENT_END);
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        closeStartTag();
+        writeEscaped(text, false);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public void writeFragment(byte[] fragment) throws XMLStreamException {
+        closeStartTag();
+        write(fragment);
+    }
+
+    /**
+     * Start capturing the output, e.g. for reusing the serialized form of an element. A pending start tag is closed first, i.e. the captured output can
+     * be written by {@link #writeFragment(byte[])}.
+     *
+     * @throws XMLStreamException If writing fails.
+     */
+    void startCapture() throws XMLStreamException {
+        closeStartTag();
+        capture = new ByteArrayOutputStream(256);
+        captureStart = position;
+        captureDepth = depth;
+    }
+
+    /**
+     * Stop capturing the output.
+     *
+     * @return The output written since {@link #startCapture()} or <code>null</code> if it is not a complete fragment, i.e. a start tag is pending or an
+     * element is still open.
+     */
+    byte[] endCapture() {
+        if (capture == null) {
+            throw new IllegalStateException("The output is not captured.");
+        }
+        capture.write(buffer, captureStart, position - captureStart);
+        byte[] captured = capture.toByteArray();
+        capture = null;
+        return startTagOpen || depth != captureDepth ? null : captured;
+    }
+
+    /**
+     * Write an attribute with an already escaped and UTF-8 encoded value.
+     *
+     * @param localName    The name of the attribute.
+     * @param escapedValue The escaped and encoded value, e.g. as provided by {@link #escape(String, boolean)}.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeAttribute(String localName, byte[] escapedValue) throws XMLStreamException {
+        if (!startTagOpen) {
+            throw new XMLStreamException("Attribute " + localName + " must be written directly after a start element.");
+        }
+        write(attributeName(localName));
+        write(escapedValue);
+        write('"');
+    }
+
+    /**
+     * Write pre-serialized attributes, e.g. <code> a="1" b="2"</code> including the leading spaces.
+     *
+     * @param attributes The escaped and encoded attributes.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeAttributes(byte[] attributes) throws XMLStreamException {
+        if (!startTagOpen) {
+            throw new XMLStreamException("Attributes must be written directly after a start element.");
+        }
+        write(attributes);
+    }
+
+    /**
+     * Write already escaped and UTF-8 encoded characters.
+     *
+     * @param escapedText The escaped and encoded characters, e.g. as provided by {@link #escape(String, boolean)}.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeCharacters(byte[] escapedText) throws XMLStreamException {
+        closeStartTag();
+        write(escapedText);
+    }
+
+    /**
+     * Escape a string in the same way as it is escaped for {@link #writeAttribute(String, String)} or {@link #writeCharacters(String)}.
+     *
+     * @param text      The string.
+     * @param attribute <code>true</code> if the string is used as attribute value.
+     * @return The escaped string.
+     */
+    static String escape(String text, boolean attribute) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                escaped.append("&amp;");
+            } else if (c == '<') {
+                escaped.append("&lt;");
+            } else if (c == '>') {
+                escaped.append("&gt;");
+            } else if (c == '"' && attribute) {
+                escaped.append("&quot;");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    @Override
+    public String getPrefix(String uri) {
+        String prefix = boundPrefixes.get(uri);
+        if (prefix != null) {
+            return prefix;
+        }
+        return namespaceContext != null ? namespaceContext.getPrefix(uri) : null;
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        String previousURI = boundNamespaceURIs.put(prefix, uri);
+        if (previousURI != null) {
+            boundPrefixes.remove(previousURI, prefix);
+        }
+        boundPrefixes.put(uri, prefix);
+        // the cached names of elements within namespaces contain the prefixes
+        namespaceElementNames.clear();
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        setPrefix(XMLConstants.DEFAULT_NS_PREFIX, uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {
+        // the own context would resolve prefixes recursively
+        this.namespaceContext = context != layeredNamespaceContext ? context : null;
+        namespaceElementNames.clear();
+    }
+
+    /**
+     * Return the {@link NamespaceContext} of the writer, i.e. the bound prefixes layered over the context set by
+     * {@link #setNamespaceContext(NamespaceContext)}.
+     *
+     * @return The {@link NamespaceContext}.
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return layeredNamespaceContext;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("Property " + name + " is not supported.");
+    }
+
+    private void startElement(byte[] name, boolean empty) throws XMLStreamException {
+        closeStartTag();
+        write('<');
+        write(name);
+        if (depth == openElements.length) {
+            byte[][] elements = new byte[openElements.length << 1][];
+            System.arraycopy(openElements, 0, elements, 0, depth);
+            openElements = elements;
+        }
+        if (!empty) {
+            openElements[depth++] = name;
+        }
+        startTagOpen = true;
+        emptyElement = empty;
+    }
+
+    private void closeStartTag() throws XMLStreamException {
+        if (startTagOpen) {
+            if (emptyElement) {
+                write(EMPTY_TAG_END);
+            } else {
+                write('>');
+            }
+            startTagOpen = false;
+            emptyElement = false;
+        }
+    }
+
+    private void attribute(String name, String value) throws XMLStreamException {
+        if (!startTagOpen) {
+            throw new XMLStreamException("Attribute " + name + " must be written directly after a start element.");
+        }
+        write(attributeName(name));
+        writeEscaped(value, true);
+        write('"');
+    }
+
+    private String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
+    private byte[] elementName(String name) {
+        byte[] encodedName = elementNames.get(name);
+        if (encodedName == null) {
+            encodedName = name.getBytes(UTF_8);
+            cache(elementNames, name, encodedName);
+        }
+        return encodedName;
+    }
+
+    private byte[] elementName(String namespaceURI, String localName) {
+        Map<String, byte[]> names = namespaceElementNames.computeIfAbsent(namespaceURI, uri -> new HashMap<>());
+        byte[] encodedName = names.get(localName);
+        if (encodedName == null) {
+            encodedName = qualifiedName(getPrefix(namespaceURI), localName).getBytes(UTF_8);
+            cache(names, localName, encodedName);
+        }
+        return encodedName;
+    }
+
+    private byte[] attributeName(String name) {
+        byte[] encodedName = attributeNames.get(name);
+        if (encodedName == null) {
+            encodedName = (' ' + name + "=\"").getBytes(UTF_8);
+            cache(attributeNames, name, encodedName);
+        }
+        return encodedName;
+    }
+
+    private <K> void cache(Map<K, byte[]> cache, K key, byte[] value) {
+        if (cache.size() < MAX_CACHED_NAMES) {
+            cache.put(key, value);
+        }
+    }
+
+    private void writeUnescaped(String text) throws XMLStreamException {
+        encode(text, false, false);
+    }
+
+    private void writeEscaped(String text, boolean attribute) throws XMLStreamException {
+        encode(text, true, attribute);
+    }
+
+    private void encode(String text, boolean escape, boolean attribute) throws XMLStreamException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (position > buffer.length - MAX_BYTES_PER_CHAR) {
+                flushBuffer();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (escape && (c == '&' || c == '<' || c == '>' || (attribute && c == '"'))) {
+                    write(c == '&' ? AMP : c == '<' ? LT : c == '>' ? GT : QUOT);
+                } else {
+                    buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // unpaired surrogates cannot be encoded and are replaced like by the JDK encoder
+                char encodable = Character.isSurrogate(c) ? '?' : c;
+                if (encodable < 0x80) {
+                    buffer[position++] = (byte) encodable;
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (encodable >> 12));
+                    buffer[position++] = (byte) (0x80 | ((encodable >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (encodable & 0x3F));
+                }
+            }
+        }
+    }
+
+    private void write(int b) throws XMLStreamException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) throws XMLStreamException {
+        if (position > buffer.length - bytes.length) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                if (capture != null) {
+                    capture.write(bytes, 0, bytes.length);
+                }
+                writeToStream(bytes, 0, bytes.length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void flushBuffer() throws XMLStreamException {
+        if (capture != null) {
+            capture.write(buffer, captureStart, position - captureStart);
+            captureStart = 0;
+        }
+        if (position > 0) {
+            writeToStream(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void writeToStream(byte[] bytes, int offset, int length) throws XMLStreamException {
+        try {
+            outputStream.write(bytes, offset, length);
+        } catch (IOException e) {
+            throw new XMLStreamException("Cannot write GraphML output.", e);
+        }
+    }
+
+    /**
+     * Resolves the prefixes bound by {@link #setPrefix(String, String)} before consulting the {@link NamespaceContext} of the writer.
+     */
+    private class LayeredNamespaceContext implements NamespaceContext {
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            String uri = boundNamespaceURIs.get(prefix);
+            if (uri != null) {
+                return uri;
+            }
+            return namespaceContext != null ? namespaceContext.getNamespaceURI(prefix) : XMLConstants.NULL_NS_URI;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return GraphMLStreamWriter.this.getPrefix(namespaceURI);
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            String prefix = getPrefix(namespaceURI);
+            return prefix != null ? Collections.singletonList(prefix)
+                .iterator() : Collections.emptyIterator();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+import org.jqassistant.plugin.graphml.report.api.StyledGraphMLDecorator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The decorator of a file and the style classes provided by it if it is a {@link StyledGraphMLDecorator}.
+ * <p>
+ * The style class of each label set and relationship type is requested once per file. The attributes and elements of a style class are rendered once
+ * using the StAX implementation of the JDK, i.e. in the same way as by the document writer. They are written as pre-serialized fragments if the
+ * document is written by a {@link GraphMLStreamWriter}, otherwise the style callbacks of the decorator are called for each element.
+ * <p>
+ * The rendered styles are immutable and may be {@link #share(GraphMLDecorator, XMLStreamWriter, ReportMetrics) shared} with the writers serializing
+ * chunks of the same file in parallel.
+ */
+class GraphMLStyles {
+
+    private static final String CONTAINER = "container";
+
+    private final GraphMLDecorator decorator;
+
+    private final StyledGraphMLDecorator styledDecorator;
+
+    private final XMLStreamWriter writer;
+
+    private final ReportMetrics metrics;
+
+    private final Map<Set<String>, Style> nodeStyles;
+
+    private final Map<String, Style> relationshipStyles;
+
+    /**
+     * Constructor.
+     *
+     * @param decorator The {@link GraphMLDecorator}, its namespaces must already be declared by the writer.
+     * @param writer    The {@link XMLStreamWriter} of the document.
+     * @param metrics   The {@link ReportMetrics} of the file, may be <code>null</code>.
+     */
+    GraphMLStyles(GraphMLDecorator decorator, XMLStreamWriter writer, ReportMetrics metrics) {
+        this(decorator, writer, metrics, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private GraphMLStyles(GraphMLDecorator decorator, XMLStreamWriter writer, ReportMetrics metrics, Map<Set<String>, Style> nodeStyles,
+        Map<String, Style> relationshipStyles) {
+        this.decorator = decorator;
+        this.styledDecorator = decorator instanceof StyledGraphMLDecorator ? (StyledGraphMLDecorator) decorator : null;
+        this.writer = writer;
+        this.metrics = metrics;
+        this.nodeStyles = nodeStyles;
+        this.relationshipStyles = relationshipStyles;
+    }
+
+    /**
+     * Create the styles of another writer of the same file, the styles rendered by either of them are shared.
+     *
+     * @param decorator The {@link GraphMLDecorator} of the writer, an instance of the same class as the decorator of this file.
+     * @param writer    The {@link XMLStreamWriter}.
+     * @param metrics   The {@link ReportMetrics} of the writer, may be <code>null</code>.
+     * @return The {@link GraphMLStyles}.
+     */
+    GraphMLStyles share(GraphMLDecorator decorator, XMLStreamWriter writer, ReportMetrics metrics) {
+        return new GraphMLStyles(decorator, writer, metrics, nodeStyles, relationshipStyles);
+    }
+
+    /**
+     * Return the decorator.
+     *
+     * @return The {@link GraphMLDecorator}.
+     */
+    GraphMLDecorator getDecorator() {
+        return decorator;
+    }
+
+    /**
+     * Return the metrics of the file.
+     *
+     * @return The {@link ReportMetrics}, may be <code>null</code>.
+     */
+    ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Return the style of a node which is about to be written.
+     *
+     * @param labels The labels of the node.
+     * @return The {@link Style} or <code>null</code> if the node is written using the per-element callbacks of the decorator.
+     * @throws XMLStreamException If the style cannot be rendered.
+     */
+    Style getNodeStyle(Set<String> labels) throws XMLStreamException {
+        if (styledDecorator == null) {
+            return null;
+        }
+        Style style = nodeStyles.get(labels);
+        if (style == null) {
+            style = putIfAbsent(nodeStyles, labels, render(styledDecorator.getNodeStyleClass(labels), true));
+        }
+        return styled(style);
+    }
+
+    /**
+     * Return the style of a relationship which is about to be written.
+     *
+     * @param type The type of the relationship.
+     * @return The {@link Style} or <code>null</code> if the relationship is written using the per-element callbacks of the decorator.
+     * @throws XMLStreamException If the style cannot be rendered.
+     */
+    Style getRelationshipStyle(String type) throws XMLStreamException {
+        if (styledDecorator == null) {
+            return null;
+        }
+        Style style = relationshipStyles.get(type);
+        if (style == null) {
+            style = putIfAbsent(relationshipStyles, type, render(styledDecorator.getRelationshipStyleClass(type), false));
+        }
+        return styled(style);
+    }
+
+    /**
+     * Write the attributes of a style class, the start element must be open.
+     *
+     * @param style The {@link Style}.
+     * @throws XMLStreamException If writing fails.
+     */
+    void writeAttributes(Style style) throws XMLStreamException {
+        if (writer instanceof GraphMLStreamWriter) {
+            ((GraphMLStreamWriter) writer).writeAttributes(style.attributes);
+        } else if (style.node) {
+            styledDecorator.writeNodeStyleAttributes(style.styleClass, writer);
+        } else {
+            styledDecorator.writeRelationshipStyleAttributes(style.styleClass, writer);
+        }
+    }
+
+    /**
+     * Write the elements of a style class.
+     *
+     * @param style The {@link Style}.
+     * @return <code>false</code> if the elements depend on the element and must be written using the per-element callback.
+     * @throws XMLStreamException If writing fails.
+     */
+    boolean writeElements(Style style) throws XMLStreamException {
+        if (style.elements == null) {
+            return false;
+        }
+        if (writer instanceof GraphMLStreamWriter) {
+            ((GraphMLStreamWriter) writer).writeFragment(style.elements);
+        } else if (style.node) {
+            styledDecorator.writeNodeStyleElements(style.styleClass, writer);
+        } else {
+            styledDecorator.writeRelationshipStyleElements(style.styleClass, writer);
+        }
+        return true;
+    }
+
+    /**
+     * Add a rendered style unless another writer of the file has rendered the same style class in the meantime.
+     */
+    private static <K> Style putIfAbsent(Map<K, Style> styles, K key, Style style) {
+        Style existingStyle = styles.putIfAbsent(key, style);
+        return existingStyle != null ? existingStyle : style;
+    }
+
+    private static Style styled(Style style) {
+        return style.styleClass != null ? style : null;
+    }
+
+    private Style render(String styleClass, boolean node) throws XMLStreamException {
+        if (styleClass == null) {
+            return new Style(null, false, null, null);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLStreamWriter renderWriter = XMLOutputFactory.newInstance()
+            .createXMLStreamWriter(outputStream, UTF_8.name());
+        renderWriter.setNamespaceContext(writer.getNamespaceContext());
+        renderWriter.writeStartElement(CONTAINER);
+        renderWriter.flush();
+        int start = outputStream.size();
+        if (node) {
+            styledDecorator.writeNodeStyleAttributes(styleClass, renderWriter);
+        } else {
+            styledDecorator.writeRelationshipStyleAttributes(styleClass, renderWriter);
+        }
+        // closes the start tag, the attributes end before the '>'
+        renderWriter.writeCharacters("");
+        renderWriter.flush();
+        int end = outputStream.size();
+        boolean styledElements = node ? styledDecorator.writeNodeStyleElements(styleClass, renderWriter) :
+            styledDecorator.writeRelationshipStyleElements(styleClass, renderWriter);
+        renderWriter.writeCharacters("");
+        renderWriter.flush();
+        byte[] rendered = outputStream.toByteArray();
+        renderWriter.writeEndElement();
+        renderWriter.close();
+        byte[] attributes = Arrays.copyOfRange(rendered, start, end - 1);
+        byte[] elements = styledElements ? Arrays.copyOfRange(rendered, end, rendered.length) : null;
+        return new Style(styleClass, node, attributes, elements);
+    }
+
+    /**
+     * The rendered attributes and elements of a style class.
+     */
+    static class Style {
+
+        private final String styleClass;
+
+        private final boolean node;
+
+        private final byte[] attributes;
+
+        private final byte[] elements;
+
+        private Style(String styleClass, boolean node, byte[] attributes, byte[] elements) {
+            this.styleClass = styleClass;
+            this.node = node;
+            this.attributes = attributes;
+            this.elements = elements;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a {@link SubGraph} exceeding configured thresholds for nodes, edges or the estimated file size into shards.
+ * <p>
+ * The units of a split are the top-level nodes and the top-level sub graphs (including all nested sub graphs), they are never split. Units connected by
+ * relationships form components which are determined using a {@link ConcurrentUnionFind} and packed into shards in the order of their occurrence. A
+ * component is only distributed over several shards if it exceeds the thresholds on its own. Relationships between nodes of different shards are
+ * reported as crossing relationships.
+ */
+class GraphSharder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphSharder.class);
+
+    /**
+     * The minimum number of relationships for merging components in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    /**
+     * The estimated number of bytes per element (XML elements and decorator output) in addition to the labels and properties.
+     */
+    private static final int ELEMENT_OVERHEAD = 256;
+
+    private static final int PROPERTY_OVERHEAD = 24;
+
+    private final long maxNodes;
+
+    private final long maxEdges;
+
+    private final long maxBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxNodes The maximum number of nodes per shard.
+     * @param maxEdges The maximum number of edges per shard.
+     * @param maxBytes The maximum estimated number of bytes per shard.
+     */
+    GraphSharder(long maxNodes, long maxEdges, long maxBytes) {
+        this.maxNodes = maxNodes;
+        this.maxEdges = maxEdges;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Split a graph into shards.
+     *
+     * @param graph The {@link SubGraph}.
+     * @return The {@link Shards}, contains only the given graph if it does not exceed the thresholds.
+     */
+    Shards shard(SubGraph graph) {
+        SubGraph root = graph;
+        // a graph only wrapping another one without parent, e.g. a sub graph returned as single column, is split at the level of the wrapped graph
+        while (root.getNodes()
+            .isEmpty() && root.getSubGraphs()
+            .size() == 1) {
+            SubGraph wrapped = root.getSubGraphs()
+                .values()
+                .iterator()
+                .next();
+            if (wrapped.getParent() != null) {
+                break;
+            }
+            root = wrapped;
+        }
+        return shard(graph, root);
+    }
+
+    private Shards shard(SubGraph graph, SubGraph root) {
+        List<Unit> units = new ArrayList<>();
+        LongIntHashMap unitsByNodeId = new LongIntHashMap(root.getNodes()
+            .size(), -1);
+        for (Node node : root.getNodes()
+            .values()) {
+            Unit unit = new Unit(node, null);
+            if (unitsByNodeId.putIfAbsent(node.getId(), units.size())) {
+                unit.add(node);
+            }
+            units.add(unit);
+        }
+        // units sharing nodes, e.g. a top-level node which is also the parent of a sub graph, must be written to the same shard
+        List<int[]> sharedNodes = new ArrayList<>();
+        for (SubGraph subGraph : root.getSubGraphs()
+            .values()) {
+            Unit unit = new Unit(null, subGraph);
+            addNodes(unit, subGraph, unitsByNodeId, units.size(), sharedNodes);
+            units.add(unit);
+        }
+        GraphIndex graphIndex = GraphIndex.of(graph, false, false);
+        List<Relationship> relationships = graphIndex.getRelationships();
+        Size total = new Size();
+        for (Unit unit : units) {
+            total.add(unit.size);
+        }
+        for (Relationship relationship : relationships) {
+            total.addEdge(estimateBytes(relationship));
+        }
+        if (total.fits(new Size(), maxNodes, maxEdges, maxBytes)) {
+            return new Shards(graph);
+        }
+
+        ConcurrentUnionFind components = new ConcurrentUnionFind(units.size());
+        for (int[] sharedNode : sharedNodes) {
+            components.union(sharedNode[0], sharedNode[1]);
+        }
+        IntStream indexes = IntStream.range(0, relationships.size());
+        if (relationships.size() >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            Relationship relationship = relationships.get(i);
+            int startUnit = unitsByNodeId.get(relationship.getStartNode()
+                .getId());
+            int endUnit = unitsByNodeId.get(relationship.getEndNode()
+                .getId());
+            if (startUnit >= 0 && endUnit >= 0) {
+                components.union(startUnit, endUnit);
+            }
+        });
+        // the edges of a unit are the relationships starting at one of its nodes
+        for (Relationship relationship : relationships) {
+            int startUnit = unitsByNodeId.get(relationship.getStartNode()
+                .getId());
+            if (startUnit >= 0) {
+                units.get(startUnit).size.addEdge(estimateBytes(relationship));
+            }
+        }
+        return pack(root, units, components, unitsByNodeId, relationships);
+    }
+
+    private void addNodes(Unit unit, SubGraph subGraph, LongIntHashMap unitsByNodeId, int unitIndex, List<int[]> sharedNodes) {
+        Deque<SubGraph> subGraphs = new ArrayDeque<>();
+        subGraphs.push(subGraph);
+        while (!subGraphs.isEmpty()) {
+            SubGraph current = subGraphs.pop();
+            Node parent = current.getParent();
+            if (parent != null) {
+                addNode(unit, parent, unitsByNodeId, unitIndex, sharedNodes);
+            }
+            for (Node node : current.getNodes()
+                .values()) {
+                addNode(unit, node, unitsByNodeId, unitIndex, sharedNodes);
+            }
+            for (SubGraph nested : current.getSubGraphs()
+                .values()) {
+                subGraphs.push(nested);
+            }
+        }
+    }
+
+    private void addNode(Unit unit, Node node, LongIntHashMap unitsByNodeId, int unitIndex, List<int[]> sharedNodes) {
+        if (unitsByNodeId.putIfAbsent(node.getId(), unitIndex)) {
+            unit.add(node);
+        } else {
+            int otherUnit = unitsByNodeId.get(node.getId());
+            if (otherUnit != unitIndex) {
+                sharedNodes.add(new int[] { otherUnit, unitIndex });
+            }
+        }
+    }
+
+    private Shards pack(SubGraph graph, List<Unit> units, ConcurrentUnionFind components, LongIntHashMap unitsByNodeId,
+        List<Relationship> relationships) {
+        // group the units by their components in the order of occurrence, the representative of a component is its first unit
+        int[] nextUnit = new int[units.size()];
+        int[] lastUnit = new int[units.size()];
+        Size[] componentSizes = new Size[units.size()];
+        for (int i = 0; i < units.size(); i++) {
+            nextUnit[i] = -1;
+            int component = components.find(i);
+            if (component == i) {
+                componentSizes[i] = new Size();
+            } else {
+                nextUnit[lastUnit[component]] = i;
+            }
+            lastUnit[component] = i;
+            componentSizes[component].add(units.get(i).size);
+        }
+        int[] shardOfUnit = new int[units.size()];
+        List<SubGraph> shards = new ArrayList<>();
+        List<Size> shardSizes = new ArrayList<>();
+        Size shardSize = null;
+        for (int component = 0; component < units.size(); component++) {
+            if (componentSizes[component] == null) {
+                continue;
+            }
+            Size componentSize = componentSizes[component];
+            boolean split = !componentSize.fits(new Size(), maxNodes, maxEdges, maxBytes);
+            if (split) {
+                LOGGER.debug("Splitting a connected component with {} nodes and {} edges into several shards.", componentSize.nodes, componentSize.edges);
+            }
+            if (shardSize == null || !(split || componentSize.fits(shardSize, maxNodes, maxEdges, maxBytes))) {
+                shardSize = newShard(graph, shards, shardSizes);
+            }
+            for (int unit = component; unit >= 0; unit = nextUnit[unit]) {
+                Size unitSize = units.get(unit).size;
+                if (split && !shardSize.isEmpty() && !unitSize.fits(shardSize, maxNodes, maxEdges, maxBytes)) {
+                    shardSize = newShard(graph, shards, shardSizes);
+                }
+                units.get(unit)
+                    .addTo(shards.get(shards.size() - 1));
+                shardSize.add(unitSize);
+                shardOfUnit[unit] = shards.size() - 1;
+            }
+        }
+        long[] shardEdges = new long[shards.size()];
+        List<Relationship> crossingRelationships = new ArrayList<>();
+        for (Relationship relationship : relationships) {
+            int startUnit = unitsByNodeId.get(relationship.getStartNode()
+                .getId());
+            int endUnit = unitsByNodeId.get(relationship.getEndNode()
+                .getId());
+            if (startUnit >= 0 && endUnit >= 0) {
+                int startShard = shardOfUnit[startUnit];
+                int endShard = shardOfUnit[endUnit];
+                if (startShard == endShard) {
+                    shards.get(startShard)
+                        .getRelationships()
+                        .put(relationship.getId(), relationship);
+                    shardEdges[startShard]++;
+                } else {
+                    crossingRelationships.add(relationship);
+                }
+            }
+        }
+        long[] shardNodes = new long[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            shardNodes[i] = shardSizes.get(i).nodes;
+        }
+        return new Shards(shards, crossingRelationships, unitsByNodeId, shardOfUnit, shardNodes, shardEdges);
+    }
+
+    private static Size newShard(SubGraph graph, List<SubGraph> shards, List<Size> shardSizes) {
+        SubGraph shard = new SubGraph();
+        shard.setId(graph.getId());
+        shards.add(shard);
+        Size shardSize = new Size();
+        shardSizes.add(shardSize);
+        return shardSize;
+    }
+
+    private static long estimateBytes(PropertyContainer propertyContainer) {
+        long bytes = ELEMENT_OVERHEAD;
+        String label = propertyContainer.getLabel();
+        if (label != null) {
+            bytes += label.length();
+        }
+        for (Map.Entry<String, Object> entry : propertyContainer.getProperties()
+            .entrySet()) {
+            bytes += PROPERTY_OVERHEAD + entry.getKey()
+                .length() + String.valueOf(entry.getValue())
+                .length();
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Node node) {
+        long bytes = estimateBytes((PropertyContainer) node);
+        for (String label : node.getLabels()) {
+            // labels are written as attribute and as data element
+            bytes += 2 * (label.length() + 1);
+        }
+        return bytes;
+    }
+
+    /**
+     * A top-level node or sub graph.
+     */
+    private static class Unit {
+
+        private final Node node;
+
+        private final SubGraph subGraph;
+
+        private final Size size = new Size();
+
+        private Unit(Node node, SubGraph subGraph) {
+            this.node = node;
+            this.subGraph = subGraph;
+        }
+
+        private void add(Node node) {
+            size.addNode(estimateBytes(node));
+        }
+
+        private void addTo(SubGraph shard) {
+            if (node != null) {
+                shard.getNodes()
+                    .put(node.getId(), node);
+            } else {
+                shard.getSubGraphs()
+                    .put(subGraph.getId(), subGraph);
+            }
+        }
+    }
+
+    /**
+     * The size of a unit, a component or a shard.
+     */
+    private static class Size {
+
+        private long nodes;
+
+        private long edges;
+
+        private long bytes;
+
+        private void addNode(long nodeBytes) {
+            nodes++;
+            bytes += nodeBytes;
+        }
+
+        private void addEdge(long edgeBytes) {
+            edges++;
+            bytes += edgeBytes;
+        }
+
+        private void add(Size size) {
+            nodes += size.nodes;
+            edges += size.edges;
+            bytes += size.bytes;
+        }
+
+        private boolean isEmpty() {
+            return nodes == 0 && edges == 0;
+        }
+
+        private boolean fits(Size target, long maxNodes, long maxEdges, long maxBytes) {
+            return target.nodes + nodes <= maxNodes && target.edges + edges <= maxEdges && target.bytes + bytes <= maxBytes;
+        }
+    }
+
+    /**
+     * The result of a split.
+     */
+    static class Shards {
+
+        static final String SHARD_LABEL = "Shard";
+        static final String FILE = "file";
+        static final String NODES = "nodes";
+        static final String EDGES = "edges";
+        static final String SOURCE_NODE = "sourceNode";
+        static final String TARGET_NODE = "targetNode";
+
+        private final List<SubGraph> shards;
+
+        private final List<Relationship> crossingRelationships;
+
+        private final LongIntHashMap unitsByNodeId;
+
+        private final int[] shardOfUnit;
+
+        private final long[] shardNodes;
+
+        private final long[] shardEdges;
+
+        private Shards(SubGraph graph) {
+            this(List.of(graph), List.of(), null, null, null, null);
+        }
+
+        private Shards(List<SubGraph> shards, List<Relationship> crossingRelationships, LongIntHashMap unitsByNodeId, int[] shardOfUnit,
+            long[] shardNodes, long[] shardEdges) {
+            this.shards = shards;
+            this.crossingRelationships = crossingRelationships;
+            this.unitsByNodeId = unitsByNodeId;
+            this.shardOfUnit = shardOfUnit;
+            this.shardNodes = shardNodes;
+            this.shardEdges = shardEdges;
+        }
+
+        /**
+         * Determine if the graph has been split.
+         *
+         * @return <code>true</code> if there is more than one shard.
+         */
+        boolean isSplit() {
+            return shards.size() > 1;
+        }
+
+        /**
+         * Return the shards.
+         *
+         * @return The shards.
+         */
+        List<SubGraph> getShards() {
+            return shards;
+        }
+
+        /**
+         * Return the relationships between nodes of different shards.
+         *
+         * @return The crossing relationships.
+         */
+        List<Relationship> getCrossingRelationships() {
+            return crossingRelationships;
+        }
+
+        /**
+         * Return the index of the shard containing a node.
+         *
+         * @param node The {@link Node}.
+         * @return The index of the shard or -1 if the node is not contained in any shard.
+         */
+        int getShard(Node node) {
+            if (shardOfUnit == null) {
+                return 0;
+            }
+            int unit = unitsByNodeId.get(node.getId());
+            return unit >= 0 ? shardOfUnit[unit] : -1;
+        }
+
+        /**
+         * Create the index graph containing a node for each shard and an edge for each crossing relationship.
+         * <p>
+         * The edges reference the ids of the nodes in the shard files by the properties {@link #SOURCE_NODE} and {@link #TARGET_NODE}.
+         *
+         * @param fileNames The file names of the shards.
+         * @return The index graph.
+         */
+        SubGraph createIndexGraph(List<String> fileNames) {
+            SubGraph indexGraph = new SubGraph();
+            indexGraph.setId(shards.get(0)
+                .getId());
+            List<Node> shardNodes = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                Node shardNode = new Node();
+                shardNode.setId(i + 1L);
+                shardNode.setLabel(fileNames.get(i));
+                shardNode.getLabels()
+                    .add(SHARD_LABEL);
+                shardNode.getProperties()
+                    .put(FILE, fileNames.get(i));
+                shardNode.getProperties()
+                    .put(NODES, this.shardNodes[i]);
+                shardNode.getProperties()
+                    .put(EDGES, shardEdges[i]);
+                shardNodes.add(shardNode);
+                indexGraph.getNodes()
+                    .put(shardNode.getId(), shardNode);
+            }
+            for (Relationship crossingRelationship : crossingRelationships) {
+                Relationship indexRelationship = new Relationship();
+                indexRelationship.setId(crossingRelationship.getId());
+                indexRelationship.setType(crossingRelationship.getType());
+                indexRelationship.setStartNode(shardNodes.get(getShard(crossingRelationship.getStartNode())));
+                indexRelationship.setEndNode(shardNodes.get(getShard(crossingRelationship.getEndNode())));
+                indexRelationship.getProperties()
+                    .put(SOURCE_NODE, "n" + crossingRelationship.getStartNode()
+                        .getId());
+                indexRelationship.getProperties()
+                    .put(TARGET_NODE, "n" + crossingRelationship.getEndNode()
+                        .getId());
+                indexGraph.getRelationships()
+                    .put(indexRelationship.getId(), indexRelationship);
+            }
+            return indexGraph;
+        }
+    }
+}
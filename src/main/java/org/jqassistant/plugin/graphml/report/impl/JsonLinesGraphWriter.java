@@ -0,0 +1,386 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes a graph as JSON Lines, i.e. one JSON object per line, as compact alternative to GraphML for very large results.
+ * <p>
+ * Each line carries the kind of the record:
+ * <ul>
+ * <li><code>header</code>: the format, its version, the rule and the data of the graph (e.g. describing a truncation)</li>
+ * <li><code>labels</code>, <code>key</code>, <code>type</code>: dictionary entries for label sets, property keys and relationship types, each written
+ * once before it is used for the first time</li>
+ * <li><code>graph</code>: a nested graph, its enclosing graph and the node containing it</li>
+ * <li><code>node</code>: a node, the graph it belongs to, its label set, its label and its properties as pairs of key id and value</li>
+ * <li><code>edge</code>: a relationship, its type, its source and target node and its properties</li>
+ * </ul>
+ * Nodes and graphs are written in the same order as in a GraphML document and edges after all nodes, therefore a reader only needs to keep the
+ * dictionaries in memory. The decorator of the rule is only used for filtering nodes and relationships, it is initialized without an
+ * {@link javax.xml.stream.XMLStreamWriter}.
+ */
+class JsonLinesGraphWriter {
+
+    static final String FORMAT = "jqassistant-graph";
+
+    static final int VERSION = 1;
+
+    private final GraphMLDecorators decorators;
+
+    private final Map<String, Object> properties;
+
+    private final ReportOutput reportOutput;
+
+    /**
+     * Constructor.
+     *
+     * @param classHelper           The class helper instance.
+     * @param defaultDecoratorClass The class for the default decorator.
+     * @param properties            The properties of the GraphML plugin.
+     * @param reportOutput          The {@link ReportOutput}.
+     */
+    JsonLinesGraphWriter(ClassHelper classHelper, Class<? extends GraphMLDecorator> defaultDecoratorClass, Map<String, Object> properties,
+        ReportOutput reportOutput) {
+        this.decorators = new GraphMLDecorators(classHelper, defaultDecoratorClass);
+        this.properties = properties;
+        this.reportOutput = reportOutput;
+    }
+
+    /**
+     * Write a graph created from the result of a rule.
+     *
+     * @param result    The {@link Result} of the rule.
+     * @param graph     The graph.
+     * @param file      The output file.
+     * @param graphData The data of the top-level graph identified by their keys, e.g. describing a truncation.
+     * @param metrics   The {@link ReportMetrics} or <code>null</code> if no metrics shall be recorded.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(Result<?> result, SubGraph graph, File file, Map<String, Object> graphData, ReportMetrics metrics) throws IOException {
+        String ruleId = result.getRule()
+            .getId();
+        GraphMLEvents.WriteEvent writeEvent = new GraphMLEvents.WriteEvent();
+        writeEvent.begin();
+        GraphMLEvents.DecoratorEvent decoratorEvent = new GraphMLEvents.DecoratorEvent();
+        decoratorEvent.begin();
+        ReportMetrics fileMetrics = metrics != null || decoratorEvent.isEnabled() ? new ReportMetrics(ruleId) : null;
+        long allocatedBytes = fileMetrics != null ? ReportMetrics.allocatedBytes() : -1;
+        long time = System.nanoTime();
+        GraphIndex graphIndex = GraphIndex.of(graph, false, false);
+        time = addTime(fileMetrics, ReportMetrics.Phase.KEY_INFERENCE, time);
+        Class<? extends GraphMLDecorator> decoratorClass = decorators.getDecoratorClass(result);
+        long relationships = 0;
+        try (Writer writer = new OutputStreamWriter(reportOutput.open(file), UTF_8);
+             GraphMLDecorator decorator = decorators.create(decoratorClass, fileMetrics)) {
+            decorator.initialize(result, graph, null, file, properties);
+            Lines lines = new Lines(writer, decorator, PropertyProjection.of(result.getRule()
+                .getReport()
+                .getProperties()));
+            lines.writeHeader(ruleId, graphData);
+            time = addTime(fileMetrics, ReportMetrics.Phase.HEADER, time);
+
+            SubGraphTraversal.traverse(graph, lines);
+            time = addTime(fileMetrics, ReportMetrics.Phase.NODES, time);
+
+            for (Relationship relationship : graphIndex.getRelationships()) {
+                if (graphIndex.containsNode(relationship.getStartNode()) && graphIndex.containsNode(relationship.getEndNode())) {
+                    relationships++;
+                    lines.writeEdge(relationship);
+                }
+            }
+            time = addTime(fileMetrics, ReportMetrics.Phase.EDGES, time);
+        }
+        if (fileMetrics != null) {
+            fileMetrics.addTime(ReportMetrics.Phase.CLOSE, time);
+            fileMetrics.add(ReportMetrics.Counter.BYTES, file.length());
+            fileMetrics.addAllocatedBytes(allocatedBytes);
+            decoratorEvent.end(ruleId, decoratorClass.getName(), fileMetrics);
+            if (metrics != null) {
+                metrics.add(fileMetrics);
+            }
+        }
+        writeEvent.end(ruleId, file, graphIndex.getNodeCount(), relationships);
+    }
+
+    private static long addTime(ReportMetrics metrics, ReportMetrics.Phase phase, long start) {
+        return metrics != null ? metrics.addTime(phase, start) : start;
+    }
+
+    /**
+     * Writes the lines of a file and holds the dictionaries.
+     */
+    private static class Lines implements SubGraphTraversal.Visitor<IOException> {
+
+        private final Writer writer;
+
+        private final GraphMLDecorator decorator;
+
+        private final PropertyProjection projection;
+
+        private final StringBuilder line = new StringBuilder(256);
+
+        private final Map<Set<String>, Integer> labelSets = new HashMap<>();
+
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        private final Map<String, Integer> types = new HashMap<>();
+
+        /**
+         * The ids of the graphs on the path of the traversal.
+         */
+        private final Deque<Integer> graphIds = new ArrayDeque<>();
+
+        private int nextGraphId = 0;
+
+        private Lines(Writer writer, GraphMLDecorator decorator, PropertyProjection projection) {
+            this.writer = writer;
+            this.decorator = decorator;
+            this.projection = projection;
+        }
+
+        private void writeHeader(String ruleId, Map<String, Object> graphData) throws IOException {
+            line.append("{\"kind\":\"header\",\"format\":");
+            appendString(FORMAT);
+            line.append(",\"version\":")
+                .append(VERSION)
+                .append(",\"rule\":");
+            appendString(ruleId);
+            if (!graphData.isEmpty()) {
+                line.append(",\"data\":");
+                appendValue(graphData);
+            }
+            endLine();
+        }
+
+        @Override
+        public void enter(SubGraph subGraph) throws IOException {
+            int graphId = nextGraphId++;
+            Integer enclosingGraphId = graphIds.peek();
+            Node parent = subGraph.getParent();
+            boolean parentWritten = parent != null && writeNode(parent, enclosingGraphId);
+            line.append("{\"kind\":\"graph\",\"id\":")
+                .append(graphId);
+            if (enclosingGraphId != null) {
+                line.append(",\"parent\":")
+                    .append(enclosingGraphId);
+            }
+            if (parentWritten) {
+                line.append(",\"node\":")
+                    .append(parent.getId());
+            }
+            endLine();
+            graphIds.push(graphId);
+            for (Node node : subGraph.getNodes()
+                .values()) {
+                writeNode(node, graphId);
+            }
+        }
+
+        @Override
+        public void leave(SubGraph subGraph) {
+            graphIds.pop();
+        }
+
+        private boolean writeNode(Node node, Integer graphId) throws IOException {
+            if (!decorator.isWriteNode(node)) {
+                return false;
+            }
+            int labelSetId = getLabelSetId(node.getLabels());
+            PropertyProjection.Filter filter = projection.forNode(node.getLabels());
+            writeKeys(node, filter);
+            line.append("{\"kind\":\"node\",\"id\":")
+                .append(node.getId());
+            if (graphId != null) {
+                line.append(",\"graph\":")
+                    .append(graphId);
+            }
+            line.append(",\"labels\":")
+                .append(labelSetId);
+            if (node.getLabel() != null) {
+                line.append(",\"label\":");
+                appendString(node.getLabel());
+            }
+            appendProperties(node, filter);
+            endLine();
+            return true;
+        }
+
+        private void writeEdge(Relationship relationship) throws IOException {
+            if (!decorator.isWriteRelationship(relationship)) {
+                return;
+            }
+            int typeId = getId(types, relationship.getType(), "type");
+            PropertyProjection.Filter filter = projection.forRelationship(relationship.getType());
+            writeKeys(relationship, filter);
+            line.append("{\"kind\":\"edge\",\"id\":")
+                .append(relationship.getId())
+                .append(",\"type\":")
+                .append(typeId)
+                .append(",\"source\":")
+                .append(relationship.getStartNode()
+                    .getId())
+                .append(",\"target\":")
+                .append(relationship.getEndNode()
+                    .getId());
+            appendProperties(relationship, filter);
+            endLine();
+        }
+
+        private int getLabelSetId(Set<String> labels) throws IOException {
+            Integer id = labelSets.get(labels);
+            if (id == null) {
+                id = labelSets.size();
+                labelSets.put(Set.copyOf(labels), id);
+                line.append("{\"kind\":\"labels\",\"id\":")
+                    .append(id)
+                    .append(",\"labels\":");
+                appendValue(labels);
+                endLine();
+            }
+            return id;
+        }
+
+        private void writeKeys(PropertyContainer propertyContainer, PropertyProjection.Filter filter) throws IOException {
+            for (String key : propertyContainer.getProperties()
+                .keySet()) {
+                if (filter.isIncluded(key)) {
+                    getId(keys, key, "key");
+                }
+            }
+        }
+
+        private int getId(Map<String, Integer> dictionary, String name, String kind) throws IOException {
+            Integer id = dictionary.get(name);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.put(name, id);
+                line.append("{\"kind\":\"")
+                    .append(kind)
+                    .append("\",\"id\":")
+                    .append(id)
+                    .append(",\"name\":");
+                appendString(name);
+                endLine();
+            }
+            return id;
+        }
+
+        private void appendProperties(PropertyContainer propertyContainer, PropertyProjection.Filter filter) {
+            boolean empty = true;
+            for (Map.Entry<String, Object> entry : propertyContainer.getProperties()
+                .entrySet()) {
+                if (filter.isIncluded(entry.getKey())) {
+                    line.append(empty ? ",\"properties\":[" : ",")
+                        .append(keys.get(entry.getKey()))
+                        .append(',');
+                    appendValue(filter.getValue(entry.getValue()));
+                    empty = false;
+                }
+            }
+            if (!empty) {
+                line.append(']');
+            }
+        }
+
+        private void appendValue(Object value) {
+            if (value == null) {
+                line.append("null");
+            } else if (value instanceof Boolean) {
+                line.append(value);
+            } else if (value instanceof Double && !Double.isFinite((Double) value) || value instanceof Float && !Float.isFinite((Float) value)) {
+                appendString(value.toString());
+            } else if (value instanceof Number) {
+                line.append(value);
+            } else if (value instanceof Collection) {
+                line.append('[');
+                String separator = "";
+                for (Object element : (Collection<?>) value) {
+                    line.append(separator);
+                    appendValue(element);
+                    separator = ",";
+                }
+                line.append(']');
+            } else if (value.getClass()
+                .isArray()) {
+                line.append('[');
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    appendValue(Array.get(value, i));
+                }
+                line.append(']');
+            } else if (value instanceof Map) {
+                line.append('{');
+                String separator = "";
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    line.append(separator);
+                    appendString(String.valueOf(entry.getKey()));
+                    line.append(':');
+                    appendValue(entry.getValue());
+                    separator = ",";
+                }
+                line.append('}');
+            } else {
+                appendString(value.toString());
+            }
+        }
+
+        private void appendString(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+            line.append('"');
+        }
+
+        private void endLine() throws IOException {
+            line.append('}')
+                .append('\n');
+            writer.append(line);
+            line.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
+
+/**
+ * Determines the dominant value of each key of nodes or relationships which is declared as <code>&lt;default&gt;</code> of the GraphML key, the
+ * <code>&lt;data&gt;</code> elements matching the default are omitted.
+ * <p>
+ * The values of each key are counted by a Misra-Gries summary with {@link #COUNTERS} counters, i.e. the memory is bounded independently of the number
+ * of distinct values and any value occurring for more than <code>1/(COUNTERS+1)</code> of the elements is retained. As GraphML applies a default to
+ * every element without a <code>&lt;data&gt;</code> element for the key, a default is only declared for keys which are present on all elements.
+ */
+class KeyDefaults {
+
+    static final int COUNTERS = 8;
+
+    private final Map<String, Summary> summaries = new HashMap<>();
+
+    private long elements = 0;
+
+    /**
+     * Add the projected properties of a node or relationship.
+     *
+     * @param propertyContainer The {@link PropertyContainer}.
+     * @param filter            The {@link PropertyProjection.Filter} of the node or relationship.
+     */
+    void add(PropertyContainer propertyContainer, PropertyProjection.Filter filter) {
+        elements++;
+        for (Map.Entry<String, Object> entry : propertyContainer.getProperties()
+            .entrySet()) {
+            if (filter.isIncluded(entry.getKey())) {
+                offer(entry.getKey(), filter.getValue(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Add a value which is not a property of the last added element, e.g. its labels.
+     *
+     * @param key   The key.
+     * @param value The value.
+     */
+    void offer(String key, Object value) {
+        if (value != null) {
+            summaries.computeIfAbsent(key, k -> new Summary())
+                .offer(value);
+        }
+    }
+
+    /**
+     * Return the default values identified by their keys.
+     *
+     * @param keyTypes The inferred key types, no default is declared for keys with values of different types.
+     * @return The default values.
+     */
+    Map<String, Object> getDefaults(Map<String, Class<?>> keyTypes) {
+        Map<String, Object> defaults = new HashMap<>();
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            Class<?> keyType = keyTypes.get(entry.getKey());
+            Summary summary = entry.getValue();
+            if (keyType != null && MetaInformation.typeFor(keyType, MetaInformation.GRAPHML_ALLOWED) != null && summary.present == elements) {
+                Object value = summary.getDominantValue();
+                if (value != null) {
+                    defaults.put(entry.getKey(), value);
+                }
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * The Misra-Gries summary of the values of a key.
+     */
+    private static class Summary {
+
+        private final Object[] values = new Object[COUNTERS];
+
+        private final long[] counts = new long[COUNTERS];
+
+        private long present = 0;
+
+        private void offer(Object value) {
+            present++;
+            int free = -1;
+            for (int i = 0; i < COUNTERS; i++) {
+                if (counts[i] == 0) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (values[i].equals(value)) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            if (free >= 0) {
+                values[free] = value;
+                counts[free] = 1;
+                return;
+            }
+            for (int i = 0; i < COUNTERS; i++) {
+                if (--counts[i] == 0) {
+                    values[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Return the value with the highest count, <code>null</code> if no value has been counted more than once as a default would not reduce the
+         * size of the document.
+         */
+        private Object getDominantValue() {
+            int dominant = -1;
+            for (int i = 0; i < COUNTERS; i++) {
+                if (counts[i] > 1 && (dominant < 0 || counts[i] > counts[dominant])) {
+                    dominant = i;
+                }
+            }
+            return dominant >= 0 ? values[dominant] : null;
+        }
+    }
+}
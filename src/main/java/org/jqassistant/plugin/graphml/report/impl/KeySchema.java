@@ -0,0 +1,266 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.buschmais.jqassistant.core.rule.api.model.Rule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * The GraphML keys of nodes and relationships which are declared by the report properties of a rule, e.g.
+ *
+ * <pre>
+ * graphml.report.nodeKeys=fqn:string,name:string,effectiveLineCount:int
+ * graphml.report.edgeKeys=weight:int
+ * </pre>
+ * <p>
+ * If keys are declared the writer does not need to infer them from the graph. Instead the types of written values are verified lazily, i.e. if the
+ * class of a value differs from the one of the previous value of the key. Properties without a declared key are not written.
+ * <p>
+ * The schema also holds the {@link PropertyProjection} of the rule, inferred keys are restricted to the projected ones. If enabled by
+ * <code>graphml.report.keyDefaults</code> the dominant values of inferred keys are declared as their defaults (see {@link KeyDefaults}).
+ */
+class KeySchema {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeySchema.class);
+
+    static final String GRAPHML_NODE_KEYS = "graphml.report.nodeKeys";
+    static final String GRAPHML_EDGE_KEYS = "graphml.report.edgeKeys";
+    static final String GRAPHML_KEY_DEFAULTS = "graphml.report.keyDefaults";
+
+    static final String FOR_NODE = "node";
+    static final String FOR_EDGE = "edge";
+
+    private static final String LABELS_KEY = "labels";
+
+    private final String ruleId;
+
+    private final Map<String, String> nodeKeys;
+
+    private final Map<String, String> edgeKeys;
+
+    private final PropertyProjection projection;
+
+    private final boolean keyDefaults;
+
+    private Map<String, Object> nodeDefaults = emptyMap();
+
+    private Map<String, Object> edgeDefaults = emptyMap();
+
+    private final Map<String, DeclaredKey> declaredNodeKeys;
+
+    private final Map<String, DeclaredKey> declaredEdgeKeys;
+
+    private final Set<String> undeclaredNodeKeys = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> undeclaredEdgeKeys = ConcurrentHashMap.newKeySet();
+
+    private KeySchema(String ruleId, Map<String, String> nodeKeys, Map<String, String> edgeKeys, PropertyProjection projection, boolean keyDefaults) {
+        this.ruleId = ruleId;
+        this.nodeKeys = nodeKeys;
+        this.edgeKeys = edgeKeys;
+        this.projection = projection;
+        this.keyDefaults = keyDefaults;
+        this.declaredNodeKeys = declare(nodeKeys);
+        this.declaredEdgeKeys = declare(edgeKeys);
+    }
+
+    private static Map<String, DeclaredKey> declare(Map<String, String> keys) {
+        if (keys == null) {
+            return null;
+        }
+        Map<String, DeclaredKey> declaredKeys = new HashMap<>();
+        keys.forEach((key, type) -> declaredKeys.put(key, new DeclaredKey(type)));
+        return declaredKeys;
+    }
+
+    /**
+     * Create the {@link KeySchema} of a rule.
+     *
+     * @param rule             The {@link Rule}.
+     * @param reportProperties The report properties of the rule.
+     * @return The {@link KeySchema}.
+     */
+    static KeySchema of(Rule rule, Properties reportProperties) {
+        Map<String, String> nodeKeys = parse(reportProperties, GRAPHML_NODE_KEYS);
+        if (nodeKeys != null) {
+            nodeKeys.putIfAbsent(LABELS_KEY, "string");
+        }
+        Map<String, String> edgeKeys = parse(reportProperties, GRAPHML_EDGE_KEYS);
+        return new KeySchema(rule.getId(), nodeKeys, edgeKeys, PropertyProjection.of(reportProperties),
+            Boolean.parseBoolean(reportProperties.getProperty(GRAPHML_KEY_DEFAULTS, Boolean.FALSE.toString())));
+    }
+
+    /**
+     * Create a {@link KeySchema} without declared keys, i.e. all keys are inferred from the graph and all properties are written.
+     *
+     * @param rule The {@link Rule}.
+     * @return The {@link KeySchema}.
+     */
+    static KeySchema inferred(Rule rule) {
+        return new KeySchema(rule.getId(), null, null, PropertyProjection.all(), false);
+    }
+
+    private static Map<String, String> parse(Properties reportProperties, String property) {
+        String value = reportProperties.getProperty(property);
+        if (value == null) {
+            return null;
+        }
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String declaration : value.split(",")) {
+            String trimmedDeclaration = declaration.trim();
+            if (trimmedDeclaration.isEmpty()) {
+                continue;
+            }
+            int separator = trimmedDeclaration.indexOf(':');
+            String key = separator < 0 ? trimmedDeclaration : trimmedDeclaration.substring(0, separator)
+                .trim();
+            String type = separator < 0 ? "string" : trimmedDeclaration.substring(separator + 1)
+                .trim();
+            if (!MetaInformation.GRAPHML_ALLOWED.contains(type)) {
+                throw new IllegalArgumentException(
+                    "Unsupported type '" + type + "' for key '" + key + "' in " + property + ", allowed types are " + MetaInformation.GRAPHML_ALLOWED);
+            }
+            keys.put(key, type);
+        }
+        return keys;
+    }
+
+    /**
+     * Determine if node keys are declared.
+     *
+     * @return <code>true</code> if node keys are declared.
+     */
+    boolean hasNodeKeys() {
+        return nodeKeys != null;
+    }
+
+    /**
+     * Determine if edge keys are declared.
+     *
+     * @return <code>true</code> if edge keys are declared.
+     */
+    boolean hasEdgeKeys() {
+        return edgeKeys != null;
+    }
+
+    /**
+     * Return the declared node keys and their GraphML types.
+     *
+     * @return The node keys.
+     */
+    Map<String, String> getNodeKeys() {
+        return nodeKeys;
+    }
+
+    /**
+     * Return the declared edge keys and their GraphML types.
+     *
+     * @return The edge keys.
+     */
+    Map<String, String> getEdgeKeys() {
+        return edgeKeys;
+    }
+
+    /**
+     * Return the projection of the properties.
+     *
+     * @return The {@link PropertyProjection}.
+     */
+    PropertyProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Determine if the defaults of inferred keys shall be determined.
+     *
+     * @return <code>true</code> if key defaults are enabled.
+     */
+    boolean isKeyDefaults() {
+        return keyDefaults;
+    }
+
+    /**
+     * Set the defaults of the inferred keys.
+     *
+     * @param nodeDefaults The default values of node keys identified by their keys.
+     * @param edgeDefaults The default values of edge keys identified by their keys.
+     */
+    void setDefaults(Map<String, Object> nodeDefaults, Map<String, Object> edgeDefaults) {
+        this.nodeDefaults = nodeDefaults;
+        this.edgeDefaults = edgeDefaults;
+    }
+
+    /**
+     * Return the default value of a key.
+     *
+     * @param forType Either {@link #FOR_NODE} or {@link #FOR_EDGE}.
+     * @param key     The key.
+     * @return The default value or <code>null</code> if no default is declared.
+     */
+    Object getDefault(String forType, String key) {
+        return (FOR_NODE.equals(forType) ? nodeDefaults : edgeDefaults).get(key);
+    }
+
+    /**
+     * Verify that a value matches the declared key, a warning is logged once per undeclared key or once per declared key and mismatching value class.
+     *
+     * @param forType Either {@link #FOR_NODE} or {@link #FOR_EDGE}.
+     * @param key     The key.
+     * @param value   The value.
+     * @return <code>false</code> if keys are declared but not the given one, i.e. the value must not be written.
+     */
+    boolean verify(String forType, String key, Object value) {
+        Map<String, DeclaredKey> declaredKeys = FOR_NODE.equals(forType) ? declaredNodeKeys : declaredEdgeKeys;
+        if (declaredKeys == null) {
+            return true;
+        }
+        DeclaredKey declaredKey = declaredKeys.get(key);
+        if (declaredKey == null) {
+            Set<String> undeclaredKeys = FOR_NODE.equals(forType) ? undeclaredNodeKeys : undeclaredEdgeKeys;
+            if (value != null && !undeclaredKeys.contains(key) && undeclaredKeys.add(key)) {
+                LOGGER.warn("Key '{}' is not declared for {} elements in the report properties of '{}', its values are not written.", key, forType,
+                    ruleId);
+            }
+            return false;
+        }
+        // the values of a key usually share the same class, i.e. its type is only determined if the class changes
+        if (value != null && value.getClass() != declaredKey.verifiedClass) {
+            verify(key, declaredKey, value.getClass());
+        }
+        return true;
+    }
+
+    private void verify(String key, DeclaredKey declaredKey, Class<?> valueClass) {
+        String type = MetaInformation.typeFor(valueClass, MetaInformation.GRAPHML_ALLOWED);
+        if (!declaredKey.type.equals(type) && declaredKey.warnedClasses.add(valueClass)) {
+            LOGGER.warn("Key '{}' is declared with type '{}' in the report properties of '{}' but has a value of type '{}'.", key, declaredKey.type,
+                ruleId, valueClass.getName());
+        }
+        declaredKey.verifiedClass = valueClass;
+    }
+
+    /**
+     * A declared key, the class of the last verified value and the value classes a warning has been logged for.
+     */
+    private static class DeclaredKey {
+
+        private final String type;
+
+        private final Set<Class<?>> warnedClasses = ConcurrentHashMap.newKeySet();
+
+        private volatile Class<?> verifiedClass;
+
+        private DeclaredKey(String type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A set of node labels together with its serialized forms.
+ * <p>
+ * Instances are provided by {@link LabelSetCache} and shared by the nodes having the same labels as long as the cache is not full, i.e. they must not
+ * be compared by identity.
+ */
+class LabelSet {
+
+    private final Set<String> labels;
+
+    private final String labelsString;
+
+    private final byte[] escapedAttributeValue;
+
+    private final byte[] escapedText;
+
+    LabelSet(Set<String> labels, String labelsString) {
+        this.labels = Collections.unmodifiableSet(new LinkedHashSet<>(labels));
+        this.labelsString = labelsString;
+        this.escapedAttributeValue = GraphMLStreamWriter.escape(labelsString, true)
+            .getBytes(UTF_8);
+        this.escapedText = GraphMLStreamWriter.escape(labelsString, false)
+            .getBytes(UTF_8);
+    }
+
+    /**
+     * Return the labels.
+     *
+     * @return The labels.
+     */
+    Set<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Return the labels as string, e.g. <code>:Java:Type:Class</code>.
+     *
+     * @return The labels string.
+     */
+    String getLabelsString() {
+        return labelsString;
+    }
+
+    /**
+     * Return the labels string escaped for an XML attribute value and UTF-8 encoded.
+     *
+     * @return The escaped attribute value.
+     */
+    byte[] getEscapedAttributeValue() {
+        return escapedAttributeValue;
+    }
+
+    /**
+     * Return the labels string escaped for XML character data and UTF-8 encoded.
+     *
+     * @return The escaped text.
+     */
+    byte[] getEscapedText() {
+        return escapedText;
+    }
+
+    /**
+     * Determine if the set contains no labels.
+     *
+     * @return <code>true</code> if there are no labels.
+     */
+    boolean isEmpty() {
+        return labels.isEmpty();
+    }
+}
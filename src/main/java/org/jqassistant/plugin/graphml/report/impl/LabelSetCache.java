@@ -0,0 +1,42 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+
+/**
+ * Interns the label sets of nodes.
+ * <p>
+ * Graphs usually contain only a few distinct label combinations (e.g. <code>:Java:Type:Class</code>) across all nodes, therefore the serialized form of
+ * each combination is computed only once and shared between all reports of a run. The number of cached label sets is limited, label sets exceeding the
+ * limit are serialized on each lookup.
+ */
+class LabelSetCache {
+
+    private static final int MAX_SIZE = 10_000;
+
+    private final ConcurrentMap<Set<String>, LabelSet> labelSets = new ConcurrentHashMap<>();
+
+    /**
+     * Return the {@link LabelSet} of a node.
+     *
+     * @param node The {@link Node}.
+     * @return The {@link LabelSet}.
+     */
+    LabelSet get(Node node) {
+        Set<String> labels = node.getLabels();
+        LabelSet labelSet = labelSets.get(labels);
+        if (labelSet == null) {
+            labelSet = new LabelSet(labels, MetaInformation.getLabelsString(node));
+            if (labelSets.size() < MAX_SIZE) {
+                LabelSet existingLabelSet = labelSets.putIfAbsent(labelSet.getLabels(), labelSet);
+                if (existingLabelSet != null) {
+                    labelSet = existingLabelSet;
+                }
+            }
+        }
+        return labelSet;
+    }
+}
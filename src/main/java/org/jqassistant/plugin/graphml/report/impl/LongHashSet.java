@@ -0,0 +1,157 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+/**
+ * A set of primitive long values using open addressing with linear probing.
+ * <p>
+ * In contrast to a {@link java.util.Set} of {@link Long} values neither adding nor looking up a value allocates memory, which makes it suitable for
+ * indexing the ids of millions of graph elements.
+ */
+class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum number of values stored in the table, keeping the load factor <= 0.5 at {@link #MAX_CAPACITY}.
+     */
+    private static final int MAX_SIZE = MAX_CAPACITY >> 1;
+
+    private static final long EMPTY = 0L;
+
+    private long[] values;
+
+    private int mask;
+
+    private int size;
+
+    /**
+     * The value {@link #EMPTY} marks free slots and is therefore tracked separately.
+     */
+    private boolean containsEmpty;
+
+    /**
+     * Constructor.
+     */
+    LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize The expected number of values.
+     */
+    LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value The value.
+     * @return <code>true</code> if the value has not been contained before.
+     * @throws IllegalStateException If the maximum number of values is exceeded.
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int slot = slot(value);
+        while (values[slot] != EMPTY) {
+            if (values[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= MAX_SIZE) {
+            throw new IllegalStateException("Cannot add more than " + MAX_SIZE + " values to a LongHashSet.");
+        }
+        values[slot] = value;
+        size++;
+        // keep the load factor <= 0.5 for short probe sequences
+        if (size > values.length >> 1) {
+            rehash(values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Determine if a value is contained.
+     *
+     * @param value The value.
+     * @return <code>true</code> if the value is contained.
+     */
+    boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        int slot = slot(value);
+        long current;
+        while ((current = values[slot]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Return the number of contained values.
+     *
+     * @return The number of values.
+     */
+    int size() {
+        return size;
+    }
+
+    private int slot(long value) {
+        return (int) mix(value) & mask;
+    }
+
+    /**
+     * Spreads the bits of a value (the finalizer of MurmurHash3), ids are often sequential or negative for virtual elements.
+     */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldValues = values;
+        allocate(capacity);
+        for (long value : oldValues) {
+            if (value != EMPTY) {
+                int slot = slot(value);
+                while (values[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
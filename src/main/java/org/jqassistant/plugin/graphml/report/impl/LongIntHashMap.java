@@ -0,0 +1,151 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+/**
+ * A map from primitive long keys to primitive int values using open addressing with linear probing, see {@link LongHashSet}.
+ * <p>
+ * The map is not thread-safe for modifications but may be read concurrently once it has been populated.
+ */
+class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum number of entries stored in the table, keeping the load factor <= 0.5 at {@link #MAX_CAPACITY}.
+     */
+    private static final int MAX_SIZE = MAX_CAPACITY >> 1;
+
+    private static final long EMPTY = 0L;
+
+    private final int missingValue;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int mask;
+
+    private int size;
+
+    /**
+     * The key {@link #EMPTY} marks free slots and is therefore tracked separately.
+     */
+    private boolean containsEmpty;
+
+    private int emptyValue;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize The expected number of entries.
+     * @param missingValue The value returned by {@link #get(long)} for keys which are not contained.
+     */
+    LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Associate a value with a key if the key is not yet contained.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return <code>true</code> if the key has not been contained before.
+     * @throws IllegalStateException If the maximum number of entries is exceeded.
+     */
+    boolean putIfAbsent(long key, int value) {
+        if (key == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            emptyValue = value;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= MAX_SIZE) {
+            throw new IllegalStateException("Cannot add more than " + MAX_SIZE + " entries to a LongIntHashMap.");
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        // keep the load factor <= 0.5 for short probe sequences
+        if (size > keys.length >> 1) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Return the value associated with a key.
+     *
+     * @param key The key.
+     * @return The value or the missing value if the key is not contained.
+     */
+    int get(long key) {
+        if (key == EMPTY) {
+            return containsEmpty ? emptyValue : missingValue;
+        }
+        int slot = slot(key);
+        long current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Return the number of contained entries.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        return (int) LongHashSet.mix(key) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,148 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.rule.api.model.Rule;
+
+/**
+ * Collects the graphs of several rules which are written as a single GraphML document.
+ * <p>
+ * The graph of each rule is nested within a node representing the rule. A node which is part of the graphs of several rules is only contained in
+ * the graph of the first rule, the relationships of the other rules reference it by its id. A nested graph whose parent node has already been added
+ * is merged into the enclosing graph. All relationships are added once to the top-level graph. The ids of the added elements are tracked by
+ * {@link LongHashSet}s. The ids of the rule nodes are assigned when the merged graph is requested, they are below the smallest id of all added nodes
+ * as virtual nodes of the results also use negative ids.
+ */
+class MergedGraph {
+
+    static final String RULE_LABEL = "Rule";
+
+    static final String RULE_ID = "ruleId";
+
+    private final SubGraph graph = new SubGraph();
+
+    private final LongHashSet nodeIds = new LongHashSet();
+
+    private final LongHashSet relationshipIds = new LongHashSet();
+
+    private final List<SubGraph> ruleGraphs = new ArrayList<>();
+
+    private int rules = 0;
+
+    private int ruleNodeIds = 0;
+
+    private long lowestNodeId = 0;
+
+    private long nestedGraphs = 0;
+
+    /**
+     * Add the graph of a rule.
+     *
+     * @param rule     The {@link Rule}.
+     * @param subGraph The graph of the rule.
+     */
+    void add(Rule rule, SubGraph subGraph) {
+        rules++;
+        Node ruleNode = new Node();
+        ruleNode.setLabel(rule.getId());
+        ruleNode.getLabels()
+            .add(RULE_LABEL);
+        ruleNode.getProperties()
+            .put(RULE_ID, rule.getId());
+        SubGraph ruleGraph = new SubGraph();
+        ruleGraph.setParent(ruleNode);
+        ruleGraphs.add(ruleGraph);
+        graph.getSubGraphs()
+            .put((long) rules, ruleGraph);
+        Deque<SubGraph> targets = new ArrayDeque<>();
+        SubGraphTraversal.traverse(subGraph, new SubGraphTraversal.Visitor<RuntimeException>() {
+            @Override
+            public void enter(SubGraph source) {
+                SubGraph target = targets.isEmpty() ? ruleGraph : nested(targets.peek(), source);
+                targets.push(target);
+                for (Node node : source.getNodes()
+                    .values()) {
+                    if (addNodeId(node)) {
+                        target.getNodes()
+                            .put(node.getId(), node);
+                    }
+                }
+                for (Relationship relationship : source.getRelationships()
+                    .values()) {
+                    if (relationshipIds.add(relationship.getId())) {
+                        graph.getRelationships()
+                            .put(relationship.getId(), relationship);
+                    }
+                }
+            }
+
+            @Override
+            public void leave(SubGraph source) {
+                targets.pop();
+            }
+        });
+    }
+
+    /**
+     * Return the graph a nested graph is merged into, this is a copy nested within the enclosing graph unless its parent node has already been added.
+     */
+    private SubGraph nested(SubGraph enclosing, SubGraph source) {
+        Node parent = source.getParent();
+        if (parent != null && !addNodeId(parent)) {
+            return enclosing;
+        }
+        SubGraph nested = new SubGraph();
+        nested.setId(source.getId());
+        nested.setParent(parent);
+        // the ids of nested graphs are not necessarily unique across rules
+        enclosing.getSubGraphs()
+            .put(++nestedGraphs, nested);
+        return nested;
+    }
+
+    private boolean addNodeId(Node node) {
+        lowestNodeId = Math.min(lowestNodeId, node.getId());
+        return nodeIds.add(node.getId());
+    }
+
+    /**
+     * Return the merged graph, this assigns the ids of the rule nodes.
+     *
+     * @return The merged graph.
+     */
+    SubGraph getGraph() {
+        while (ruleNodeIds < ruleGraphs.size()) {
+            SubGraph ruleGraph = ruleGraphs.get(ruleNodeIds++);
+            long id = --lowestNodeId;
+            nodeIds.add(id);
+            ruleGraph.getParent()
+                .setId(id);
+            ruleGraph.setId(id);
+        }
+        return graph;
+    }
+
+    /**
+     * Return the number of added rules.
+     *
+     * @return The number of rules.
+     */
+    int getRules() {
+        return rules;
+    }
+
+    /**
+     * Return the number of distinct nodes of the added graphs.
+     *
+     * @return The number of nodes.
+     */
+    int getNodes() {
+        return nodeIds.size() - ruleNodeIds;
+    }
+}
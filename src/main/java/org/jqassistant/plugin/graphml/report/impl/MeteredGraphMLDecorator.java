@@ -0,0 +1,250 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+import org.jqassistant.plugin.graphml.report.api.StyledGraphMLDecorator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link GraphMLDecorator} recording the time spent in the callbacks of another decorator and the number of written and filtered elements in
+ * {@link ReportMetrics}.
+ * <p>
+ * The progress of writing a file is logged periodically.
+ */
+class MeteredGraphMLDecorator implements GraphMLDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeteredGraphMLDecorator.class);
+
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final GraphMLDecorator delegate;
+
+    private final ReportMetrics metrics;
+
+    private String fileName;
+
+    private long nodes;
+
+    private long edges;
+
+    private long lastProgress = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The {@link GraphMLDecorator} to delegate to.
+     * @param metrics  The {@link ReportMetrics}.
+     */
+    MeteredGraphMLDecorator(GraphMLDecorator delegate, ReportMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Create a {@link MeteredGraphMLDecorator} which is a {@link StyledGraphMLDecorator} if the given decorator is one.
+     *
+     * @param delegate The {@link GraphMLDecorator} to delegate to.
+     * @param metrics  The {@link ReportMetrics}.
+     * @return The {@link MeteredGraphMLDecorator}.
+     */
+    static MeteredGraphMLDecorator of(GraphMLDecorator delegate, ReportMetrics metrics) {
+        if (delegate instanceof StyledGraphMLDecorator) {
+            return new Styled((StyledGraphMLDecorator) delegate, metrics);
+        }
+        return new MeteredGraphMLDecorator(delegate, metrics);
+    }
+
+    @Override
+    public void initialize(Result<?> result, SubGraph subGraph, XMLStreamWriter xmlWriter, File file, Map<String, Object> properties) {
+        this.fileName = file.getName();
+        long start = System.nanoTime();
+        delegate.initialize(result, subGraph, xmlWriter, file, properties);
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public Map<String, String> getNamespaces() {
+        return delegate.getNamespaces();
+    }
+
+    @Override
+    public Map<String, String> getSchemaLocations() {
+        return delegate.getSchemaLocations();
+    }
+
+    /**
+     * Return the decorator which is delegated to.
+     *
+     * @return The {@link GraphMLDecorator}.
+     */
+    GraphMLDecorator getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isParallelizable() {
+        return delegate.isParallelizable();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return delegate.isCacheable();
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return delegate.isStreamable();
+    }
+
+    @Override
+    public void writeKeys() throws XMLStreamException {
+        long start = System.nanoTime();
+        delegate.writeKeys();
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public boolean isWriteNode(Node node) {
+        long start = System.nanoTime();
+        boolean writeNode = delegate.isWriteNode(node);
+        progress(metrics.addTime(ReportMetrics.Phase.DECORATOR, start));
+        if (writeNode) {
+            nodes++;
+            metrics.add(ReportMetrics.Counter.NODES, 1);
+        } else {
+            metrics.add(ReportMetrics.Counter.FILTERED_NODES, 1);
+        }
+        return writeNode;
+    }
+
+    @Override
+    public void writeNodeAttributes(Node node) throws XMLStreamException {
+        long start = System.nanoTime();
+        delegate.writeNodeAttributes(node);
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public void writeNodeElements(Node node) throws XMLStreamException {
+        long start = System.nanoTime();
+        delegate.writeNodeElements(node);
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public boolean isWriteRelationship(Relationship relationship) {
+        long start = System.nanoTime();
+        boolean writeRelationship = delegate.isWriteRelationship(relationship);
+        progress(metrics.addTime(ReportMetrics.Phase.DECORATOR, start));
+        if (writeRelationship) {
+            edges++;
+            metrics.add(ReportMetrics.Counter.EDGES, 1);
+        } else {
+            metrics.add(ReportMetrics.Counter.FILTERED_EDGES, 1);
+        }
+        return writeRelationship;
+    }
+
+    @Override
+    public void writeRelationshipAttributes(Relationship relationship) throws XMLStreamException {
+        long start = System.nanoTime();
+        delegate.writeRelationshipAttributes(relationship);
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public void writeRelationshipElements(Relationship relationship) throws XMLStreamException {
+        long start = System.nanoTime();
+        delegate.writeRelationshipElements(relationship);
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    @Override
+    public void close() {
+        long start = System.nanoTime();
+        delegate.close();
+        metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+    }
+
+    private void progress(long now) {
+        if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+            LOGGER.info("Writing GraphML report {}: {} nodes and {} edges written.", fileName, nodes, edges);
+        }
+    }
+
+    /**
+     * A {@link MeteredGraphMLDecorator} for a {@link StyledGraphMLDecorator}.
+     */
+    static class Styled extends MeteredGraphMLDecorator implements StyledGraphMLDecorator {
+
+        private final StyledGraphMLDecorator delegate;
+
+        private final ReportMetrics metrics;
+
+        private Styled(StyledGraphMLDecorator delegate, ReportMetrics metrics) {
+            super(delegate, metrics);
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String getNodeStyleClass(Set<String> labels) {
+            long start = System.nanoTime();
+            String styleClass = delegate.getNodeStyleClass(labels);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+            return styleClass;
+        }
+
+        @Override
+        public String getRelationshipStyleClass(String type) {
+            long start = System.nanoTime();
+            String styleClass = delegate.getRelationshipStyleClass(type);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+            return styleClass;
+        }
+
+        @Override
+        public void writeNodeStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            long start = System.nanoTime();
+            delegate.writeNodeStyleAttributes(styleClass, writer);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+        }
+
+        @Override
+        public boolean writeNodeStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            long start = System.nanoTime();
+            boolean styledElements = delegate.writeNodeStyleElements(styleClass, writer);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+            return styledElements;
+        }
+
+        @Override
+        public void writeRelationshipStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            long start = System.nanoTime();
+            delegate.writeRelationshipStyleAttributes(styleClass, writer);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+        }
+
+        @Override
+        public boolean writeRelationshipStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            long start = System.nanoTime();
+            boolean styledElements = delegate.writeRelationshipStyleElements(styleClass, writer);
+            metrics.addTime(ReportMetrics.Phase.DECORATOR, start);
+            return styledElements;
+        }
+    }
+}
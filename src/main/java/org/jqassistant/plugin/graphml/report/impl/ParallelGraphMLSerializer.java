@@ -0,0 +1,255 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
+
+/**
+ * Serializes chunks of the elements of a GraphML document in parallel and writes them to the document in the order of their submission, i.e. the
+ * output is identical to writing the elements sequentially.
+ * <p>
+ * Each chunk is serialized into its own buffer by a worker, i.e. a {@link GraphMLStreamWriter} with its own instance of the decorator, which therefore
+ * must be {@link GraphMLDecorator#isParallelizable() parallelizable}. The workers are reused for the chunks of the file, there are at most as many
+ * workers as chunks serialized at the same time, and share the {@link GraphMLStyles styles} rendered for the file. The chunks are serialized by the
+ * common {@link ForkJoinPool} or by the calling thread if the pool does not provide any parallelism, the number of chunks being serialized at the same
+ * time is limited to keep the memory usage bounded.
+ */
+class ParallelGraphMLSerializer {
+
+    static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Creates and initializes the decorator of a worker.
+     */
+    @FunctionalInterface
+    interface DecoratorFactory {
+
+        GraphMLDecorator create(XMLStreamWriter writer, ReportMetrics metrics);
+
+    }
+
+    /**
+     * Writes the elements of a chunk.
+     */
+    @FunctionalInterface
+    interface Chunk {
+
+        void write(XMLStreamWriter writer, GraphMLStyles styles) throws XMLStreamException;
+
+    }
+
+    /**
+     * Writes a single element of a chunk.
+     *
+     * @param <T> The type of the element.
+     */
+    @FunctionalInterface
+    interface ElementWriter<T> {
+
+        void write(XMLStreamWriter writer, GraphMLStyles styles, T element) throws XMLStreamException;
+
+    }
+
+    private final GraphMLStreamWriter writer;
+
+    private final GraphMLStyles styles;
+
+    private final DecoratorFactory decoratorFactory;
+
+    private final Executor executor;
+
+    private final int maxPendingChunks;
+
+    private final Deque<CompletableFuture<byte[]>> pendingChunks = new ArrayDeque<>();
+
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param writer           The {@link GraphMLStreamWriter} of the document.
+     * @param styles           The {@link GraphMLStyles} of the document, its metrics are the ones the metrics of the workers are added to.
+     * @param decoratorFactory The {@link DecoratorFactory}.
+     */
+    ParallelGraphMLSerializer(GraphMLStreamWriter writer, GraphMLStyles styles, DecoratorFactory decoratorFactory) {
+        this.writer = writer;
+        this.styles = styles;
+        this.decoratorFactory = decoratorFactory;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        // without parallelism the common pool would start a new thread for each chunk
+        this.executor = parallelism > 1 ? ForkJoinPool.commonPool() : Runnable::run;
+        this.maxPendingChunks = 2 * parallelism;
+    }
+
+    /**
+     * Submit elements which are split into chunks of {@link #CHUNK_SIZE} elements.
+     *
+     * @param elements      The elements.
+     * @param elementWriter The {@link ElementWriter}.
+     * @param <T>           The type of the elements.
+     * @throws XMLStreamException If a previously submitted chunk cannot be written.
+     */
+    <T> void submit(Iterable<T> elements, ElementWriter<T> elementWriter) throws XMLStreamException {
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (T element : elements) {
+            chunk.add(element);
+            if (chunk.size() == CHUNK_SIZE) {
+                submitChunk(chunk, elementWriter);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            submitChunk(chunk, elementWriter);
+        }
+    }
+
+    private <T> void submitChunk(List<T> chunk, ElementWriter<T> elementWriter) throws XMLStreamException {
+        submit((chunkWriter, chunkStyles) -> {
+            for (T element : chunk) {
+                elementWriter.write(chunkWriter, chunkStyles, element);
+            }
+        });
+    }
+
+    /**
+     * Submit a chunk, the oldest pending chunk is written first if the maximum number of pending chunks is reached.
+     *
+     * @param chunk The {@link Chunk}.
+     * @throws XMLStreamException If a previously submitted chunk cannot be written.
+     */
+    void submit(Chunk chunk) throws XMLStreamException {
+        if (pendingChunks.size() >= maxPendingChunks) {
+            writeChunk(pendingChunks.removeFirst());
+        }
+        pendingChunks.addLast(CompletableFuture.supplyAsync(() -> serialize(chunk), executor));
+    }
+
+    /**
+     * Write all pending chunks to the document.
+     *
+     * @throws XMLStreamException If a chunk cannot be written.
+     */
+    void flush() throws XMLStreamException {
+        try {
+            while (!pendingChunks.isEmpty()) {
+                writeChunk(pendingChunks.removeFirst());
+            }
+        } finally {
+            pendingChunks.forEach(pendingChunk -> pendingChunk.cancel(false));
+            pendingChunks.clear();
+        }
+    }
+
+    /**
+     * Close the workers and add their metrics to the ones of the document, pending chunks are discarded.
+     */
+    synchronized void close() {
+        pendingChunks.forEach(pendingChunk -> pendingChunk.cancel(false));
+        pendingChunks.clear();
+        closed = true;
+        ReportMetrics metrics = styles.getMetrics();
+        for (Worker worker : workers) {
+            if (metrics != null) {
+                metrics.add(worker.metrics);
+            }
+            // a busy worker is closed when it is released
+            if (idleWorkers.remove(worker)) {
+                worker.decorator.close();
+            }
+        }
+    }
+
+    private byte[] serialize(Chunk chunk) {
+        Worker worker = acquireWorker();
+        try {
+            return worker.serialize(chunk);
+        } catch (XMLStreamException e) {
+            throw new CompletionException(e);
+        } finally {
+            releaseWorker(worker);
+        }
+    }
+
+    private synchronized Worker acquireWorker() {
+        if (closed) {
+            throw new CancellationException("The serializer is closed.");
+        }
+        Worker worker = idleWorkers.pollLast();
+        if (worker == null) {
+            worker = new Worker();
+            workers.add(worker);
+        }
+        return worker;
+    }
+
+    private synchronized void releaseWorker(Worker worker) {
+        if (closed) {
+            worker.decorator.close();
+        } else {
+            idleWorkers.addLast(worker);
+        }
+    }
+
+    private void writeChunk(CompletableFuture<byte[]> pendingChunk) throws XMLStreamException {
+        byte[] chunk;
+        try {
+            chunk = pendingChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new XMLStreamException("Interrupted while serializing GraphML output.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof XMLStreamException ? (XMLStreamException) cause : new XMLStreamException("Cannot serialize GraphML output.", cause);
+        }
+        writer.writeFragment(chunk);
+    }
+
+    /**
+     * A writer with its own decorator and metrics serializing one chunk at a time.
+     */
+    private class Worker {
+
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        private final GraphMLStreamWriter chunkWriter = new GraphMLStreamWriter(outputStream);
+
+        private final ReportMetrics metrics;
+
+        private final GraphMLDecorator decorator;
+
+        private final GraphMLStyles chunkStyles;
+
+        private Worker() {
+            ReportMetrics fileMetrics = styles.getMetrics();
+            chunkWriter.setNamespaceContext(writer.getNamespaceContext());
+            metrics = fileMetrics != null ? new ReportMetrics(fileMetrics.getRuleId()) : null;
+            decorator = decoratorFactory.create(chunkWriter, metrics);
+            chunkStyles = styles.share(decorator, chunkWriter, metrics);
+        }
+
+        private byte[] serialize(Chunk chunk) throws XMLStreamException {
+            outputStream.reset();
+            chunk.write(chunkWriter, chunkStyles);
+            chunkWriter.flush();
+            return outputStream.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An {@link OutputStream} that splits the written data into blocks which are compressed in parallel.
+ * <p>
+ * Each block is written as a complete GZIP member, the concatenation of members is a valid GZIP file (RFC 1952) which can be read by any GZIP
+ * decompressor. The number of blocks being compressed at the same time is limited to keep the memory usage bounded, the buffers of written blocks
+ * are reused for the following ones.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream outputStream;
+
+    private final int level;
+
+    private final int maxPendingBlocks;
+
+    private final Executor executor;
+
+    private final Deque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+
+    /**
+     * The buffers of written blocks, bounded by the maximum number of pending blocks as only these hold buffers besides the current block.
+     */
+    private final Deque<byte[]> freeBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+
+    private int position = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param outputStream The {@link OutputStream} to write the compressed data to.
+     * @param level        The compression level (0-9, or -1 for the default level).
+     */
+    ParallelGzipOutputStream(OutputStream outputStream, int level) {
+        this(outputStream, level, DEFAULT_BLOCK_SIZE, 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param outputStream     The {@link OutputStream} to write the compressed data to.
+     * @param level            The compression level (0-9, or -1 for the default level).
+     * @param blockSize        The size of the blocks which are compressed independently.
+     * @param maxPendingBlocks The maximum number of blocks which are compressed at the same time.
+     */
+    ParallelGzipOutputStream(OutputStream outputStream, int level, int blockSize, int maxPendingBlocks) {
+        this.outputStream = outputStream;
+        this.level = level;
+        this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+        // without parallelism the common pool would start a new thread for each block
+        this.executor = ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool() : Runnable::run;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == block.length) {
+            submitBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == block.length) {
+                submitBlock();
+            }
+            int count = Math.min(len, block.length - position);
+            System.arraycopy(b, off, block, position, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Writes all blocks which are already compressed, the current block is kept open as compressing small blocks degrades the compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst()
+            .compressed.isDone()) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (position > 0 || pendingBlocks.isEmpty()) {
+                submitBlock();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+        } finally {
+            pendingBlocks.forEach(pendingBlock -> pendingBlock.compressed.cancel(false));
+            freeBlocks.clear();
+            outputStream.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        byte[] data = block;
+        int length = position;
+        block = freeBlocks.isEmpty() ? new byte[data.length] : freeBlocks.removeFirst();
+        position = 0;
+        pendingBlocks.addLast(new PendingBlock(data, CompletableFuture.supplyAsync(() -> compress(data, length), executor)));
+    }
+
+    private void writeBlock(PendingBlock pendingBlock) throws IOException {
+        try {
+            outputStream.write(pendingBlock.compressed.get());
+            freeBlocks.addLast(pendingBlock.data);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new InterruptedIOException("Interrupted while compressing GraphML output.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof UncheckedIOException ? ((UncheckedIOException) cause).getCause() : new IOException("Cannot compress GraphML output.", cause);
+        }
+    }
+
+    private byte[] compress(byte[] data, int length) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzipOutputStream.write(data, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * A block being compressed and its buffer which is released after the compressed data has been written.
+     */
+    private static class PendingBlock {
+
+        private final byte[] data;
+
+        private final CompletableFuture<byte[]> compressed;
+
+        private PendingBlock(byte[] data, CompletableFuture<byte[]> compressed) {
+            this.data = data;
+            this.compressed = compressed;
+        }
+    }
+}
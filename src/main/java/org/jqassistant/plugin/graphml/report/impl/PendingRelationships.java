@@ -0,0 +1,118 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * The relationships of a streamed result which are waiting for one of their nodes, identified by the id of that node.
+ * <p>
+ * The node ids are indexed by a {@link LongIntHashMap} instead of boxing them, the relationships waiting for the same node are linked in the order of
+ * their addition. The slots of removed relationships are reused. Instances are not thread-safe.
+ */
+class PendingRelationships {
+
+    private static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The chains of waiting relationships identified by node ids, a chain is kept after its relationships have been removed.
+     */
+    private final LongIntHashMap chains = new LongIntHashMap(INITIAL_CAPACITY, NONE);
+
+    private int[] heads = new int[INITIAL_CAPACITY];
+
+    private int[] tails = new int[INITIAL_CAPACITY];
+
+    private Relationship[] relationships = new Relationship[INITIAL_CAPACITY];
+
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    private int usedSlots = 0;
+
+    private int freeSlot = NONE;
+
+    private int size = 0;
+
+    /**
+     * Add a relationship waiting for a node.
+     *
+     * @param nodeId       The id of the node.
+     * @param relationship The {@link Relationship}.
+     */
+    void add(long nodeId, Relationship relationship) {
+        int chain = chains.get(nodeId);
+        if (chain == NONE) {
+            chain = chains.size();
+            chains.putIfAbsent(nodeId, chain);
+            if (chain == heads.length) {
+                heads = Arrays.copyOf(heads, chain << 1);
+                tails = Arrays.copyOf(tails, chain << 1);
+            }
+            heads[chain] = NONE;
+        }
+        int slot = allocateSlot();
+        relationships[slot] = relationship;
+        next[slot] = NONE;
+        if (heads[chain] == NONE) {
+            heads[chain] = slot;
+        } else {
+            next[tails[chain]] = slot;
+        }
+        tails[chain] = slot;
+        size++;
+    }
+
+    /**
+     * Remove the relationships waiting for a node.
+     *
+     * @param nodeId The id of the node.
+     * @return The waiting relationships in the order of their addition.
+     */
+    List<Relationship> remove(long nodeId) {
+        int chain = chains.get(nodeId);
+        if (chain == NONE || heads[chain] == NONE) {
+            return emptyList();
+        }
+        List<Relationship> removed = new ArrayList<>();
+        int slot = heads[chain];
+        while (slot != NONE) {
+            removed.add(relationships[slot]);
+            relationships[slot] = null;
+            int following = next[slot];
+            next[slot] = freeSlot;
+            freeSlot = slot;
+            slot = following;
+        }
+        heads[chain] = NONE;
+        size -= removed.size();
+        return removed;
+    }
+
+    /**
+     * Return the number of waiting relationships.
+     *
+     * @return The number of relationships.
+     */
+    int size() {
+        return size;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NONE) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (usedSlots == relationships.length) {
+            relationships = Arrays.copyOf(relationships, usedSlots << 1);
+            next = Arrays.copyOf(next, usedSlots << 1);
+        }
+        return usedSlots++;
+    }
+}
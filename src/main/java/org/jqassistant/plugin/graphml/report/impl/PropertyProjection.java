@@ -0,0 +1,237 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+
+/**
+ * Restricts the properties of nodes and relationships which are written to a report as declared by the report properties of a rule, e.g.
+ *
+ * <pre>
+ * graphml.report.includeProperties=fqn,name
+ * graphml.report.includeProperties.Method=signature
+ * graphml.report.excludeProperties.Type=fileName
+ * graphml.report.maxValueLength=80
+ * </pre>
+ * <p>
+ * The suffix of a scoped list is a node label or a relationship type. The keys included for an element are the union of the global list and the
+ * scoped lists matching its labels or type, all keys are included if none of these lists is declared. Excluded keys are removed afterwards. String
+ * values exceeding the maximum length are truncated and marked with {@link #TRUNCATION_MARKER}.
+ * <p>
+ * The {@link Filter} of a label set or relationship type is resolved once, instances are therefore bound to a single file but may be shared by the
+ * threads writing it.
+ */
+class PropertyProjection {
+
+    static final String GRAPHML_INCLUDE_PROPERTIES = "graphml.report.includeProperties";
+    static final String GRAPHML_EXCLUDE_PROPERTIES = "graphml.report.excludeProperties";
+    static final String GRAPHML_MAX_VALUE_LENGTH = "graphml.report.maxValueLength";
+
+    static final String TRUNCATION_MARKER = "...";
+
+    /**
+     * Includes all properties, the filter caches are never used and the instance may therefore be shared.
+     */
+    private static final PropertyProjection ALL = new PropertyProjection(null, emptySet(), emptyMap(), emptyMap(), Integer.MAX_VALUE);
+
+    private final Set<String> includes;
+
+    private final Set<String> excludes;
+
+    private final Map<String, Set<String>> scopedIncludes;
+
+    private final Map<String, Set<String>> scopedExcludes;
+
+    private final int maxValueLength;
+
+    private final Filter defaultFilter;
+
+    private final Map<Set<String>, Filter> nodeFilters = new ConcurrentHashMap<>();
+
+    private final Map<String, Filter> relationshipFilters = new ConcurrentHashMap<>();
+
+    private PropertyProjection(Set<String> includes, Set<String> excludes, Map<String, Set<String>> scopedIncludes, Map<String, Set<String>> scopedExcludes,
+        int maxValueLength) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.scopedIncludes = scopedIncludes;
+        this.scopedExcludes = scopedExcludes;
+        this.maxValueLength = maxValueLength;
+        this.defaultFilter = new Filter(includes, excludes, maxValueLength);
+    }
+
+    /**
+     * Create the {@link PropertyProjection} of a rule.
+     *
+     * @param reportProperties The report properties of the rule.
+     * @return The {@link PropertyProjection}.
+     */
+    static PropertyProjection of(Properties reportProperties) {
+        Map<String, Set<String>> scopedIncludes = new HashMap<>();
+        Map<String, Set<String>> scopedExcludes = new HashMap<>();
+        for (String name : reportProperties.stringPropertyNames()) {
+            if (name.startsWith(GRAPHML_INCLUDE_PROPERTIES + ".")) {
+                scopedIncludes.put(name.substring(GRAPHML_INCLUDE_PROPERTIES.length() + 1), parse(reportProperties.getProperty(name)));
+            } else if (name.startsWith(GRAPHML_EXCLUDE_PROPERTIES + ".")) {
+                scopedExcludes.put(name.substring(GRAPHML_EXCLUDE_PROPERTIES.length() + 1), parse(reportProperties.getProperty(name)));
+            }
+        }
+        String includes = reportProperties.getProperty(GRAPHML_INCLUDE_PROPERTIES);
+        String excludes = reportProperties.getProperty(GRAPHML_EXCLUDE_PROPERTIES);
+        return new PropertyProjection(includes != null ? parse(includes) : null, excludes != null ? parse(excludes) : emptySet(), scopedIncludes,
+            scopedExcludes, getMaxValueLength(reportProperties));
+    }
+
+    /**
+     * Create a {@link PropertyProjection} which includes all properties without truncating them.
+     *
+     * @return The {@link PropertyProjection}.
+     */
+    static PropertyProjection all() {
+        return ALL;
+    }
+
+    private static Set<String> parse(String value) {
+        Set<String> keys = new HashSet<>();
+        for (String key : value.split(",")) {
+            String trimmedKey = key.trim();
+            if (!trimmedKey.isEmpty()) {
+                keys.add(trimmedKey);
+            }
+        }
+        return keys;
+    }
+
+    private static int getMaxValueLength(Properties reportProperties) {
+        String value = reportProperties.getProperty(GRAPHML_MAX_VALUE_LENGTH);
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        int maxValueLength = Integer.parseInt(value.trim());
+        if (maxValueLength < 1) {
+            throw new IllegalArgumentException("The value of " + GRAPHML_MAX_VALUE_LENGTH + " must be greater than 0 but is " + maxValueLength);
+        }
+        return maxValueLength;
+    }
+
+    /**
+     * Return the {@link Filter} for nodes with the given labels.
+     *
+     * @param labels The labels.
+     * @return The {@link Filter}.
+     */
+    Filter forNode(Set<String> labels) {
+        if (scopedIncludes.isEmpty() && scopedExcludes.isEmpty()) {
+            return defaultFilter;
+        }
+        Filter filter = nodeFilters.get(labels);
+        if (filter == null) {
+            filter = resolve(labels);
+            nodeFilters.put(Set.copyOf(labels), filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Return the {@link Filter} for relationships with the given type.
+     *
+     * @param type The relationship type.
+     * @return The {@link Filter}.
+     */
+    Filter forRelationship(String type) {
+        if (scopedIncludes.isEmpty() && scopedExcludes.isEmpty()) {
+            return defaultFilter;
+        }
+        return relationshipFilters.computeIfAbsent(type, t -> resolve(Set.of(t)));
+    }
+
+    private Filter resolve(Set<String> scopes) {
+        Set<String> resolvedIncludes = includes != null ? new HashSet<>(includes) : null;
+        Set<String> resolvedExcludes = new HashSet<>(excludes);
+        for (String scope : scopes) {
+            Set<String> scopeIncludes = scopedIncludes.get(scope);
+            if (scopeIncludes != null) {
+                if (resolvedIncludes == null) {
+                    resolvedIncludes = new HashSet<>();
+                }
+                resolvedIncludes.addAll(scopeIncludes);
+            }
+            resolvedExcludes.addAll(scopedExcludes.getOrDefault(scope, emptySet()));
+        }
+        return new Filter(resolvedIncludes, resolvedExcludes, maxValueLength);
+    }
+
+    /**
+     * The projection of the properties of a label set or relationship type.
+     */
+    static class Filter {
+
+        private final Set<String> includes;
+
+        private final Set<String> excludes;
+
+        private final int maxValueLength;
+
+        /**
+         * The hash code, filters are part of the keys of the {@link FragmentCache}.
+         */
+        private final int hash;
+
+        private Filter(Set<String> includes, Set<String> excludes, int maxValueLength) {
+            this.includes = includes;
+            this.excludes = excludes;
+            this.maxValueLength = maxValueLength;
+            this.hash = Objects.hash(includes, excludes, maxValueLength);
+        }
+
+        /**
+         * Determine if a property is written.
+         *
+         * @param key The key of the property.
+         * @return <code>true</code> if the property is written.
+         */
+        boolean isIncluded(String key) {
+            return (includes == null || includes.contains(key)) && !excludes.contains(key);
+        }
+
+        /**
+         * Return the value of a property as it is written, i.e. strings exceeding the maximum length are truncated.
+         *
+         * @param value The value.
+         * @return The written value.
+         */
+        Object getValue(Object value) {
+            if (!(value instanceof String) || ((String) value).length() <= maxValueLength) {
+                return value;
+            }
+            String string = (String) value;
+            int end = Character.isHighSurrogate(string.charAt(maxValueLength - 1)) ? maxValueLength - 1 : maxValueLength;
+            return string.substring(0, end) + TRUNCATION_MARKER;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Filter filter = (Filter) o;
+            return hash == filter.hash && maxValueLength == filter.maxValueLength && Objects.equals(includes, filter.includes) && excludes.equals(
+                filter.excludes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
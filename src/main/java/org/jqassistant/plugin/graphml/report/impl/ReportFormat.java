@@ -0,0 +1,70 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+
+/**
+ * The supported formats of report files, selected by the report properties of a rule.
+ */
+enum ReportFormat {
+
+    /**
+     * GraphML documents written by the {@link XmlGraphMLWriter}.
+     */
+    GRAPHML("graphml", ".graphml", "GraphML"),
+
+    /**
+     * JSON Lines written by the {@link JsonLinesGraphWriter}.
+     */
+    JSONL("jsonl", ".jsonl", "JSON Lines");
+
+    static final String GRAPHML_FORMAT = "graphml.report.format";
+
+    private final String name;
+
+    private final String fileExtension;
+
+    private final String label;
+
+    ReportFormat(String name, String fileExtension, String label) {
+        this.name = name;
+        this.fileExtension = fileExtension;
+        this.label = label;
+    }
+
+    /**
+     * Return the extension of the report files, without the one of the compression.
+     *
+     * @return The file extension.
+     */
+    String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Return the label of the report files which is used for registering them.
+     *
+     * @return The label.
+     */
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     * Resolve the {@link ReportFormat} of a rule.
+     *
+     * @param reportProperties The report properties of the rule.
+     * @return The {@link ReportFormat}, {@link #GRAPHML} if none is declared.
+     */
+    static ReportFormat of(Properties reportProperties) {
+        String name = reportProperties.getProperty(GRAPHML_FORMAT);
+        if (name == null) {
+            return GRAPHML;
+        }
+        for (ReportFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported format '" + name + "' in " + GRAPHML_FORMAT + ", supported values are graphml and jsonl.");
+    }
+}
@@ -0,0 +1,263 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The metrics of the GraphML report of a rule, i.e. the time spent in each phase and the number of written elements and bytes.
+ * <p>
+ * The metrics are recorded by the thread creating the sub graph and afterwards by the thread writing the files, instances are not thread-safe.
+ */
+class ReportMetrics {
+
+    /**
+     * The phases of creating a report.
+     */
+    enum Phase {
+
+        /**
+         * Creating the sub graph from the result.
+         */
+        SUB_GRAPH("subGraph"),
+
+        /**
+         * Aggregating, truncating and sharding the sub graph.
+         */
+        PREPARE("prepare"),
+
+        /**
+         * Indexing the sub graph and inferring the keys.
+         */
+        KEY_INFERENCE("keyInference"),
+
+        /**
+         * Opening the file and writing the header and the keys.
+         */
+        HEADER("header"),
+
+        /**
+         * Writing the nodes including the decorator callbacks.
+         */
+        NODES("nodes"),
+
+        /**
+         * Writing the edges including the decorator callbacks.
+         */
+        EDGES("edges"),
+
+        /**
+         * Executing the decorator callbacks.
+         */
+        DECORATOR("decorator"),
+
+        /**
+         * Writing the footer, flushing and closing the file.
+         */
+        CLOSE("close");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Return the name used in the metrics file.
+         *
+         * @return The name.
+         */
+        String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The counters of a report.
+     */
+    enum Counter {
+
+        NODES("nodes"),
+
+        EDGES("edges"),
+
+        FILTERED_NODES("filteredNodes"),
+
+        FILTERED_EDGES("filteredEdges"),
+
+        BYTES("bytes"),
+
+        ALLOCATED_BYTES("allocatedBytes"),
+
+        FRAGMENT_CACHE_HITS("fragmentCacheHits"),
+
+        FRAGMENT_CACHE_MISSES("fragmentCacheMisses");
+
+        private final String name;
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Return the name used in the metrics file.
+         *
+         * @return The name.
+         */
+        String getName() {
+            return name;
+        }
+    }
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String ruleId;
+
+    private final List<String> files = new ArrayList<>();
+
+    private final long[] nanos = new long[Phase.values().length];
+
+    private final long[] counters = new long[Counter.values().length];
+
+    private boolean skipped;
+
+    /**
+     * Constructor.
+     *
+     * @param ruleId The id of the rule.
+     */
+    ReportMetrics(String ruleId) {
+        this.ruleId = ruleId;
+    }
+
+    /**
+     * Return the id of the rule.
+     *
+     * @return The rule id.
+     */
+    String getRuleId() {
+        return ruleId;
+    }
+
+    /**
+     * Return the names of the files of the report.
+     *
+     * @return The file names.
+     */
+    List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * Determine if writing the report has been skipped as it is unchanged.
+     *
+     * @return <code>true</code> if the report has been skipped.
+     */
+    boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Mark the report as skipped.
+     *
+     * @param skipped <code>true</code> if the report has been skipped.
+     */
+    void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    /**
+     * Add the time elapsed since a start time to a phase.
+     *
+     * @param phase The {@link Phase}.
+     * @param start The start time as returned by {@link System#nanoTime()}.
+     * @return The current time as returned by {@link System#nanoTime()}, e.g. as start time of the next phase.
+     */
+    long addTime(Phase phase, long start) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * Add nanoseconds to a phase.
+     *
+     * @param phase The {@link Phase}.
+     * @param time  The nanoseconds.
+     */
+    void addNanos(Phase phase, long time) {
+        nanos[phase.ordinal()] += time;
+    }
+
+    /**
+     * Return the nanoseconds spent in a phase.
+     *
+     * @param phase The {@link Phase}.
+     * @return The nanoseconds.
+     */
+    long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Add a value to a counter.
+     *
+     * @param counter The {@link Counter}.
+     * @param value   The value.
+     */
+    void add(Counter counter, long value) {
+        counters[counter.ordinal()] += value;
+    }
+
+    /**
+     * Return the value of a counter.
+     *
+     * @param counter The {@link Counter}.
+     * @return The value.
+     */
+    long get(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * Add the metrics of another report, e.g. for building the totals of a run.
+     *
+     * @param other The other {@link ReportMetrics}.
+     */
+    void add(ReportMetrics other) {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] += other.nanos[i];
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread so far.
+     *
+     * @return The number of bytes or -1 if the JVM does not support measuring allocations.
+     */
+    static long allocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread()
+                    .getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add the bytes allocated by the current thread since a previous measurement.
+     *
+     * @param start The number of bytes as returned by {@link #allocatedBytes()}.
+     */
+    void addAllocatedBytes(long start) {
+        if (start >= 0) {
+            add(Counter.ALLOCATED_BYTES, allocatedBytes() - start);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Defines how report files are written to the file system.
+ */
+class ReportOutput {
+
+    /**
+     * Uncompressed output.
+     */
+    static final ReportOutput UNCOMPRESSED = new ReportOutput(Compression.NONE, Deflater.DEFAULT_COMPRESSION, XmlStreamWriterType.STAX);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Compression compression;
+
+    private final int compressionLevel;
+
+    private final XmlStreamWriterType xmlStreamWriterType;
+
+    private final FileOutput fileOutput;
+
+    /**
+     * Constructor.
+     *
+     * @param compression         The {@link Compression}.
+     * @param compressionLevel    The compression level (0-9, or -1 for the default level).
+     * @param xmlStreamWriterType The {@link XmlStreamWriterType}.
+     */
+    ReportOutput(Compression compression, int compressionLevel, XmlStreamWriterType xmlStreamWriterType) {
+        this(compression, compressionLevel, xmlStreamWriterType, FileOutput.STREAM);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param compression         The {@link Compression}.
+     * @param compressionLevel    The compression level (0-9, or -1 for the default level).
+     * @param xmlStreamWriterType The {@link XmlStreamWriterType}.
+     * @param fileOutput          The {@link FileOutput}.
+     */
+    ReportOutput(Compression compression, int compressionLevel, XmlStreamWriterType xmlStreamWriterType, FileOutput fileOutput) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The compression level must be between 0 and 9 but is " + compressionLevel);
+        }
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+        this.xmlStreamWriterType = xmlStreamWriterType;
+        this.fileOutput = fileOutput;
+    }
+
+    /**
+     * Return the extension which is appended to file names according to the {@link Compression}.
+     *
+     * @return The file extension.
+     */
+    String getFileExtension() {
+        return compression.getFileExtension();
+    }
+
+    /**
+     * Open a buffered {@link OutputStream} for writing a report file.
+     *
+     * @param file The file.
+     * @return The {@link OutputStream}.
+     * @throws IOException If the file cannot be opened.
+     */
+    OutputStream open(File file) throws IOException {
+        OutputStream fileOutputStream = fileOutput.open(file);
+        if (compression == Compression.NONE && fileOutput.isBuffered()) {
+            return fileOutputStream;
+        }
+        try {
+            return new BufferedOutputStream(compression.wrap(fileOutputStream, compressionLevel), BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            fileOutputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create the {@link XMLStreamWriter} for an {@link OutputStream} opened by {@link #open(File)}.
+     *
+     * @param outputStream The {@link OutputStream}.
+     * @return The {@link XMLStreamWriter}.
+     * @throws XMLStreamException If the writer cannot be created.
+     */
+    XMLStreamWriter createXMLStreamWriter(OutputStream outputStream) throws XMLStreamException {
+        return xmlStreamWriterType.create(outputStream);
+    }
+}
@@ -0,0 +1,77 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+/**
+ * Depth-first traversal of a {@link SubGraph} and its nested sub graphs.
+ * <p>
+ * The traversal uses an explicit stack instead of recursion, therefore deeply nested graphs (e.g. recursive package hierarchies) do not exhaust the
+ * call stack. Only the path from the root to the current sub graph is retained. The sub graphs are visited in the same order as by a recursive
+ * pre-order traversal, i.e. in the order in which they are written.
+ */
+final class SubGraphTraversal {
+
+    private SubGraphTraversal() {
+    }
+
+    /**
+     * The callbacks of a traversal.
+     *
+     * @param <E> The type of exception thrown by the callbacks.
+     */
+    interface Visitor<E extends Exception> {
+
+        /**
+         * Called for a sub graph before its nested sub graphs are visited.
+         *
+         * @param subGraph The {@link SubGraph}.
+         * @throws E If visiting fails.
+         */
+        void enter(SubGraph subGraph) throws E;
+
+        /**
+         * Called for a sub graph after its nested sub graphs have been visited.
+         *
+         * @param subGraph The {@link SubGraph}.
+         * @throws E If visiting fails.
+         */
+        default void leave(SubGraph subGraph) throws E {
+        }
+    }
+
+    /**
+     * Traverse a {@link SubGraph} including all nested sub graphs.
+     *
+     * @param graph   The {@link SubGraph}.
+     * @param visitor The {@link Visitor}.
+     * @param <E>     The type of exception thrown by the visitor.
+     * @throws E If visiting fails.
+     */
+    static <E extends Exception> void traverse(SubGraph graph, Visitor<E> visitor) throws E {
+        Deque<SubGraph> path = new ArrayDeque<>();
+        Deque<Iterator<SubGraph>> nested = new ArrayDeque<>();
+        visitor.enter(graph);
+        path.push(graph);
+        nested.push(graph.getSubGraphs()
+            .values()
+            .iterator());
+        while (!nested.isEmpty()) {
+            Iterator<SubGraph> iterator = nested.peek();
+            if (iterator.hasNext()) {
+                SubGraph subGraph = iterator.next();
+                visitor.enter(subGraph);
+                path.push(subGraph);
+                nested.push(subGraph.getSubGraphs()
+                    .values()
+                    .iterator());
+            } else {
+                nested.pop();
+                visitor.leave(path.pop());
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Arrays;
+
+/**
+ * Selects the elements with the highest scores in a single pass using a bounded min-heap, i.e. in <code>O(n log k)</code> time and <code>O(k)</code>
+ * memory.
+ * <p>
+ * Elements are represented by int indexes and ranked by a primary and a secondary score, the element offered first wins on equal scores.
+ */
+class TopK {
+
+    private final int capacity;
+
+    private final int[] elements;
+
+    private final double[] primaryScores;
+
+    private final long[] secondaryScores;
+
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The maximum number of selected elements.
+     */
+    TopK(int capacity) {
+        this.capacity = capacity;
+        this.elements = new int[capacity];
+        this.primaryScores = new double[capacity];
+        this.secondaryScores = new long[capacity];
+    }
+
+    /**
+     * Offer an element.
+     *
+     * @param element        The element.
+     * @param primaryScore   The primary score.
+     * @param secondaryScore The secondary score, compared if the primary scores are equal.
+     */
+    void offer(int element, double primaryScore, long secondaryScore) {
+        if (size < capacity) {
+            set(size, element, primaryScore, secondaryScore);
+            siftUp(size++);
+        } else if (capacity > 0 && compare(primaryScore, secondaryScore, 0) > 0) {
+            set(0, element, primaryScore, secondaryScore);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Return the selected elements in ascending order.
+     *
+     * @return The elements.
+     */
+    int[] getElements() {
+        int[] result = Arrays.copyOf(elements, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void siftUp(int index) {
+        int current = index;
+        while (current > 0) {
+            int parent = (current - 1) >>> 1;
+            if (compare(primaryScores[current], secondaryScores[current], parent) >= 0) {
+                return;
+            }
+            swap(current, parent);
+            current = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int current = index;
+        while (true) {
+            int smallest = current;
+            int left = 2 * current + 1;
+            int right = left + 1;
+            if (left < size && compare(primaryScores[left], secondaryScores[left], smallest) < 0) {
+                smallest = left;
+            }
+            if (right < size && compare(primaryScores[right], secondaryScores[right], smallest) < 0) {
+                smallest = right;
+            }
+            if (smallest == current) {
+                return;
+            }
+            swap(current, smallest);
+            current = smallest;
+        }
+    }
+
+    private int compare(double primaryScore, long secondaryScore, int index) {
+        int result = Double.compare(primaryScore, primaryScores[index]);
+        return result != 0 ? result : Long.compare(secondaryScore, secondaryScores[index]);
+    }
+
+    private void set(int index, int element, double primaryScore, long secondaryScore) {
+        elements[index] = element;
+        primaryScores[index] = primaryScore;
+        secondaryScores[index] = secondaryScore;
+    }
+
+    private void swap(int index1, int index2) {
+        int element = elements[index1];
+        double primaryScore = primaryScores[index1];
+        long secondaryScore = secondaryScores[index1];
+        set(index1, elements[index2], primaryScores[index2], secondaryScores[index2]);
+        set(index2, element, primaryScore, secondaryScore);
+    }
+}
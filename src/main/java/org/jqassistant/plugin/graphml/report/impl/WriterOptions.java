@@ -0,0 +1,83 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+/**
+ * The options of the {@link XmlGraphMLWriter} configured by the properties of the GraphML plugin.
+ * <p>
+ * Instances are immutable, options deviating from the {@link #DEFAULT defaults} are set by the <code>with</code> methods.
+ */
+class WriterOptions {
+
+    /**
+     * Uncompressed and sequential output without caching fragments.
+     */
+    static final WriterOptions DEFAULT = new WriterOptions(ReportOutput.UNCOMPRESSED, false, null);
+
+    private final ReportOutput reportOutput;
+
+    private final boolean parallel;
+
+    private final FragmentCache fragmentCache;
+
+    private WriterOptions(ReportOutput reportOutput, boolean parallel, FragmentCache fragmentCache) {
+        this.reportOutput = reportOutput;
+        this.parallel = parallel;
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Return the options with another {@link ReportOutput}.
+     *
+     * @param reportOutput The {@link ReportOutput}.
+     * @return The {@link WriterOptions}.
+     */
+    WriterOptions withReportOutput(ReportOutput reportOutput) {
+        return new WriterOptions(reportOutput, parallel, fragmentCache);
+    }
+
+    /**
+     * Return the options with parallel serialization enabled or disabled.
+     *
+     * @param parallel If <code>true</code> the nodes and relationships are written in parallel if supported by the decorator and the XML writer.
+     * @return The {@link WriterOptions}.
+     */
+    WriterOptions withParallel(boolean parallel) {
+        return new WriterOptions(reportOutput, parallel, fragmentCache);
+    }
+
+    /**
+     * Return the options with another {@link FragmentCache}.
+     *
+     * @param fragmentCache The {@link FragmentCache} shared by the reports of a run or <code>null</code> if fragments are not cached.
+     * @return The {@link WriterOptions}.
+     */
+    WriterOptions withFragmentCache(FragmentCache fragmentCache) {
+        return new WriterOptions(reportOutput, parallel, fragmentCache);
+    }
+
+    /**
+     * Return the {@link ReportOutput}.
+     *
+     * @return The {@link ReportOutput}.
+     */
+    ReportOutput getReportOutput() {
+        return reportOutput;
+    }
+
+    /**
+     * Determine if the nodes and relationships are written in parallel.
+     *
+     * @return <code>true</code> if parallel serialization is enabled.
+     */
+    boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Return the {@link FragmentCache}.
+     *
+     * @return The {@link FragmentCache} or <code>null</code> if fragments are not cached.
+     */
+    FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+}
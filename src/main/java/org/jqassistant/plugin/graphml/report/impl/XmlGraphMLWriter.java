@@ -1,45 +1,62 @@
 package org.jqassistant.plugin.graphml.report.impl;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
+import com.buschmais.jqassistant.core.report.api.ReportException;
+import com.buschmais.jqassistant.core.report.api.graph.SubGraphFactory;
+import com.buschmais.jqassistant.core.report.api.graph.model.Identifiable;
 import com.buschmais.jqassistant.core.report.api.graph.model.Node;
 import com.buschmais.jqassistant.core.report.api.graph.model.PropertyContainer;
 import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Column;
 import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.report.api.model.Row;
 import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
 
 import org.jqassistant.plugin.graphml.report.api.GraphMLDecorator;
 
-import static org.jqassistant.plugin.graphml.report.impl.MetaInformation.getLabelsString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.emptyMap;
 
 /**
+ * Writes a {@link SubGraph} as GraphML document.
+ * <p>
+ * Instances do not hold any state between invocations of {@link #write(Result, SubGraph, File)} except thread-safe caches shared by all reports (e.g.
+ * {@link LabelSetCache}) and may be used by several threads concurrently.
+ *
  * @author mh
  * @since 21.01.14
  */
 class XmlGraphMLWriter {
 
-    private static final String GRAPHML_DECORATOR = "graphml.report.decorator";
-
-    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+    private static final Logger LOGGER = LoggerFactory.getLogger(XmlGraphMLWriter.class);
 
-    private final ClassHelper classHelper;
+    private static final String FOR_GRAPH = "graph";
 
-    private final Class<? extends GraphMLDecorator> defaultDecoratorClass;
+    private final GraphMLDecorators decorators;
 
     private final Map<String, Object> properties;
 
+    private final ReportOutput reportOutput;
+
+    private final boolean parallel;
+
+    private final FragmentCache fragmentCache;
+
+    private final LabelSetCache labelSetCache = new LabelSetCache();
+
     /**
      * Constructor.
      *
@@ -48,96 +65,342 @@ class XmlGraphMLWriter {
      * @param properties            The properties of the GraphML plugin.
      */
     XmlGraphMLWriter(ClassHelper classHelper, Class<? extends GraphMLDecorator> defaultDecoratorClass, Map<String, Object> properties) {
-        this.classHelper = classHelper;
-        this.defaultDecoratorClass = defaultDecoratorClass;
+        this(classHelper, defaultDecoratorClass, properties, WriterOptions.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classHelper           The class helper instance.
+     * @param defaultDecoratorClass The class for the default decorator.
+     * @param properties            The properties of the GraphML plugin.
+     * @param options               The {@link WriterOptions}.
+     */
+    XmlGraphMLWriter(ClassHelper classHelper, Class<? extends GraphMLDecorator> defaultDecoratorClass, Map<String, Object> properties,
+        WriterOptions options) {
+        this.decorators = new GraphMLDecorators(classHelper, defaultDecoratorClass);
         this.properties = properties;
+        this.reportOutput = options.getReportOutput();
+        this.parallel = options.isParallel();
+        this.fragmentCache = options.getFragmentCache();
     }
 
     void write(Result<?> result, SubGraph graph, File file) throws IOException, XMLStreamException {
-        Map<Long, Node> nodes = getAllNodes(graph);
-        Map<Long, Relationship> relationships = getAllRelationships(graph);
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file));
-             GraphMLDecorator decorator = getGraphMLDecorator(result)) {
-            XMLStreamWriter xmlWriter = xmlOutputFactory.createXMLStreamWriter(writer);
+        write(result, graph, file, emptyMap(), null);
+    }
+
+    /**
+     * Write a graph created from the result of a rule.
+     *
+     * @param result    The {@link Result} of the rule.
+     * @param graph     The graph.
+     * @param file      The output file.
+     * @param graphData The data elements of the top-level graph identified by their keys, e.g. describing a truncation.
+     * @param metrics   The {@link ReportMetrics} or <code>null</code> if no metrics shall be recorded.
+     * @throws IOException        If the file cannot be written.
+     * @throws XMLStreamException If the document cannot be written.
+     */
+    void write(Result<?> result, SubGraph graph, File file, Map<String, Object> graphData, ReportMetrics metrics)
+        throws IOException, XMLStreamException {
+        write(result, graph, file, KeySchema.of(result.getRule(), result.getRule()
+            .getReport()
+            .getProperties()), graphData, metrics);
+    }
+
+    /**
+     * Write a graph which has not been created from the result of the rule, e.g. the index of a sharded report, the keys are always inferred.
+     *
+     * @param result    The {@link Result} of the rule.
+     * @param graph     The graph.
+     * @param file      The output file.
+     * @param graphData The data elements of the top-level graph identified by their keys.
+     * @param metrics   The {@link ReportMetrics} or <code>null</code> if no metrics shall be recorded.
+     * @throws IOException        If the file cannot be written.
+     * @throws XMLStreamException If the document cannot be written.
+     */
+    void writeIndex(Result<?> result, SubGraph graph, File file, Map<String, Object> graphData, ReportMetrics metrics)
+        throws IOException, XMLStreamException {
+        write(result, graph, file, KeySchema.inferred(result.getRule()), graphData, metrics);
+    }
+
+    private void write(Result<?> result, SubGraph graph, File file, KeySchema keySchema, Map<String, Object> graphData, ReportMetrics metrics)
+        throws IOException, XMLStreamException {
+        String ruleId = result.getRule()
+            .getId();
+        GraphMLEvents.WriteEvent writeEvent = new GraphMLEvents.WriteEvent();
+        writeEvent.begin();
+        GraphMLEvents.DecoratorEvent decoratorEvent = new GraphMLEvents.DecoratorEvent();
+        decoratorEvent.begin();
+        // the metrics of the file are recorded separately for the aggregated decorator event
+        ReportMetrics fileMetrics = metrics != null || decoratorEvent.isEnabled() ? new ReportMetrics(ruleId) : null;
+        long allocatedBytes = fileMetrics != null ? ReportMetrics.allocatedBytes() : -1;
+        long time = System.nanoTime();
+        GraphMLEvents.KeyInferenceEvent keyInferenceEvent = new GraphMLEvents.KeyInferenceEvent();
+        keyInferenceEvent.begin();
+        GraphIndex graphIndex = GraphIndex.of(graph, keySchema);
+        keySchema.setDefaults(graphIndex.getNodeKeyDefaults(), graphIndex.getRelationshipKeyDefaults());
+        keyInferenceEvent.end(ruleId, graphIndex.getNodeCount(), graphIndex.getRelationships()
+            .size());
+        time = addTime(fileMetrics, ReportMetrics.Phase.KEY_INFERENCE, time);
+        Class<? extends GraphMLDecorator> decoratorClass = decorators.getDecoratorClass(result);
+        try (OutputStream outputStream = reportOutput.open(file);
+             GraphMLDecorator decorator = decorators.create(decoratorClass, fileMetrics)) {
+            XMLStreamWriter xmlWriter = reportOutput.createXMLStreamWriter(outputStream);
             decorator.initialize(result, graph, xmlWriter, file, properties);
             GraphMLNamespaceContext context = new GraphMLNamespaceContext(decorator.getNamespaces(), decorator.getSchemaLocations());
             xmlWriter.setNamespaceContext(context);
             writeHeader(xmlWriter, context);
-            writeKeyTypes(xmlWriter, nodes.values(), relationships.values());
+            writeKeys(xmlWriter, keySchema, graphIndex.getNodeKeyTypes(), graphIndex.getRelationshipKeyTypes());
+            writeGraphKeys(xmlWriter, graphData);
             decorator.writeKeys();
-
-            writeSubgraph(graph, xmlWriter, decorator);
-
-            for (Relationship relationship : relationships.values()) {
-                long startId = relationship.getStartNode().getId();
-                long endId = relationship.getEndNode().getId();
-                if (nodes.containsKey(startId) && nodes.containsKey(endId)) {
-                    writeRelationship(xmlWriter, decorator, relationship);
+            GraphMLStyles styles = new GraphMLStyles(decorator, xmlWriter, fileMetrics);
+            time = addTime(fileMetrics, ReportMetrics.Phase.HEADER, time);
+
+            ParallelGraphMLSerializer serializer = null;
+            if (parallel && decorator.isParallelizable() && xmlWriter instanceof GraphMLStreamWriter && graph.getParent() == null) {
+                serializer = new ParallelGraphMLSerializer((GraphMLStreamWriter) xmlWriter, styles, (chunkWriter, chunkMetrics) -> {
+                    GraphMLDecorator chunkDecorator = decorators.create(decoratorClass, chunkMetrics);
+                    chunkDecorator.initialize(result, graph, chunkWriter, file, properties);
+                    return chunkDecorator;
+                });
+            }
+            try {
+                GraphMLEvents.TraversalEvent traversalEvent = new GraphMLEvents.TraversalEvent();
+                traversalEvent.begin();
+                if (serializer != null) {
+                    writeSubgraph(graph, xmlWriter, serializer, keySchema, graphData);
+                } else {
+                    writeSubgraph(graph, xmlWriter, styles, keySchema, graphData);
+                }
+                traversalEvent.end(ruleId, graphIndex.getNodeCount());
+                time = addTime(fileMetrics, ReportMetrics.Phase.NODES, time);
+
+                GraphMLEvents.RelationshipPassEvent relationshipPassEvent = new GraphMLEvents.RelationshipPassEvent();
+                relationshipPassEvent.begin();
+                if (serializer != null) {
+                    serializer.submit(graphIndex.getRelationships(), (chunkWriter, chunkStyles, relationship) -> {
+                        if (isWritten(graphIndex, relationship)) {
+                            writeRelationship(chunkWriter, chunkStyles, keySchema, relationship);
+                        }
+                    });
+                    serializer.flush();
+                } else {
+                    for (Relationship relationship : graphIndex.getRelationships()) {
+                        if (isWritten(graphIndex, relationship)) {
+                            writeRelationship(xmlWriter, styles, keySchema, relationship);
+                        }
+                    }
+                }
+                relationshipPassEvent.end(ruleId, graphIndex.getRelationships()
+                    .size());
+                time = addTime(fileMetrics, ReportMetrics.Phase.EDGES, time);
+            } finally {
+                if (serializer != null) {
+                    serializer.close();
                 }
             }
 
             writeFooter(xmlWriter);
+            xmlWriter.close();
+        }
+        if (fileMetrics != null) {
+            fileMetrics.addTime(ReportMetrics.Phase.CLOSE, time);
+            fileMetrics.add(ReportMetrics.Counter.BYTES, file.length());
+            fileMetrics.addAllocatedBytes(allocatedBytes);
+            decoratorEvent.end(ruleId, decoratorClass.getName(), fileMetrics);
+            if (metrics != null) {
+                metrics.add(fileMetrics);
+            }
         }
+        writeEvent.end(ruleId, file, graphIndex.getNodeCount(), graphIndex.getRelationships()
+            .size());
     }
 
     /**
-     * Creates an instance of the select {@link GraphMLDecorator}.
+     * Determine if the result of a rule may be written by {@link #stream(Result, SubGraphFactory, File, ReportMetrics)}, i.e. the rule declares its
+     * node and edge keys and its decorator supports streamed documents.
      *
-     * @param result The rule result.
-     * @return The {@link GraphMLDecorator}.
+     * @param result The {@link Result} of the rule.
+     * @return <code>true</code> if the result may be streamed.
      */
-    private GraphMLDecorator getGraphMLDecorator(Result<?> result) {
-        String graphMLDecorator = result.getRule().getReport().getProperties().getProperty(GRAPHML_DECORATOR);
-        Class<? extends GraphMLDecorator> decoratorClass;
-        if (graphMLDecorator != null) {
-            decoratorClass = classHelper.getType(graphMLDecorator);
-        } else {
-            decoratorClass = defaultDecoratorClass;
+    boolean isStreamable(Result<?> result) {
+        KeySchema keySchema = KeySchema.of(result.getRule(), result.getRule()
+            .getReport()
+            .getProperties());
+        return keySchema.hasNodeKeys() && keySchema.hasEdgeKeys() && decorators.isStreamable(decorators.getDecoratorClass(result));
+    }
+
+    /**
+     * Write the result of a rule by consuming its rows without creating a {@link SubGraph} of the whole result.
+     * <p>
+     * Nodes are written when they are seen first, relationships are held back until both of their nodes have been seen and are then written within
+     * the top-level graph. Relationships to nodes which are not part of the result are dropped. Besides the pending relationships only the ids of
+     * the seen elements are retained. The rows are consumed once, i.e. the node and edge keys must be declared by the report properties of the rule
+     * as they are written before the first element. The rows must be consumed by the thread executing the rule and the decorator must be
+     * {@link GraphMLDecorator#isStreamable() streamable}.
+     *
+     * @param result          The {@link Result} of the rule.
+     * @param subGraphFactory The {@link SubGraphFactory} converting the values of the columns.
+     * @param file            The output file.
+     * @param metrics         The {@link ReportMetrics} or <code>null</code> if no metrics shall be recorded.
+     * @throws IOException        If the file cannot be written.
+     * @throws XMLStreamException If the document cannot be written.
+     * @throws ReportException    If a value cannot be converted.
+     */
+    void stream(Result<?> result, SubGraphFactory subGraphFactory, File file, ReportMetrics metrics)
+        throws IOException, XMLStreamException, ReportException {
+        String ruleId = result.getRule()
+            .getId();
+        GraphMLEvents.WriteEvent writeEvent = new GraphMLEvents.WriteEvent();
+        writeEvent.begin();
+        GraphMLEvents.DecoratorEvent decoratorEvent = new GraphMLEvents.DecoratorEvent();
+        decoratorEvent.begin();
+        ReportMetrics fileMetrics = metrics != null || decoratorEvent.isEnabled() ? new ReportMetrics(ruleId) : null;
+        long allocatedBytes = fileMetrics != null ? ReportMetrics.allocatedBytes() : -1;
+        long time = System.nanoTime();
+        KeySchema keySchema = KeySchema.of(result.getRule(), result.getRule()
+            .getReport()
+            .getProperties());
+        if (!keySchema.hasNodeKeys() || !keySchema.hasEdgeKeys()) {
+            throw new IllegalArgumentException("Streaming requires the node and edge keys to be declared by the report properties of " + ruleId);
+        }
+        Class<? extends GraphMLDecorator> decoratorClass = decorators.getDecoratorClass(result);
+        ResultStream resultStream;
+        // the top-level graph only provides the identity of the document for the decorator, it does not contain any elements
+        SubGraph graph = new SubGraph();
+        try (OutputStream outputStream = reportOutput.open(file);
+             GraphMLDecorator decorator = decorators.create(decoratorClass, fileMetrics)) {
+            XMLStreamWriter xmlWriter = reportOutput.createXMLStreamWriter(outputStream);
+            decorator.initialize(result, graph, xmlWriter, file, properties);
+            GraphMLNamespaceContext context = new GraphMLNamespaceContext(decorator.getNamespaces(), decorator.getSchemaLocations());
+            xmlWriter.setNamespaceContext(context);
+            writeHeader(xmlWriter, context);
+            writeKeys(xmlWriter, keySchema.getNodeKeys(), KeySchema.FOR_NODE);
+            writeKeys(xmlWriter, keySchema.getEdgeKeys(), KeySchema.FOR_EDGE);
+            decorator.writeKeys();
+            GraphMLStyles styles = new GraphMLStyles(decorator, xmlWriter, fileMetrics);
+            time = addTime(fileMetrics, ReportMetrics.Phase.HEADER, time);
+
+            GraphMLEvents.TraversalEvent traversalEvent = new GraphMLEvents.TraversalEvent();
+            traversalEvent.begin();
+            writeGraphStart(graph, xmlWriter, emptyMap());
+            resultStream = new GraphMLResultStream(subGraphFactory, xmlWriter, styles, keySchema);
+            resultStream.consume(result);
+            endElement(xmlWriter);
+            traversalEvent.end(ruleId, resultStream.nodes);
+            time = addTime(fileMetrics, ReportMetrics.Phase.NODES, time);
+
+            writeFooter(xmlWriter);
+            xmlWriter.close();
+        }
+        if (resultStream.getPendingRelationships() > 0) {
+            LOGGER.debug("Dropped {} relationships of {} as at least one of their nodes is not part of the result.", resultStream.getPendingRelationships(),
+                ruleId);
+        }
+        if (fileMetrics != null) {
+            fileMetrics.addTime(ReportMetrics.Phase.CLOSE, time);
+            fileMetrics.add(ReportMetrics.Counter.BYTES, file.length());
+            fileMetrics.addAllocatedBytes(allocatedBytes);
+            decoratorEvent.end(ruleId, decoratorClass.getName(), fileMetrics);
+            if (metrics != null) {
+                metrics.add(fileMetrics);
+            }
         }
-        return classHelper.createInstance(decoratorClass);
+        writeEvent.end(ruleId, file, resultStream.nodes, resultStream.relationships);
+    }
+
+    private static long addTime(ReportMetrics metrics, ReportMetrics.Phase phase, long start) {
+        return metrics != null ? metrics.addTime(phase, start) : start;
+    }
+
+    private void writeSubgraph(SubGraph graph, XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema, Map<String, Object> graphData)
+        throws XMLStreamException {
+        SubGraphTraversal.traverse(graph, new SubGraphTraversal.Visitor<XMLStreamException>() {
+            @Override
+            public void enter(SubGraph subGraph) throws XMLStreamException {
+                Node parent = subGraph.getParent();
+                if (parent != null) {
+                    writeNode(writer, styles, keySchema, parent, false);
+                }
+
+                writeGraphStart(subGraph, writer, subGraph == graph ? graphData : emptyMap());
+
+                for (Node node : subGraph.getNodes().values()) {
+                    writeNode(writer, styles, keySchema, node, true);
+                }
+            }
+
+            @Override
+            public void leave(SubGraph subGraph) throws XMLStreamException {
+                endElement(writer);
+
+                if (subGraph.getParent() != null) {
+                    writer.writeEndElement();
+                }
+            }
+        });
     }
 
-    private void writeSubgraph(SubGraph graph, XMLStreamWriter writer, GraphMLDecorator decorator) throws XMLStreamException {
-        Node parent = graph.getParent();
-        if (parent != null) {
-            writeNode(writer, decorator, parent, false);
+    /**
+     * Write a top-level graph in chunks, i.e. the nodes of the graph and each of its nested graphs are serialized in parallel.
+     */
+    private void writeSubgraph(SubGraph graph, XMLStreamWriter writer, ParallelGraphMLSerializer serializer, KeySchema keySchema,
+        Map<String, Object> graphData) throws XMLStreamException {
+        writeGraphStart(graph, writer, graphData);
+        serializer.submit(graph.getNodes()
+            .values(), (chunkWriter, chunkStyles, node) -> writeNode(chunkWriter, chunkStyles, keySchema, node, true));
+        for (SubGraph subGraph : graph.getSubGraphs()
+            .values()) {
+            serializer.submit((chunkWriter, chunkStyles) -> writeSubgraph(subGraph, chunkWriter, chunkStyles, keySchema, emptyMap()));
         }
+        serializer.flush();
+        endElement(writer);
+    }
 
+    /**
+     * Determine if a relationship is written, i.e. both of its nodes are part of the graph.
+     */
+    private static boolean isWritten(GraphIndex graphIndex, Relationship relationship) {
+        return graphIndex.containsNode(relationship.getStartNode()) && graphIndex.containsNode(relationship.getEndNode());
+    }
+
+    private void writeGraphStart(SubGraph graph, XMLStreamWriter writer, Map<String, Object> graphData) throws XMLStreamException {
         writer.writeStartElement("graph");
         writer.writeAttribute("id", "G" + graph.hashCode());
         writer.writeAttribute("edgedefault", "directed");
         newLine(writer);
-
-        for (Node node : graph.getNodes().values()) {
-            writeNode(writer, decorator, node, true);
+        for (Map.Entry<String, Object> entry : graphData.entrySet()) {
+            writeData(writer, entry.getKey(), entry.getValue());
         }
-
-        for (SubGraph subgraph : graph.getSubGraphs().values()) {
-            writeSubgraph(subgraph, writer, decorator);
+        if (!graphData.isEmpty()) {
+            newLine(writer);
         }
+    }
 
-        endElement(writer);
-
-        if (parent != null) {
-            writer.writeEndElement();
+    private void writeKeys(XMLStreamWriter writer, KeySchema keySchema, Map<String, Class<?>> nodeKeyTypes, Map<String, Class<?>> relationshipKeyTypes)
+        throws XMLStreamException {
+        if (keySchema.hasNodeKeys()) {
+            writeKeys(writer, keySchema.getNodeKeys(), KeySchema.FOR_NODE);
+        } else {
+            writeKeyTypes(writer, keySchema, nodeKeyTypes, KeySchema.FOR_NODE);
+        }
+        if (keySchema.hasEdgeKeys()) {
+            writeKeys(writer, keySchema.getEdgeKeys(), KeySchema.FOR_EDGE);
+        } else {
+            writeKeyTypes(writer, keySchema, relationshipKeyTypes, KeySchema.FOR_EDGE);
         }
     }
 
-    private void writeKeyTypes(XMLStreamWriter writer, Collection<Node> allNodes, Collection<Relationship> allRelationships) throws XMLStreamException {
-        Map<String, Class<?>> keyTypes = new HashMap<>();
-        keyTypes.put("labels", String.class);
-        for (Node node : allNodes) {
-            updateKeyTypes(keyTypes, node);
-        }
-        writeKeyTypes(writer, keyTypes, "node");
-        keyTypes.clear();
-        for (Relationship rel : allRelationships) {
-            updateKeyTypes(keyTypes, rel);
+    private void writeGraphKeys(XMLStreamWriter writer, Map<String, Object> graphData) throws XMLStreamException {
+        for (Map.Entry<String, Object> entry : graphData.entrySet()) {
+            String type = MetaInformation.typeFor(entry.getValue()
+                .getClass(), MetaInformation.GRAPHML_ALLOWED);
+            writeKey(writer, entry.getKey(), FOR_GRAPH, type != null ? type : "string");
         }
-        writeKeyTypes(writer, keyTypes, "edge");
     }
 
-    private void writeKeyTypes(XMLStreamWriter writer, Map<String, Class<?>> keyTypes, String forType) throws XMLStreamException {
+    private void writeKeyTypes(XMLStreamWriter writer, KeySchema keySchema, Map<String, Class<?>> keyTypes, String forType)
+        throws XMLStreamException {
         for (Map.Entry<String, Class<?>> entry : keyTypes.entrySet()) {
             String type = MetaInformation.typeFor(entry.getValue(), MetaInformation.GRAPHML_ALLOWED);
 
@@ -145,35 +408,92 @@ class XmlGraphMLWriter {
                 continue;
             }
 
-            writer.writeEmptyElement("key");
-            writer.writeAttribute("id", entry.getKey());
-            writer.writeAttribute("for", forType);
-            writer.writeAttribute("attr.name", entry.getKey());
-            writer.writeAttribute("attr.type", type);
-            newLine(writer);
+            Object defaultValue = keySchema.getDefault(forType, entry.getKey());
+            if (defaultValue == null) {
+                writeKey(writer, entry.getKey(), forType, type);
+            } else {
+                writeKey(writer, entry.getKey(), forType, type, getDefaultText(defaultValue));
+            }
         }
     }
 
-    private void updateKeyTypes(Map<String, Class<?>> keyTypes, PropertyContainer pc) {
-        for (Map.Entry<String, Object> entry : pc.getProperties().entrySet()) {
-            String prop = entry.getKey();
-            Object value = entry.getValue();
-            Class<?> storedClass = keyTypes.computeIfAbsent(prop, p -> value.getClass());
-            if (!(storedClass == void.class || storedClass.equals(value.getClass()))) {
-                keyTypes.put(prop, void.class);
+    private void writeKeys(XMLStreamWriter writer, Map<String, String> keys, String forType) throws XMLStreamException {
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            writeKey(writer, entry.getKey(), forType, entry.getValue());
+        }
+    }
+
+    private String getDefaultText(Object defaultValue) {
+        if (defaultValue instanceof Set) {
+            // the labels of a node
+            StringBuilder labels = new StringBuilder();
+            for (Object label : (Set<?>) defaultValue) {
+                labels.append(':')
+                    .append(label);
             }
+            return labels.toString();
         }
+        return defaultValue.toString();
+    }
+
+    private void writeKey(XMLStreamWriter writer, String key, String forType, String type, String defaultText) throws XMLStreamException {
+        writer.writeStartElement("key");
+        writer.writeAttribute("id", key);
+        writer.writeAttribute("for", forType);
+        writer.writeAttribute("attr.name", key);
+        writer.writeAttribute("attr.type", type);
+        writer.writeStartElement("default");
+        writer.writeCharacters(defaultText);
+        writer.writeEndElement();
+        endElement(writer);
     }
 
-    private void writeNode(XMLStreamWriter writer, GraphMLDecorator decorator, Node node, boolean withEnd) throws XMLStreamException {
+    private void writeKey(XMLStreamWriter writer, String key, String forType, String type) throws XMLStreamException {
+        writer.writeEmptyElement("key");
+        writer.writeAttribute("id", key);
+        writer.writeAttribute("for", forType);
+        writer.writeAttribute("attr.name", key);
+        writer.writeAttribute("attr.type", type);
+        newLine(writer);
+    }
+
+    private void writeNode(XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema, Node node, boolean withEnd) throws XMLStreamException {
+        LabelSet labelSet = labelSetCache.get(node);
+        PropertyProjection.Filter filter = keySchema.getProjection()
+            .forNode(labelSet.getLabels());
+        // nodes containing a nested graph are not cached as their fragment is incomplete
+        if (!withEnd || !isCached(writer, styles, keySchema)) {
+            writeNode(writer, styles, keySchema, node, labelSet, filter, withEnd);
+            return;
+        }
+        FragmentCache.Key key = FragmentCache.nodeKey(getDecoratorClass(styles), filter, node.getId());
+        long fingerprint = GraphFingerprint.of(node);
+        GraphMLStreamWriter streamWriter = (GraphMLStreamWriter) writer;
+        if (!writeCachedFragment(streamWriter, styles, key, fingerprint, ReportMetrics.Counter.NODES, ReportMetrics.Counter.FILTERED_NODES)) {
+            streamWriter.startCapture();
+            writeNode(writer, styles, keySchema, node, labelSet, filter, true);
+            cacheFragment(streamWriter, key, fingerprint);
+        }
+    }
+
+    private void writeNode(XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema, Node node, LabelSet labelSet,
+        PropertyProjection.Filter filter, boolean withEnd) throws XMLStreamException {
+        GraphMLDecorator decorator = styles.getDecorator();
         if (decorator.isWriteNode(node)) {
+            GraphMLStyles.Style style = styles.getNodeStyle(labelSet.getLabels());
             writer.writeStartElement("node");
             writer.writeAttribute("id", id(node));
-            decorator.writeNodeAttributes(node);
-            writeLabels(writer, node);
-            writeLabelsAsData(writer, node);
-            decorator.writeNodeElements(node);
-            writeProps(writer, node);
+            if (style != null) {
+                styles.writeAttributes(style);
+            } else {
+                decorator.writeNodeAttributes(node);
+            }
+            writeLabels(writer, labelSet);
+            writeLabelsAsData(writer, keySchema, labelSet);
+            if (style == null || !styles.writeElements(style)) {
+                decorator.writeNodeElements(node);
+            }
+            writeProps(writer, keySchema, KeySchema.FOR_NODE, filter, node);
 
             if (withEnd) {
                 endElement(writer);
@@ -185,38 +505,113 @@ class XmlGraphMLWriter {
         return "n" + node.getId();
     }
 
-    private void writeLabels(XMLStreamWriter writer, Node node) throws XMLStreamException {
-        String labelsString = getLabelsString(node);
-        if (!labelsString.isEmpty()) {
-            writer.writeAttribute("labels", labelsString);
+    private void writeLabels(XMLStreamWriter writer, LabelSet labelSet) throws XMLStreamException {
+        if (labelSet.isEmpty()) {
+            return;
+        }
+        if (writer instanceof GraphMLStreamWriter) {
+            ((GraphMLStreamWriter) writer).writeAttribute("labels", labelSet.getEscapedAttributeValue());
+        } else {
+            writer.writeAttribute("labels", labelSet.getLabelsString());
         }
     }
 
-    private void writeLabelsAsData(XMLStreamWriter writer, Node node) throws XMLStreamException {
-        String labelsString = getLabelsString(node);
-
-        if (labelsString.isEmpty()) {
+    private void writeLabelsAsData(XMLStreamWriter writer, KeySchema keySchema, LabelSet labelSet) throws XMLStreamException {
+        if (labelSet.isEmpty() || labelSet.getLabels()
+            .equals(keySchema.getDefault(KeySchema.FOR_NODE, "labels"))) {
             return;
         }
+        if (writer instanceof GraphMLStreamWriter) {
+            writer.writeStartElement("data");
+            writer.writeAttribute("key", "labels");
+            ((GraphMLStreamWriter) writer).writeCharacters(labelSet.getEscapedText());
+            writer.writeEndElement();
+        } else {
+            writeData(writer, "labels", labelSet.getLabelsString());
+        }
+    }
 
-        writeData(writer, "labels", labelsString);
+    private void writeRelationship(XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema, Relationship relationship)
+        throws XMLStreamException {
+        PropertyProjection.Filter filter = keySchema.getProjection()
+            .forRelationship(relationship.getType());
+        if (!isCached(writer, styles, keySchema)) {
+            writeRelationship(writer, styles, keySchema, relationship, filter);
+            return;
+        }
+        FragmentCache.Key key = FragmentCache.relationshipKey(getDecoratorClass(styles), filter, relationship.getId());
+        long fingerprint = GraphFingerprint.of(relationship);
+        GraphMLStreamWriter streamWriter = (GraphMLStreamWriter) writer;
+        if (!writeCachedFragment(streamWriter, styles, key, fingerprint, ReportMetrics.Counter.EDGES, ReportMetrics.Counter.FILTERED_EDGES)) {
+            streamWriter.startCapture();
+            writeRelationship(writer, styles, keySchema, relationship, filter);
+            cacheFragment(streamWriter, key, fingerprint);
+        }
     }
 
-    private void writeRelationship(XMLStreamWriter writer, GraphMLDecorator decorator, Relationship relationship) throws XMLStreamException {
+    private void writeRelationship(XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema, Relationship relationship,
+        PropertyProjection.Filter filter) throws XMLStreamException {
+        GraphMLDecorator decorator = styles.getDecorator();
         if (decorator.isWriteRelationship(relationship)) {
+            GraphMLStyles.Style style = styles.getRelationshipStyle(relationship.getType());
             writer.writeStartElement("edge");
             writer.writeAttribute("id", id(relationship));
             writer.writeAttribute("source", id(relationship.getStartNode()));
             writer.writeAttribute("target", id(relationship.getEndNode()));
             writer.writeAttribute("label", relationship.getType());
-            decorator.writeRelationshipAttributes(relationship);
+            if (style != null) {
+                styles.writeAttributes(style);
+            } else {
+                decorator.writeRelationshipAttributes(relationship);
+            }
             writeData(writer, "label", relationship.getType());
-            decorator.writeRelationshipElements(relationship);
-            writeProps(writer, relationship);
+            if (style == null || !styles.writeElements(style)) {
+                decorator.writeRelationshipElements(relationship);
+            }
+            writeProps(writer, keySchema, KeySchema.FOR_EDGE, filter, relationship);
             endElement(writer);
         }
     }
 
+    /**
+     * Determine if the serialized form of elements is cached, this requires a decorator supporting it, the {@link GraphMLStreamWriter} and that
+     * neither keys nor key defaults are declared as these are specific to a rule or file, e.g. properties without a declared key are not written.
+     */
+    private boolean isCached(XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema) {
+        return fragmentCache != null && writer instanceof GraphMLStreamWriter && !keySchema.isKeyDefaults() && !keySchema.hasNodeKeys()
+            && !keySchema.hasEdgeKeys() && styles.getDecorator()
+            .isCacheable();
+    }
+
+    private static Class<?> getDecoratorClass(GraphMLStyles styles) {
+        GraphMLDecorator decorator = styles.getDecorator();
+        return decorator instanceof MeteredGraphMLDecorator ? ((MeteredGraphMLDecorator) decorator).getDelegate()
+            .getClass() : decorator.getClass();
+    }
+
+    private boolean writeCachedFragment(GraphMLStreamWriter writer, GraphMLStyles styles, FragmentCache.Key key, long fingerprint,
+        ReportMetrics.Counter written, ReportMetrics.Counter filtered) throws XMLStreamException {
+        ReportMetrics metrics = styles.getMetrics();
+        byte[] fragment = fragmentCache.get(key, fingerprint, metrics);
+        if (fragment == null) {
+            return false;
+        }
+        if (fragment.length > 0) {
+            writer.writeFragment(fragment);
+        }
+        if (metrics != null) {
+            metrics.add(fragment.length > 0 ? written : filtered, 1);
+        }
+        return true;
+    }
+
+    private void cacheFragment(GraphMLStreamWriter writer, FragmentCache.Key key, long fingerprint) {
+        byte[] fragment = writer.endCapture();
+        if (fragment != null) {
+            fragmentCache.put(key, fingerprint, fragment);
+        }
+    }
+
     private String id(Relationship rel) {
         return "e" + rel.getId();
     }
@@ -226,9 +621,16 @@ class XmlGraphMLWriter {
         newLine(writer);
     }
 
-    private void writeProps(XMLStreamWriter writer, PropertyContainer node) throws XMLStreamException {
+    private void writeProps(XMLStreamWriter writer, KeySchema keySchema, String forType, PropertyProjection.Filter filter, PropertyContainer node)
+        throws XMLStreamException {
         for (Map.Entry<String, Object> entry : node.getProperties().entrySet()) {
-            writeData(writer, entry.getKey(), entry.getValue());
+            if (!filter.isIncluded(entry.getKey()) || !keySchema.verify(forType, entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            Object value = filter.getValue(entry.getValue());
+            if (value == null || !value.equals(keySchema.getDefault(forType, entry.getKey()))) {
+                writeData(writer, entry.getKey(), value);
+            }
         }
     }
 
@@ -270,24 +672,189 @@ class XmlGraphMLWriter {
         writer.writeCharacters("\n");
     }
 
-    private Map<Long, Node> getAllNodes(SubGraph graph) {
-        Map<Long, Node> allNodes = new LinkedHashMap<>(graph.getNodes());
-        Node parentNode = graph.getParent();
-        if (parentNode != null) {
-            allNodes.put(parentNode.getId(), parentNode);
+    /**
+     * Consumes the rows of a result and reports each node and relationship once, relationships are reported after both of their nodes.
+     */
+    private abstract static class ResultStream {
+
+        private final SubGraphFactory subGraphFactory;
+
+        private final LongHashSet nodeIds = new LongHashSet();
+
+        private final LongHashSet relationshipIds = new LongHashSet();
+
+        /**
+         * The relationships waiting for a node identified by its id.
+         */
+        private final PendingRelationships pendingRelationships = new PendingRelationships();
+
+        private long nodes;
+
+        private long relationships;
+
+        private ResultStream(SubGraphFactory subGraphFactory) {
+            this.subGraphFactory = subGraphFactory;
         }
-        for (SubGraph subgraph : graph.getSubGraphs().values()) {
-            allNodes.putAll(getAllNodes(subgraph));
+
+        void consume(Result<?> result) throws ReportException, XMLStreamException {
+            for (Row row : result.getRows()) {
+                for (Column<?> column : row.getColumns()
+                    .values()) {
+                    consume(column.getValue());
+                }
+            }
+        }
+
+        private void consume(Object value) throws ReportException, XMLStreamException {
+            if (value instanceof Iterable) {
+                for (Object element : (Iterable<?>) value) {
+                    consume(element);
+                }
+                return;
+            }
+            Identifiable identifiable = subGraphFactory.toIdentifiable(value);
+            if (identifiable instanceof Node) {
+                Node node = (Node) identifiable;
+                if (nodeIds.add(node.getId())) {
+                    onNode(node);
+                    nodeSeen(node);
+                }
+            } else if (identifiable instanceof Relationship) {
+                offer((Relationship) identifiable);
+            } else if (identifiable instanceof SubGraph) {
+                consume((SubGraph) identifiable);
+            }
+        }
+
+        private void consume(SubGraph subGraph) throws XMLStreamException {
+            onSubGraph(subGraph);
+            List<Relationship> subGraphRelationships = new ArrayList<>();
+            SubGraphTraversal.traverse(subGraph, current -> {
+                if (current.getParent() != null && nodeIds.add(current.getParent()
+                    .getId())) {
+                    nodeSeen(current.getParent());
+                }
+                for (Node node : current.getNodes()
+                    .values()) {
+                    if (nodeIds.add(node.getId())) {
+                        nodeSeen(node);
+                    }
+                }
+                subGraphRelationships.addAll(current.getRelationships()
+                    .values());
+            });
+            for (Relationship relationship : subGraphRelationships) {
+                offer(relationship);
+            }
+        }
+
+        private void nodeSeen(Node node) throws XMLStreamException {
+            nodes++;
+            for (Relationship relationship : pendingRelationships.remove(node.getId())) {
+                resolve(relationship);
+            }
+        }
+
+        private void offer(Relationship relationship) throws XMLStreamException {
+            if (relationshipIds.add(relationship.getId())) {
+                resolve(relationship);
+            }
+        }
+
+        private void resolve(Relationship relationship) throws XMLStreamException {
+            long startId = relationship.getStartNode()
+                .getId();
+            long endId = relationship.getEndNode()
+                .getId();
+            if (!nodeIds.contains(startId)) {
+                pendingRelationships.add(startId, relationship);
+            } else if (!nodeIds.contains(endId)) {
+                pendingRelationships.add(endId, relationship);
+            } else {
+                relationships++;
+                onRelationship(relationship);
+            }
+        }
+
+        /**
+         * Return the number of relationships which are still waiting for a node.
+         *
+         * @return The number of pending relationships.
+         */
+        long getPendingRelationships() {
+            return pendingRelationships.size();
         }
-        return allNodes;
-    }
 
-    private Map<Long, Relationship> getAllRelationships(SubGraph graph) {
-        Map<Long, Relationship> allRels = new LinkedHashMap<>(graph.getRelationships());
-        for (SubGraph subgraph : graph.getSubGraphs().values()) {
-            allRels.putAll(getAllRelationships(subgraph));
+        /**
+         * Called for each node seen for the first time outside a sub graph.
+         *
+         * @param node The {@link Node}.
+         * @throws XMLStreamException If the node cannot be written.
+         */
+        abstract void onNode(Node node) throws XMLStreamException;
+
+        /**
+         * Called for each sub graph before its elements are marked as seen, the default implementation reports the nodes which have not been seen
+         * yet.
+         *
+         * @param subGraph The {@link SubGraph}.
+         * @throws XMLStreamException If the sub graph cannot be written.
+         */
+        void onSubGraph(SubGraph subGraph) throws XMLStreamException {
+            SubGraphTraversal.traverse(subGraph, current -> {
+                if (current.getParent() != null && !nodeIds.contains(current.getParent()
+                    .getId())) {
+                    onNode(current.getParent());
+                }
+                for (Node node : current.getNodes()
+                    .values()) {
+                    if (!nodeIds.contains(node.getId())) {
+                        onNode(node);
+                    }
+                }
+            });
         }
-        return allRels;
+
+        /**
+         * Called for each relationship when both of its nodes have been seen.
+         *
+         * @param relationship The {@link Relationship}.
+         * @throws XMLStreamException If the relationship cannot be written.
+         */
+        abstract void onRelationship(Relationship relationship) throws XMLStreamException;
     }
 
+    /**
+     * Writes the nodes and relationships of a {@link ResultStream}.
+     */
+    private class GraphMLResultStream extends ResultStream {
+
+        private final XMLStreamWriter writer;
+
+        private final GraphMLStyles styles;
+
+        private final KeySchema keySchema;
+
+        private GraphMLResultStream(SubGraphFactory subGraphFactory, XMLStreamWriter writer, GraphMLStyles styles, KeySchema keySchema) {
+            super(subGraphFactory);
+            this.writer = writer;
+            this.styles = styles;
+            this.keySchema = keySchema;
+        }
+
+        @Override
+        void onNode(Node node) throws XMLStreamException {
+            writeNode(writer, styles, keySchema, node, true);
+        }
+
+        @Override
+        void onSubGraph(SubGraph subGraph) throws XMLStreamException {
+            writeSubgraph(subGraph, writer, styles, keySchema, emptyMap());
+        }
+
+        @Override
+        void onRelationship(Relationship relationship) throws XMLStreamException {
+            writeRelationship(writer, styles, keySchema, relationship);
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The supported implementations of {@link XMLStreamWriter} for writing GraphML documents.
+ */
+enum XmlStreamWriterType {
+
+    /**
+     * The StAX implementation provided by the {@link XMLOutputFactory}.
+     */
+    STAX("stax") {
+        @Override
+        XMLStreamWriter create(OutputStream outputStream) throws XMLStreamException {
+            return xmlOutputFactory.get()
+                .createXMLStreamWriter(outputStream, UTF_8.name());
+        }
+    },
+
+    /**
+     * The dedicated {@link GraphMLStreamWriter}.
+     */
+    GRAPHML("graphml") {
+        @Override
+        XMLStreamWriter create(OutputStream outputStream) {
+            return new GraphMLStreamWriter(outputStream);
+        }
+    };
+
+    /**
+     * {@link XMLOutputFactory} instances are not guaranteed to be thread-safe, therefore each writing thread uses its own one.
+     */
+    private static final ThreadLocal<XMLOutputFactory> xmlOutputFactory = ThreadLocal.withInitial(XMLOutputFactory::newInstance);
+
+    private final String name;
+
+    XmlStreamWriterType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create an {@link XMLStreamWriter} writing UTF-8 encoded output.
+     *
+     * @param outputStream The {@link OutputStream}.
+     * @return The {@link XMLStreamWriter}.
+     * @throws XMLStreamException If the writer cannot be created.
+     */
+    abstract XMLStreamWriter create(OutputStream outputStream) throws XMLStreamException;
+
+    /**
+     * Resolve a {@link XmlStreamWriterType} from its configured name.
+     *
+     * @param name The name.
+     * @return The {@link XmlStreamWriterType}.
+     */
+    static XmlStreamWriterType of(String name) {
+        for (XmlStreamWriterType type : values()) {
+            if (type.name.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported XML writer '" + name + "', supported values are stax and graphml.");
+    }
+}
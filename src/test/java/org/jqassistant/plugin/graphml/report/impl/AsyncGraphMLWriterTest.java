@@ -0,0 +1,58 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncGraphMLWriterTest {
+
+    @Test
+    void allTasksCompleteWithBoundedPendingReports() throws ReportException {
+        AsyncGraphMLWriter asyncGraphMLWriter = new AsyncGraphMLWriter(4, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            asyncGraphMLWriter.submit("test" + i, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                        .interrupt();
+                }
+                running.decrementAndGet();
+                completed.incrementAndGet();
+            });
+        }
+        asyncGraphMLWriter.await();
+
+        assertThat(completed.get()).isEqualTo(20);
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void failuresAreReportedOnAwait() throws ReportException {
+        AsyncGraphMLWriter asyncGraphMLWriter = new AsyncGraphMLWriter(2, 2);
+        asyncGraphMLWriter.submit("test:First", () -> {
+            throw new IOException("first");
+        });
+        asyncGraphMLWriter.submit("test:Second", () -> {
+        });
+        asyncGraphMLWriter.submit("test:Third", () -> {
+            throw new IOException("third");
+        });
+
+        assertThatThrownBy(asyncGraphMLWriter::await).isInstanceOf(ReportException.class)
+            .hasMessageContaining("test:First")
+            .hasCauseInstanceOf(IOException.class)
+            .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+    }
+}
@@ -0,0 +1,42 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrentUnionFindTest {
+
+    @Test
+    void union() {
+        ConcurrentUnionFind unionFind = new ConcurrentUnionFind(5);
+
+        unionFind.union(3, 1);
+        unionFind.union(4, 3);
+
+        assertThat(unionFind.find(4)).isEqualTo(1);
+        assertThat(unionFind.find(3)).isEqualTo(1);
+        assertThat(unionFind.find(1)).isEqualTo(1);
+        assertThat(unionFind.find(0)).isEqualTo(0);
+        assertThat(unionFind.find(2)).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentUnion() {
+        int size = 100_000;
+        ConcurrentUnionFind unionFind = new ConcurrentUnionFind(size);
+
+        // links all even and all odd elements in random order
+        IntStream.range(0, size - 2)
+            .parallel()
+            .map(i -> (int) (LongHashSet.mix(i) & Integer.MAX_VALUE) % (size - 2))
+            .forEach(i -> unionFind.union(i, i + 2));
+        IntStream.range(0, size - 2)
+            .parallel()
+            .forEach(i -> unionFind.union(i, i + 2));
+
+        IntStream.range(0, size)
+            .forEach(i -> assertThat(unionFind.find(i)).isEqualTo(i % 2));
+    }
+}
@@ -0,0 +1,81 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileChannelOutputStreamTest {
+
+    @Test
+    void write() throws IOException {
+        byte[] data = new byte[100_000];
+        new Random(42).nextBytes(data);
+        File file = getFile();
+
+        try (FileChannelOutputStream outputStream = new FileChannelOutputStream(file, 4096)) {
+            outputStream.write(data[0]);
+            outputStream.write(data, 1, 100);
+            outputStream.write(data, 101, 4000);
+            outputStream.flush();
+            // larger than the buffer
+            outputStream.write(data, 4101, data.length - 4101);
+        }
+
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(data);
+    }
+
+    @Test
+    void truncateExistingFile() throws IOException {
+        File file = getFile();
+        Files.write(file.toPath(), new byte[10_000]);
+
+        try (FileChannelOutputStream outputStream = new FileChannelOutputStream(file, 4096)) {
+            outputStream.write("<graphml/>".getBytes(UTF_8));
+        }
+
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo("<graphml/>".getBytes(UTF_8));
+    }
+
+    @Test
+    void closed() throws IOException {
+        FileChannelOutputStream outputStream = new FileChannelOutputStream(getFile(), 4096);
+        outputStream.close();
+        outputStream.close();
+
+        assertThatThrownBy(() -> outputStream.write(1)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void reportOutput() throws IOException {
+        byte[] data = "<graphml>\u00E4\u20AC</graphml>".getBytes(UTF_8);
+        for (Compression compression : Compression.values()) {
+            File streamFile = getFile();
+            File channelFile = getFile();
+
+            write(new ReportOutput(compression, -1, XmlStreamWriterType.GRAPHML, FileOutput.STREAM), streamFile, data);
+            write(new ReportOutput(compression, -1, XmlStreamWriterType.GRAPHML, FileOutput.CHANNEL), channelFile, data);
+
+            assertThat(Files.readAllBytes(channelFile.toPath())).isEqualTo(Files.readAllBytes(streamFile.toPath()));
+        }
+    }
+
+    private static void write(ReportOutput reportOutput, File file, byte[] data) throws IOException {
+        try (OutputStream outputStream = reportOutput.open(file)) {
+            outputStream.write(data);
+        }
+    }
+
+    private static File getFile() throws IOException {
+        File file = File.createTempFile("test", ".graphml");
+        file.deleteOnExit();
+        return file;
+    }
+}
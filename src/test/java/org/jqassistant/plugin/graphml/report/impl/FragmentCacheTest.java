@@ -0,0 +1,123 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+
+import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FragmentCacheTest {
+
+    private static final PropertyProjection.Filter FILTER = PropertyProjection.all()
+        .forNode(emptySet());
+
+    @Test
+    void hitsAndMisses() {
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        ReportMetrics metrics = new ReportMetrics("test:Rule");
+        byte[] fragment = "<node id=\"n1\"/>".getBytes(UTF_8);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 42, metrics)).isNull();
+        fragmentCache.put(nodeKey(FILTER, 1), 42, fragment);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 42, metrics)).isEqualTo(fragment);
+        // different fingerprint, relationship with the same id and different filter
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 43, metrics)).isNull();
+        assertThat(fragmentCache.get(FragmentCache.relationshipKey(YedGraphMLDecorator.class, FILTER, 1), 42, metrics)).isNull();
+        assertThat(fragmentCache.get(nodeKey(truncatingFilter(), 1), 42, metrics)).isNull();
+        assertThat(fragmentCache.getHits()).isEqualTo(1);
+        assertThat(fragmentCache.getMisses()).isEqualTo(4);
+        assertThat(metrics.get(ReportMetrics.Counter.FRAGMENT_CACHE_HITS)).isEqualTo(1);
+        assertThat(metrics.get(ReportMetrics.Counter.FRAGMENT_CACHE_MISSES)).isEqualTo(4);
+    }
+
+    @Test
+    void filteredElement() {
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+
+        fragmentCache.put(nodeKey(FILTER, 1), 42, new byte[0]);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 42, null)).isEmpty();
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        FragmentCache fragmentCache = new FragmentCache(3 * (100 + 96));
+        for (int id = 1; id <= 3; id++) {
+            fragmentCache.put(nodeKey(FILTER, id), id, new byte[100]);
+        }
+        fragmentCache.get(nodeKey(FILTER, 1), 1, null);
+
+        fragmentCache.put(nodeKey(FILTER, 4), 4, new byte[100]);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 1, null)).isNotNull();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 2), 2, null)).isNull();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 3), 3, null)).isNotNull();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 4), 4, null)).isNotNull();
+        assertThat(fragmentCache.getBytes()).isEqualTo(3 * (100 + 96));
+    }
+
+    @Test
+    void fragmentExceedingBudget() {
+        FragmentCache fragmentCache = new FragmentCache(1000);
+        fragmentCache.put(nodeKey(FILTER, 1), 1, new byte[100]);
+
+        fragmentCache.put(nodeKey(FILTER, 2), 2, new byte[1000]);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 1, null)).isNotNull();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 2), 2, null)).isNull();
+    }
+
+    @Test
+    void manyFragments() {
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        for (int id = 1; id <= 1000; id++) {
+            fragmentCache.put(nodeKey(FILTER, id), id, new byte[100]);
+        }
+
+        for (int id = 1; id <= 1000; id++) {
+            assertThat(fragmentCache.get(nodeKey(FILTER, id), id, null)).hasSize(100);
+        }
+        assertThat(fragmentCache.getBytes()).isEqualTo(1000 * (100 + 96));
+        assertThat(fragmentCache.getHits()).isEqualTo(1000);
+    }
+
+    @Test
+    void replaceFragment() {
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        fragmentCache.put(nodeKey(FILTER, 1), 1, new byte[100]);
+
+        fragmentCache.put(nodeKey(FILTER, 1), 2, new byte[50]);
+
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 1, null)).isNull();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 2, null)).hasSize(50);
+        assertThat(fragmentCache.getBytes()).isEqualTo(50 + 96);
+    }
+
+    @Test
+    void clear() {
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        fragmentCache.put(nodeKey(FILTER, 1), 1, new byte[100]);
+        fragmentCache.get(nodeKey(FILTER, 1), 1, null);
+
+        fragmentCache.clear();
+
+        assertThat(fragmentCache.getBytes()).isZero();
+        assertThat(fragmentCache.getHits()).isZero();
+        assertThat(fragmentCache.get(nodeKey(FILTER, 1), 1, null)).isNull();
+    }
+
+    private static FragmentCache.Key nodeKey(PropertyProjection.Filter filter, long id) {
+        return FragmentCache.nodeKey(YedGraphMLDecorator.class, filter, id);
+    }
+
+    private static PropertyProjection.Filter truncatingFilter() {
+        Properties properties = new Properties();
+        properties.setProperty(PropertyProjection.GRAPHML_MAX_VALUE_LENGTH, "10");
+        return PropertyProjection.of(properties)
+            .forNode(emptySet());
+    }
+}
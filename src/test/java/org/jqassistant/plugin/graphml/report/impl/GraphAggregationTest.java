@@ -0,0 +1,164 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Map;
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.add;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+
+class GraphAggregationTest {
+
+    @Test
+    void noAggregation() {
+        assertThat(GraphAggregation.of(new Properties())).isNull();
+        assertThatThrownBy(() -> GraphAggregation.of(properties("type", null))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GraphAggregation.of(properties("property:", null))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GraphAggregation.of(properties("label", "0"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void propertyPrefix() {
+        GraphAggregation.Aggregate aggregate = GraphAggregation.of(properties("property:fqn", "2"))
+            .apply(types());
+
+        SubGraph graph = aggregate.getGraph();
+        assertThat(graph.getNodes()).hasSize(3);
+        Node api = group(graph, "com.acme");
+        Node other = group(graph, "org.other");
+        Node none = group(graph, GraphAggregation.OTHER);
+        assertThat(api.getLabels()).containsExactly(GraphAggregation.AGGREGATE_LABEL);
+        assertThat(api.getProperties()).containsEntry(GraphAggregation.MEMBERS, 3L);
+        assertThat(other.getProperties()).containsEntry(GraphAggregation.MEMBERS, 1L);
+        assertThat(none.getProperties()).containsEntry(GraphAggregation.MEMBERS, 1L);
+
+        assertThat(graph.getRelationships()).hasSize(3);
+        Relationship internal = edge(graph, api, api);
+        assertThat(internal.getType()).isEqualTo("DEPENDS_ON");
+        assertThat(internal.getProperties()).containsEntry(GraphAggregation.WEIGHT, 1L)
+            .containsEntry("DEPENDS_ON", 1L);
+        Relationship external = edge(graph, api, other);
+        assertThat(external.getType()).isEqualTo(GraphAggregation.AGGREGATED_TYPE);
+        assertThat(external.getProperties()).containsEntry(GraphAggregation.WEIGHT, 3L)
+            .containsEntry("DEPENDS_ON", 2L)
+            .containsEntry("INVOKES", 1L);
+        assertThat(edge(graph, none, other).getProperties()).containsEntry(GraphAggregation.WEIGHT, 1L);
+
+        assertThat(aggregate.getGraphData()).containsEntry(GraphAggregation.AGGREGATED_BY, "property:fqn")
+            .containsEntry(GraphAggregation.MEMBER_NODES, 5L)
+            .containsEntry(GraphAggregation.MEMBER_EDGES, 5L);
+    }
+
+    @Test
+    void labels() {
+        SubGraph types = types();
+        types.getNodes()
+            .get(4L)
+            .getLabels()
+            .add("Artifact");
+
+        SubGraph graph = GraphAggregation.of(properties("label:Artifact, Type", null))
+            .apply(types)
+            .getGraph();
+
+        assertThat(group(graph, "Artifact").getProperties()).containsEntry(GraphAggregation.MEMBERS, 1L);
+        assertThat(group(graph, "Type").getProperties()).containsEntry(GraphAggregation.MEMBERS, 4L);
+    }
+
+    @Test
+    void labelCombinations() {
+        SubGraph graph = GraphAggregation.of(properties("label", null))
+            .apply(types())
+            .getGraph();
+
+        assertThat(graph.getNodes()).hasSize(1);
+        assertThat(group(graph, ":Type").getProperties()).containsEntry(GraphAggregation.MEMBERS, 5L);
+        assertThat(graph.getRelationships()).hasSize(1);
+    }
+
+    @Test
+    void nestedGraphs() {
+        SubGraph types = types();
+        SubGraph nested = new SubGraph();
+        nested.setId(-2);
+        nested.setParent(types.getNodes()
+            .get(1L));
+        Node member = type(6, "com.acme.core.Member");
+        nested.getNodes()
+            .put(member.getId(), member);
+        types.getSubGraphs()
+            .put(nested.getId(), nested);
+
+        GraphAggregation.Aggregate aggregate = GraphAggregation.of(properties("property:fqn", "2"))
+            .apply(types);
+
+        // the parent is contained in the graph and the nested graph but counted once
+        assertThat(group(aggregate.getGraph(), "com.acme").getProperties()).containsEntry(GraphAggregation.MEMBERS, 4L);
+        assertThat(aggregate.getGraphData()).containsEntry(GraphAggregation.MEMBER_NODES, 6L);
+    }
+
+    /**
+     * Types of the packages <code>com.acme</code> (1-3) and <code>org.other</code> (4), node 5 has no <code>fqn</code>.
+     */
+    private static SubGraph types() {
+        SubGraph graph = new SubGraph();
+        graph.setId(-1);
+        add(graph, type(1, "com.acme.core.A"));
+        add(graph, type(2, "com.acme.core.B"));
+        add(graph, type(3, "com.acme.C"));
+        add(graph, type(4, "org.other.D"));
+        add(graph, type(5, null));
+        Map<Long, Node> nodes = graph.getNodes();
+        add(graph, relationship(1, "DEPENDS_ON", nodes.get(1L), nodes.get(2L)));
+        add(graph, relationship(2, "DEPENDS_ON", nodes.get(1L), nodes.get(4L)));
+        add(graph, relationship(3, "DEPENDS_ON", nodes.get(3L), nodes.get(4L)));
+        add(graph, relationship(4, "INVOKES", nodes.get(2L), nodes.get(4L)));
+        add(graph, relationship(5, "DEPENDS_ON", nodes.get(5L), nodes.get(4L)));
+        return graph;
+    }
+
+    private static Node type(long id, String fqn) {
+        Node node = node(id, "Type");
+        if (fqn != null) {
+            node.getProperties()
+                .put("fqn", fqn);
+        }
+        return node;
+    }
+
+    private static Node group(SubGraph graph, String group) {
+        return graph.getNodes()
+            .values()
+            .stream()
+            .filter(node -> group.equals(node.getProperties()
+                .get(GraphAggregation.GROUP)))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("Missing group " + group));
+    }
+
+    private static Relationship edge(SubGraph graph, Node start, Node end) {
+        return graph.getRelationships()
+            .values()
+            .stream()
+            .filter(relationship -> relationship.getStartNode() == start && relationship.getEndNode() == end)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("Missing edge from " + start.getLabel() + " to " + end.getLabel()));
+    }
+
+    private static Properties properties(String aggregateBy, String depth) {
+        Properties properties = new Properties();
+        properties.setProperty(GraphAggregation.GRAPHML_AGGREGATE_BY, aggregateBy);
+        if (depth != null) {
+            properties.setProperty(GraphAggregation.GRAPHML_AGGREGATE_BY_DEPTH, depth);
+        }
+        return properties;
+    }
+}
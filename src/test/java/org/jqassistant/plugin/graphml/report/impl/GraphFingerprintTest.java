@@ -0,0 +1,124 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphFingerprintTest {
+
+    private static final String DECORATOR = YedGraphMLDecorator.class.getName();
+
+    @TempDir
+    Path reportDirectory;
+
+    @Test
+    void equalGraphs() {
+        assertThat(fingerprint(graph("value"), new Properties(), new HashMap<>())).isEqualTo(fingerprint(graph("value"), new Properties(), new HashMap<>()));
+    }
+
+    @Test
+    void changedGraph() {
+        long fingerprint = fingerprint(graph("value"), new Properties(), new HashMap<>());
+
+        assertThat(fingerprint(graph("other value"), new Properties(), new HashMap<>())).isNotEqualTo(fingerprint);
+        SubGraph graph = graph("value");
+        graph.getNodes()
+            .get(1L)
+            .getLabels()
+            .add("Changed");
+        assertThat(fingerprint(graph, new Properties(), new HashMap<>())).isNotEqualTo(fingerprint);
+        graph = graph("value");
+        graph.getNodes()
+            .get(1L)
+            .getProperties()
+            .put("name", 42);
+        assertThat(fingerprint(graph, new Properties(), new HashMap<>())).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void changedGraphData() {
+        Map<String, Object> graphData = new HashMap<>();
+        graphData.put("droppedNodes", 1);
+        long fingerprint = fingerprint(graph("value"), graphData, new Properties(), new HashMap<>());
+
+        graphData.put("droppedNodes", 2);
+        assertThat(fingerprint(graph("value"), graphData, new Properties(), new HashMap<>())).isNotEqualTo(fingerprint);
+        assertThat(fingerprint(graph("value"), new Properties(), new HashMap<>())).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void changedConfiguration() {
+        long fingerprint = fingerprint(graph("value"), new Properties(), new HashMap<>());
+
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty("graphml.report.edgeKeys", "weight:int");
+        assertThat(fingerprint(graph("value"), reportProperties, new HashMap<>())).isNotEqualTo(fingerprint);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("graphml.report.compression", "gzip");
+        assertThat(fingerprint(graph("value"), new Properties(), properties)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void fingerprintIndex() throws IOException {
+        File file = reportDirectory.resolve("test.graphml")
+            .toFile();
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        FingerprintIndex fingerprintIndex = FingerprintIndex.load(reportDirectory.toFile());
+        assertThat(fingerprintIndex.isUnchanged(file, 42)).isFalse();
+
+        fingerprintIndex.put(file, 42);
+        fingerprintIndex.store();
+
+        FingerprintIndex loadedIndex = FingerprintIndex.load(reportDirectory.toFile());
+        assertThat(loadedIndex.isUnchanged(file, 42)).isTrue();
+        assertThat(loadedIndex.isUnchanged(file, 43)).isFalse();
+        Files.write(file.toPath(), new byte[] { 1, 2 });
+        assertThat(loadedIndex.isUnchanged(file, 42)).isFalse();
+    }
+
+    private static long fingerprint(SubGraph graph, Properties reportProperties, Map<String, Object> properties) {
+        return fingerprint(graph, new HashMap<>(), reportProperties, properties);
+    }
+
+    private static long fingerprint(SubGraph graph, Map<String, Object> graphData, Properties reportProperties, Map<String, Object> properties) {
+        return GraphFingerprint.of(graph, graphData, "test:Concept", reportProperties, DECORATOR, properties);
+    }
+
+    private static SubGraph graph(String name) {
+        Node node1 = new Node();
+        node1.setId(1);
+        node1.getLabels()
+            .add("Type");
+        node1.getProperties()
+            .put("name", name);
+        Node node2 = new Node();
+        node2.setId(2);
+        Relationship relationship = new Relationship();
+        relationship.setId(1);
+        relationship.setType("DEPENDS_ON");
+        relationship.setStartNode(node1);
+        relationship.setEndNode(node2);
+        SubGraph graph = new SubGraph();
+        graph.getNodes()
+            .put(node1.getId(), node1);
+        graph.getNodes()
+            .put(node2.getId(), node2);
+        graph.getRelationships()
+            .put(relationship.getId(), relationship);
+        return graph;
+    }
+}
@@ -0,0 +1,86 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+
+class GraphIndexTest {
+
+    @Test
+    void nestedSubGraphs() {
+        Node parent = node(1);
+        Node child = node(2);
+        child.getProperties()
+            .put("name", "child");
+        Node other = node(3);
+        other.getProperties()
+            .put("name", 42);
+        Relationship relationship = relationship(1, parent, child);
+
+        SubGraph nested = new SubGraph();
+        nested.setParent(parent);
+        nested.getNodes()
+            .put(child.getId(), child);
+        nested.getRelationships()
+            .put(relationship.getId(), relationship);
+        SubGraph graph = new SubGraph();
+        graph.getNodes()
+            .put(other.getId(), other);
+        graph.getRelationships()
+            .put(relationship.getId(), relationship);
+        graph.getSubGraphs()
+            .put(2L, nested);
+
+        GraphIndex graphIndex = GraphIndex.of(graph);
+
+        assertThat(graphIndex.containsNode(parent)).isTrue();
+        assertThat(graphIndex.containsNode(child)).isTrue();
+        assertThat(graphIndex.containsNode(other)).isTrue();
+        assertThat(graphIndex.containsNode(node(4))).isFalse();
+        assertThat(graphIndex.getRelationships()).containsExactly(relationship);
+        assertThat(graphIndex.getNodeKeyTypes()).containsEntry("labels", String.class)
+            .containsEntry("name", void.class);
+    }
+
+    @Test
+    void projectedKeyTypes() {
+        Node type = node(1);
+        type.getLabels()
+            .add("Type");
+        type.getProperties()
+            .put("fqn", "a.A");
+        type.getProperties()
+            .put("sourceCode", "class A {}");
+        Node method = node(2);
+        method.getLabels()
+            .add("Method");
+        method.getProperties()
+            .put("signature", "void m()");
+        Relationship relationship = relationship(1, type, method);
+        relationship.getProperties()
+            .put("weight", 1);
+        SubGraph graph = new SubGraph();
+        graph.getNodes()
+            .put(type.getId(), type);
+        graph.getNodes()
+            .put(method.getId(), method);
+        graph.getRelationships()
+            .put(relationship.getId(), relationship);
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(PropertyProjection.GRAPHML_INCLUDE_PROPERTIES, "fqn");
+        reportProperties.setProperty(PropertyProjection.GRAPHML_INCLUDE_PROPERTIES + ".Method", "signature");
+
+        GraphIndex graphIndex = GraphIndex.of(graph, PropertyProjection.of(reportProperties), true, true);
+
+        assertThat(graphIndex.getNodeKeyTypes()).containsOnlyKeys("labels", "fqn", "signature");
+        assertThat(graphIndex.getRelationshipKeyTypes()).isEmpty();
+    }
+}
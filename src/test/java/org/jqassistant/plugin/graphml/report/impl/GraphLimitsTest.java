@@ -0,0 +1,140 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.add;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+
+class GraphLimitsTest {
+
+    @Test
+    void noLimits() {
+        assertThat(GraphLimits.of(new Properties())).isNull();
+        assertThatThrownBy(() -> GraphLimits.of(properties("0", null, null))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void withinLimits() {
+        SubGraph graph = star();
+
+        GraphLimits.Truncation truncation = GraphLimits.of(properties("5", "4", null))
+            .apply(graph);
+
+        assertThat(truncation.isTruncated()).isFalse();
+        assertThat(truncation.getGraph()).isSameAs(graph);
+    }
+
+    @Test
+    void highestDegree() {
+        GraphLimits.Truncation truncation = GraphLimits.of(properties("3", null, null))
+            .apply(star());
+
+        assertThat(truncation.isTruncated()).isTrue();
+        SubGraph graph = truncation.getGraph();
+        assertThat(graph.getNodes()).containsOnlyKeys(1L, 2L, 3L);
+        // edges to dropped nodes are dropped
+        assertThat(graph.getRelationships()).containsOnlyKeys(1L, 2L);
+        assertThat(truncation.getGraphData()).containsEntry(GraphLimits.TRUNCATED, true)
+            .containsEntry(GraphLimits.TOTAL_NODES, 5L)
+            .containsEntry(GraphLimits.TOTAL_EDGES, 4L)
+            .containsEntry(GraphLimits.DROPPED_NODES, 2L)
+            .containsEntry(GraphLimits.DROPPED_EDGES, 2L)
+            .containsEntry(GraphLimits.PRIORITY, "degree");
+    }
+
+    @Test
+    void priorityProperty() {
+        SubGraph graph = star();
+        graph.getNodes()
+            .get(5L)
+            .getProperties()
+            .put("weight", 10);
+        graph.getNodes()
+            .get(4L)
+            .getProperties()
+            .put("weight", 5L);
+
+        GraphLimits.Truncation truncation = GraphLimits.of(properties("2", "1", "weight"))
+            .apply(graph);
+
+        assertThat(truncation.getGraph()
+            .getNodes()).containsOnlyKeys(4L, 5L);
+        assertThat(truncation.getGraph()
+            .getRelationships()).isEmpty();
+        assertThat(truncation.getGraphData()).containsEntry(GraphLimits.PRIORITY, "weight,degree");
+    }
+
+    @Test
+    void droppedParent() {
+        SubGraph graph = star();
+        Node parent = node(6);
+        SubGraph nested = new SubGraph();
+        nested.setId(-2);
+        nested.setParent(parent);
+        Node child = node(7);
+        nested.getNodes()
+            .put(child.getId(), child);
+        graph.getSubGraphs()
+            .put(nested.getId(), nested);
+        connect(graph, 5, graph.getNodes()
+            .get(1L), child);
+        connect(graph, 6, child, graph.getNodes()
+            .get(2L));
+
+        GraphLimits.Truncation truncation = GraphLimits.of(properties("3", null, null))
+            .apply(graph);
+
+        SubGraph truncatedGraph = truncation.getGraph();
+        assertThat(truncatedGraph.getNodes()).containsOnlyKeys(1L, 2L, 7L);
+        assertThat(truncatedGraph.getSubGraphs()).isEmpty();
+    }
+
+    /**
+     * Node 1 is connected to nodes 2 to 5, node 2 is connected to node 3.
+     */
+    private static SubGraph star() {
+        SubGraph graph = new SubGraph();
+        for (long id = 1; id <= 5; id++) {
+            add(graph, node(id));
+        }
+        connect(graph, 1, graph.getNodes()
+            .get(1L), graph.getNodes()
+            .get(2L));
+        connect(graph, 2, graph.getNodes()
+            .get(2L), graph.getNodes()
+            .get(3L));
+        connect(graph, 3, graph.getNodes()
+            .get(1L), graph.getNodes()
+            .get(4L));
+        connect(graph, 4, graph.getNodes()
+            .get(1L), graph.getNodes()
+            .get(5L));
+        return graph;
+    }
+
+    private static void connect(SubGraph graph, long id, Node start, Node end) {
+        add(graph, relationship(id, start, end));
+    }
+
+    private static Properties properties(String maxNodes, String maxEdges, String priorityProperty) {
+        Properties properties = new Properties();
+        if (maxNodes != null) {
+            properties.setProperty(GraphLimits.GRAPHML_MAX_NODES, maxNodes);
+        }
+        if (maxEdges != null) {
+            properties.setProperty(GraphLimits.GRAPHML_MAX_EDGES, maxEdges);
+        }
+        if (priorityProperty != null) {
+            properties.setProperty(GraphLimits.GRAPHML_PRIORITY_PROPERTY, priorityProperty);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,54 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphMLMetricsTest {
+
+    @TempDir
+    File reportDirectory;
+
+    @Test
+    void totals() {
+        GraphMLMetrics graphMLMetrics = new GraphMLMetrics();
+        ReportMetrics report1 = graphMLMetrics.create("test:One");
+        report1.add(ReportMetrics.Counter.NODES, 3);
+        report1.addNanos(ReportMetrics.Phase.EDGES, 100);
+        ReportMetrics report2 = graphMLMetrics.create("test:Two");
+        report2.add(ReportMetrics.Counter.NODES, 4);
+        report2.addNanos(ReportMetrics.Phase.EDGES, 50);
+
+        ReportMetrics total = graphMLMetrics.getTotal();
+
+        assertThat(total.get(ReportMetrics.Counter.NODES)).isEqualTo(7);
+        assertThat(total.getNanos(ReportMetrics.Phase.EDGES)).isEqualTo(150);
+    }
+
+    @Test
+    void store() throws IOException {
+        GraphMLMetrics graphMLMetrics = new GraphMLMetrics();
+        ReportMetrics report = graphMLMetrics.create("test:\"Quoted\"");
+        report.getFiles()
+            .add("test_Quoted.graphml");
+        report.add(ReportMetrics.Counter.BYTES, 42);
+        report.addNanos(ReportMetrics.Phase.SUB_GRAPH, 7);
+        graphMLMetrics.create("test:Skipped")
+            .setSkipped(true);
+
+        graphMLMetrics.store(reportDirectory);
+
+        String json = new String(Files.readAllBytes(new File(reportDirectory, GraphMLMetrics.FILE_NAME).toPath()), UTF_8);
+        assertThat(json).contains("\"rule\" : \"test:\\\"Quoted\\\"\", \"files\" : [\"test_Quoted.graphml\"], \"skipped\" : false")
+            .contains("\"subGraph\" : 7")
+            .contains("\"bytes\" : 42")
+            .contains("\"rule\" : \"test:Skipped\", \"files\" : [], \"skipped\" : true")
+            .contains("\"total\" : { \"reports\" : 2, \"skipped\" : 1");
+    }
+}
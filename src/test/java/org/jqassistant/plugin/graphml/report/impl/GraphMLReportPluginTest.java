@@ -0,0 +1,248 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+import com.buschmais.jqassistant.core.report.api.graph.SubGraphFactory;
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Column;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.report.api.model.Row;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+import com.buschmais.jqassistant.core.rule.api.model.Report;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.graph;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@MockitoSettings(strictness = Strictness.LENIENT)
+@ExtendWith(MockitoExtension.class)
+class GraphMLReportPluginTest {
+
+    @TempDir
+    File reportDirectory;
+
+    @Mock
+    private ReportContext reportContext;
+
+    @Mock
+    private SubGraphFactory subGraphFactory;
+
+    private Map<String, Object> properties;
+
+    @BeforeEach
+    void setUp() throws ReportException {
+        properties = new HashMap<>();
+        properties.put("graphml.report.directory", reportDirectory.getAbsolutePath());
+        when(subGraphFactory.toIdentifiable(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void merged() throws ReportException {
+        properties.put("graphml.report.merged", "true");
+        Result<Concept> plain = result("test:Plain", new Properties(), graph(node(1, "Type"), node(2, "Type")));
+        Properties limits = new Properties();
+        limits.setProperty(GraphLimits.GRAPHML_MAX_NODES, "1");
+        Result<Concept> truncated = result("test:Truncated", limits, graph(node(3, "Type"), node(4, "Type")));
+        Properties aggregation = new Properties();
+        aggregation.setProperty(GraphAggregation.GRAPHML_AGGREGATE_BY, "label");
+        Result<Concept> aggregated = result("test:Aggregated", aggregation, graph(node(5, "Type"), node(6, "Type")));
+
+        report(plain, truncated, aggregated);
+
+        File mergedFile = new File(reportDirectory, "graphml_Merged.graphml");
+        assertThat(reportDirectory.list()).containsExactlyInAnyOrder("graphml_Merged.graphml", "test_Truncated.graphml", "test_Aggregated.graphml");
+        assertThat(read(mergedFile)).contains("test:Plain")
+            .doesNotContain("test:Truncated")
+            .doesNotContain("test:Aggregated");
+        verifyLink("GraphML (merged)", plain, mergedFile);
+        verifyLink("GraphML", truncated, new File(reportDirectory, "test_Truncated.graphml"));
+        verifyLink("GraphML", aggregated, new File(reportDirectory, "test_Aggregated.graphml"));
+    }
+
+    @Test
+    void skipUnchanged() throws ReportException {
+        properties.put("graphml.report.skipUnchanged", "true");
+        Node node1 = node(1);
+        Node node2 = node(2);
+        SubGraph subGraph = graph(node1, node2);
+        Result<Concept> result = result("test:Concept", new Properties(), subGraph);
+        File file = new File(reportDirectory, "test_Concept.graphml");
+
+        report(result);
+        assertThat(file.setLastModified(1000)).isTrue();
+        report(result);
+
+        assertThat(file.lastModified()).isEqualTo(1000);
+        verifyLink("GraphML", result, file, 2);
+
+        subGraph.getRelationships()
+            .put(1L, relationship(1, node1, node2));
+        report(result);
+
+        assertThat(file.lastModified()).isNotEqualTo(1000);
+        assertThat(read(file)).contains("<edge id=\"e1\"");
+        verifyLink("GraphML", result, file, 3);
+    }
+
+    @Test
+    void shards() throws ReportException {
+        properties.put("graphml.report.shard.maxNodes", "1");
+        Result<Concept> result = result("test:Concept", new Properties(), graph(node(1), node(2)));
+
+        report(result);
+
+        File indexFile = new File(reportDirectory, "test_Concept.graphml");
+        File shardFile1 = new File(reportDirectory, "test_Concept.shard-1.graphml");
+        File shardFile2 = new File(reportDirectory, "test_Concept.shard-2.graphml");
+        assertThat(reportDirectory.list()).containsExactlyInAnyOrder(indexFile.getName(), shardFile1.getName(), shardFile2.getName());
+        assertThat(read(indexFile)).contains(shardFile1.getName())
+            .contains(shardFile2.getName());
+        verifyLink("GraphML (shard 1)", result, shardFile1);
+        verifyLink("GraphML (shard 2)", result, shardFile2);
+        verifyLink("GraphML", result, indexFile);
+    }
+
+    @Test
+    void async() throws ReportException {
+        properties.put("graphml.report.async", "true");
+        properties.put("graphml.report.async.threads", "1");
+        properties.put("graphml.report.async.maxPendingReports", "1");
+        List<Result<Concept>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(result("test:Concept" + i, new Properties(), graph(node(i))));
+        }
+
+        report(results.toArray(new Result<?>[0]));
+
+        for (int i = 0; i < 5; i++) {
+            File file = new File(reportDirectory, "test_Concept" + i + ".graphml");
+            assertThat(read(file)).contains("<node id=\"n" + i + "\"")
+                .contains("</graphml>");
+            verifyLink("GraphML", results.get(i), file);
+        }
+    }
+
+    @Test
+    void streaming() throws ReportException {
+        properties.put("graphml.report.streaming", "true");
+        Properties keys = new Properties();
+        keys.setProperty(KeySchema.GRAPHML_NODE_KEYS, "fqn:string");
+        keys.setProperty(KeySchema.GRAPHML_EDGE_KEYS, "weight:long");
+        Node node1 = node(1);
+        Node node2 = node(2);
+        Result<Concept> streamed = result("test:Streamed", keys, null);
+        doReturn(List.of(row(node1), row(node2, relationship(1, node1, node2)))).when(streamed)
+            .getRows();
+        Result<Concept> complete = result("test:Complete", new Properties(), graph(node(3)));
+
+        report(streamed, complete);
+
+        verify(subGraphFactory, never()).createSubGraph(streamed);
+        verify(subGraphFactory).createSubGraph(complete);
+        File streamedFile = new File(reportDirectory, "test_Streamed.graphml");
+        assertThat(read(streamedFile)).contains("<node id=\"n1\"")
+            .contains("<edge id=\"e1\" source=\"n1\" target=\"n2\"");
+        verifyLink("GraphML", streamed, streamedFile);
+        verifyLink("GraphML", complete, new File(reportDirectory, "test_Complete.graphml"));
+    }
+
+    private void report(Result<?>... results) throws ReportException {
+        GraphMLReportPlugin plugin = new GraphMLReportPlugin(() -> subGraphFactory);
+        plugin.configure(reportContext, properties);
+        plugin.begin();
+        for (Result<?> result : results) {
+            plugin.setResult(result);
+        }
+        plugin.end();
+    }
+
+    private Result<Concept> result(String id, Properties reportProperties, SubGraph subGraph) throws ReportException {
+        Concept concept = Concept.builder()
+            .id(id)
+            .report(Report.builder()
+                .properties(reportProperties)
+                .build())
+            .build();
+        Result<Concept> result = mock(Result.class);
+        doReturn(concept).when(result)
+            .getRule();
+        doReturn(emptyList()).when(result)
+            .getRows();
+        doReturn(subGraph).when(subGraphFactory)
+            .createSubGraph(result);
+        return result;
+    }
+
+    private Row row(Object... values) {
+        Map<String, Column<?>> columns = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            Column<?> column = mock(Column.class);
+            doReturn(values[i]).when(column)
+                .getValue();
+            columns.put("c" + i, column);
+        }
+        Row row = mock(Row.class);
+        doReturn(columns).when(row)
+            .getColumns();
+        return row;
+    }
+
+    private void verifyLink(String label, Result<Concept> result, File file) throws ReportException {
+        verifyLink(label, result, file, 1);
+    }
+
+    private void verifyLink(String label, Result<Concept> result, File file, int count) throws ReportException {
+        verify(reportContext, times(count)).addReport(eq(label), eq(result.getRule()), eq(ReportContext.ReportType.LINK), eq(url(file)));
+    }
+
+    private URL url(File file) {
+        try {
+            return file.toURI()
+                .toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String read(File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphMLStreamWriterTest {
+
+    private static final String Y_NAMESPACE_URI = "http://www.yworks.com/xml/graphml";
+
+    private static final String GRAPHML_NAMESPACE_URI = "http://graphml.graphdrawing.org/xmlns";
+
+    private static final String Z_NAMESPACE_URI = "http://example.com/z";
+
+    @Test
+    void sameOutputAsStax() throws XMLStreamException {
+        assertThat(write(XmlStreamWriterType.GRAPHML)).isEqualTo(write(XmlStreamWriterType.STAX));
+    }
+
+    @Test
+    void escaping() throws XMLStreamException {
+        String output = write(XmlStreamWriterType.GRAPHML);
+
+        assertThat(output).contains("name=\"&lt;init&gt; &amp; &quot;quoted&quot; 'single'\"")
+            .contains(">&lt;init&gt; &amp; \"quoted\" ü€😀</data>");
+    }
+
+    @Test
+    void boundPrefixes() throws XMLStreamException {
+        String output = writeBoundPrefixes(XmlStreamWriterType.GRAPHML);
+
+        assertThat(output).isEqualTo(writeBoundPrefixes(XmlStreamWriterType.STAX))
+            .contains("<graphml xmlns=\"" + GRAPHML_NAMESPACE_URI + "\"")
+            .contains("<z:Shape z:type=\"rectangle\"/><y:Fill/>");
+    }
+
+    private static String writeBoundPrefixes(XmlStreamWriterType type) throws XMLStreamException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLStreamWriter writer = type.create(outputStream);
+        writer.setNamespaceContext(new GraphMLNamespaceContext(singletonMap("y", Y_NAMESPACE_URI), emptyMap()));
+        writer.setDefaultNamespace(GRAPHML_NAMESPACE_URI);
+        writer.setPrefix("z", Z_NAMESPACE_URI);
+        writer.writeStartElement(GRAPHML_NAMESPACE_URI, "graphml");
+        writer.writeDefaultNamespace(GRAPHML_NAMESPACE_URI);
+        writer.writeNamespace("z", Z_NAMESPACE_URI);
+        writer.writeEmptyElement(Z_NAMESPACE_URI, "Shape");
+        writer.writeAttribute(Z_NAMESPACE_URI, "type", "rectangle");
+        writer.writeEmptyElement(Y_NAMESPACE_URI, "Fill");
+        assertThat(writer.getNamespaceContext()
+            .getNamespaceURI("z")).isEqualTo(Z_NAMESPACE_URI);
+        writer.writeEndDocument();
+        writer.close();
+        return new String(outputStream.toByteArray(), UTF_8);
+    }
+
+    private static String write(XmlStreamWriterType type) throws XMLStreamException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLStreamWriter writer = type.create(outputStream);
+        Map<String, String> namespaces = new HashMap<>();
+        namespaces.put("y", Y_NAMESPACE_URI);
+        GraphMLNamespaceContext context = new GraphMLNamespaceContext(namespaces, emptyMap());
+        writer.setNamespaceContext(context);
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("graphml");
+        writer.writeNamespace("xmlns", "http://graphml.graphdrawing.org/xmlns");
+        writer.writeAttribute("xmlns", "http://graphml.graphdrawing.org/xmlns", "y", Y_NAMESPACE_URI);
+        writer.writeEmptyElement("key");
+        writer.writeAttribute("id", "name");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("node");
+        writer.writeAttribute("id", "n1");
+        writer.writeAttribute("name", "<init> & \"quoted\" 'single'");
+        writer.writeStartElement("data");
+        writer.writeAttribute("key", "name");
+        writer.writeCharacters("<init> & \"quoted\" ü€😀");
+        writer.writeEndElement();
+        writer.writeStartElement("data");
+        writer.writeEndElement();
+        writer.writeStartElement(Y_NAMESPACE_URI, "NodeLabel");
+        writer.writeEmptyElement(Y_NAMESPACE_URI, "Fill");
+        writer.writeAttribute("color", "#FFFFFF");
+        writer.writeCData("Label");
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        return new String(outputStream.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.add;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+
+class GraphSharderTest {
+
+    @Test
+    void withinThresholds() {
+        SubGraph graph = graph(4);
+        connect(graph, 1, 1, 2);
+
+        GraphSharder.Shards shards = new GraphSharder(4, 10, Long.MAX_VALUE).shard(graph);
+
+        assertThat(shards.isSplit()).isFalse();
+        assertThat(shards.getShards()).containsExactly(graph);
+    }
+
+    @Test
+    void connectedComponents() {
+        SubGraph graph = graph(6);
+        connect(graph, 1, 1, 4);
+        connect(graph, 2, 4, 6);
+        connect(graph, 3, 2, 3);
+
+        GraphSharder.Shards shards = new GraphSharder(3, Long.MAX_VALUE, Long.MAX_VALUE).shard(graph);
+
+        assertThat(shards.getShards()).hasSize(2);
+        assertThat(shards.getShards()
+            .get(0)
+            .getNodes()).containsOnlyKeys(1L, 4L, 6L);
+        assertThat(shards.getShards()
+            .get(0)
+            .getRelationships()).containsOnlyKeys(1L, 2L);
+        assertThat(shards.getShards()
+            .get(1)
+            .getNodes()).containsOnlyKeys(2L, 3L, 5L);
+        assertThat(shards.getShards()
+            .get(1)
+            .getRelationships()).containsOnlyKeys(3L);
+        assertThat(shards.getCrossingRelationships()).isEmpty();
+    }
+
+    @Test
+    void oversizedComponent() {
+        SubGraph graph = graph(5);
+        IntStream.range(1, 5)
+            .forEach(i -> connect(graph, i, i, i + 1));
+
+        GraphSharder.Shards shards = new GraphSharder(2, Long.MAX_VALUE, Long.MAX_VALUE).shard(graph);
+
+        assertThat(shards.getShards()).hasSize(3);
+        assertThat(shards.getCrossingRelationships()).extracting(Relationship::getId)
+            .containsExactly(2L, 4L);
+        SubGraph indexGraph = shards.createIndexGraph(asList("1.graphml", "2.graphml", "3.graphml"));
+        assertThat(indexGraph.getNodes()).hasSize(3);
+        assertThat(indexGraph.getNodes()
+            .get(2L)
+            .getProperties()).containsEntry(GraphSharder.Shards.FILE, "2.graphml")
+            .containsEntry(GraphSharder.Shards.NODES, 2L)
+            .containsEntry(GraphSharder.Shards.EDGES, 1L);
+        Relationship crossing = indexGraph.getRelationships()
+            .get(2L);
+        assertThat(crossing.getStartNode()
+            .getId()).isEqualTo(1L);
+        assertThat(crossing.getEndNode()
+            .getId()).isEqualTo(2L);
+        assertThat(crossing.getProperties()).containsEntry(GraphSharder.Shards.SOURCE_NODE, "n2")
+            .containsEntry(GraphSharder.Shards.TARGET_NODE, "n3");
+    }
+
+    @Test
+    void subGraphsAreNotSplit() {
+        SubGraph graph = new SubGraph();
+        SubGraph nested = new SubGraph();
+        nested.setId(-2);
+        Node parent = node(1);
+        nested.setParent(parent);
+        nested.getNodes()
+            .put(2L, node(2));
+        nested.getNodes()
+            .put(3L, node(3));
+        graph.getSubGraphs()
+            .put(nested.getId(), nested);
+        graph.getNodes()
+            .put(4L, node(4));
+
+        GraphSharder.Shards shards = new GraphSharder(2, Long.MAX_VALUE, Long.MAX_VALUE).shard(graph);
+
+        List<SubGraph> result = shards.getShards();
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0)
+            .getNodes()).containsOnlyKeys(4L);
+        assertThat(result.get(1)
+            .getSubGraphs()).containsOnlyKeys(-2L);
+    }
+
+    private static SubGraph graph(int nodes) {
+        SubGraph graph = new SubGraph();
+        for (long id = 1; id <= nodes; id++) {
+            add(graph, node(id));
+        }
+        return graph;
+    }
+
+    private static void connect(SubGraph graph, long id, long start, long end) {
+        add(graph, relationship(id, graph.getNodes()
+            .get(start), graph.getNodes()
+            .get(end)));
+    }
+}
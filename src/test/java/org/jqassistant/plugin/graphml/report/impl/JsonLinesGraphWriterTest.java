@@ -0,0 +1,150 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+import com.buschmais.jqassistant.core.rule.api.model.Report;
+import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
+
+import org.jqassistant.plugin.graphml.report.decorator.YedGraphMLDecorator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@MockitoSettings(strictness = Strictness.LENIENT)
+@ExtendWith(MockitoExtension.class)
+class JsonLinesGraphWriterTest {
+
+    @Mock
+    private ClassHelper classHelper;
+
+    @Mock
+    private Concept concept;
+
+    @Mock
+    private Result<?> result;
+
+    private YedGraphMLDecorator decorator;
+
+    private Node parent;
+
+    private SubGraph subGraph;
+
+    @BeforeEach
+    void setUp() {
+        doReturn(concept).when(result).getRule();
+        when(concept.getId()).thenReturn("test:JsonLines");
+        when(concept.getReport()).thenReturn(Report.builder()
+            .build());
+        decorator = mock(YedGraphMLDecorator.class);
+        doReturn(YedGraphMLDecorator.class).when(classHelper).getType(YedGraphMLDecorator.class.getName());
+        doReturn(decorator).when(classHelper).createInstance(YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenReturn(true);
+
+        parent = labeled(1, "a.A", "Java", "Type");
+        Node node2 = labeled(2, "a.A#m1", "Java", "Method");
+        Node node3 = labeled(3, "a.A#m2", "Java", "Method");
+        node3.getProperties()
+            .put("name", "m2 \"quoted\"\n");
+        node3.getProperties()
+            .put("lines", 12);
+
+        SubGraph nested = new SubGraph();
+        nested.setId(1);
+        nested.setParent(parent);
+        nested.getNodes()
+            .put(node2.getId(), node2);
+        nested.getNodes()
+            .put(node3.getId(), node3);
+        nested.getRelationships()
+            .put(10L, relationship(10, "INVOKES", node2, node3));
+
+        subGraph = new SubGraph();
+        subGraph.getSubGraphs()
+            .put(nested.getId(), nested);
+        subGraph.getRelationships()
+            .put(11L, relationship(11, "DECLARES", parent, node2));
+    }
+
+    @Test
+    void lines() throws IOException {
+        List<String> lines = write();
+
+        assertThat(lines).containsExactly("{\"kind\":\"header\",\"format\":\"jqassistant-graph\",\"version\":1,\"rule\":\"test:JsonLines\"}",
+            "{\"kind\":\"graph\",\"id\":0}", "{\"kind\":\"labels\",\"id\":0,\"labels\":[\"Java\",\"Type\"]}", "{\"kind\":\"key\",\"id\":0,\"name\":\"fqn\"}",
+            "{\"kind\":\"node\",\"id\":1,\"graph\":0,\"labels\":0,\"label\":\"a.A\",\"properties\":[0,\"a.A\"]}",
+            "{\"kind\":\"graph\",\"id\":1,\"parent\":0,\"node\":1}", "{\"kind\":\"labels\",\"id\":1,\"labels\":[\"Java\",\"Method\"]}",
+            "{\"kind\":\"node\",\"id\":2,\"graph\":1,\"labels\":1,\"label\":\"a.A#m1\",\"properties\":[0,\"a.A#m1\"]}",
+            "{\"kind\":\"key\",\"id\":1,\"name\":\"name\"}", "{\"kind\":\"key\",\"id\":2,\"name\":\"lines\"}",
+            "{\"kind\":\"node\",\"id\":3,\"graph\":1,\"labels\":1,\"label\":\"a.A#m2\",\"properties\":[0,\"a.A#m2\",1,\"m2 \\\"quoted\\\"\\n\",2,12]}",
+            "{\"kind\":\"type\",\"id\":0,\"name\":\"DECLARES\"}", "{\"kind\":\"edge\",\"id\":11,\"type\":0,\"source\":1,\"target\":2}",
+            "{\"kind\":\"type\",\"id\":1,\"name\":\"INVOKES\"}", "{\"kind\":\"edge\",\"id\":10,\"type\":1,\"source\":2,\"target\":3}");
+    }
+
+    @Test
+    void decoratorFiltersElements() throws IOException {
+        when(decorator.isWriteNode(parent)).thenReturn(false);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenAnswer(invocation -> "INVOKES".equals(
+            invocation.<Relationship>getArgument(0)
+                .getType()));
+
+        List<String> lines = write();
+
+        assertThat(lines).contains("{\"kind\":\"graph\",\"id\":1,\"parent\":0}")
+            .noneMatch(line -> line.contains("\"label\":\"a.A\""))
+            .noneMatch(line -> line.contains("DECLARES"))
+            .contains("{\"kind\":\"edge\",\"id\":10,\"type\":0,\"source\":2,\"target\":3}");
+    }
+
+    @Test
+    void graphData() throws IOException {
+        List<String> lines = write(Map.of("truncated", true));
+
+        assertThat(lines.get(0)).isEqualTo(
+            "{\"kind\":\"header\",\"format\":\"jqassistant-graph\",\"version\":1,\"rule\":\"test:JsonLines\",\"data\":{\"truncated\":true}}");
+    }
+
+    private List<String> write() throws IOException {
+        return write(emptyMap());
+    }
+
+    private List<String> write(Map<String, Object> graphData) throws IOException {
+        File file = File.createTempFile("test", ".jsonl");
+        file.deleteOnExit();
+        JsonLinesGraphWriter writer = new JsonLinesGraphWriter(classHelper, YedGraphMLDecorator.class, emptyMap(),
+            new ReportOutput(Compression.NONE, -1, XmlStreamWriterType.STAX));
+        writer.write(result, subGraph, file, graphData, null);
+        return Files.readAllLines(file.toPath(), UTF_8);
+    }
+
+    private static Node labeled(long id, String label, String... labels) {
+        Node node = node(id, labels);
+        node.setLabel(label);
+        node.getProperties()
+            .put("fqn", label);
+        return node;
+    }
+}
@@ -0,0 +1,64 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyDefaultsTest {
+
+    private final KeyDefaults keyDefaults = new KeyDefaults();
+
+    private final Map<String, Class<?>> keyTypes = new HashMap<>();
+
+    @Test
+    void dominantValue() {
+        for (int i = 0; i < 1000; i++) {
+            // the dominant value is retained although the number of distinct values exceeds the number of counters
+            add(i % 3 == 0 ? "name" + i : "public");
+        }
+
+        assertThat(keyDefaults.getDefaults(keyTypes)).containsEntry("visibility", "public");
+    }
+
+    @Test
+    void keyNotPresentOnAllElements() {
+        add("public");
+        add("public");
+        keyDefaults.add(new Node(), PropertyProjection.all()
+            .forNode(new Node().getLabels()));
+
+        assertThat(keyDefaults.getDefaults(keyTypes)).isEmpty();
+    }
+
+    @Test
+    void valuesOfDifferentTypes() {
+        add("public");
+        add("public");
+        keyTypes.put("visibility", void.class);
+
+        assertThat(keyDefaults.getDefaults(keyTypes)).isEmpty();
+    }
+
+    @Test
+    void uniqueValues() {
+        add("public");
+        add("private");
+
+        assertThat(keyDefaults.getDefaults(keyTypes)).isEmpty();
+    }
+
+    private void add(String visibility) {
+        Node node = new Node();
+        node.getProperties()
+            .put("visibility", visibility);
+        PropertyProjection.Filter filter = PropertyProjection.all()
+            .forNode(node.getLabels());
+        GraphIndex.updateKeyTypes(keyTypes, node, filter);
+        keyDefaults.add(node, filter);
+    }
+}
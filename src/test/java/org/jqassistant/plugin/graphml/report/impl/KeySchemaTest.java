@@ -0,0 +1,66 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeySchemaTest {
+
+    private final Concept concept = Concept.builder()
+        .id("test:Concept")
+        .build();
+
+    @Test
+    void inferredKeys() {
+        KeySchema keySchema = KeySchema.inferred(concept);
+
+        assertThat(keySchema.hasNodeKeys()).isFalse();
+        assertThat(keySchema.hasEdgeKeys()).isFalse();
+        assertThat(keySchema.verify(KeySchema.FOR_NODE, "fqn", "com.buschmais.Type")).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", 1)).isTrue();
+    }
+
+    @Test
+    void declaredKeys() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(KeySchema.GRAPHML_NODE_KEYS, "fqn:string, effectiveLineCount:int");
+        KeySchema keySchema = KeySchema.of(concept, reportProperties);
+
+        assertThat(keySchema.getNodeKeys()).containsEntry("fqn", "string")
+            .containsEntry("effectiveLineCount", "int")
+            .containsEntry("labels", "string");
+        assertThat(keySchema.hasEdgeKeys()).isFalse();
+        assertThat(keySchema.verify(KeySchema.FOR_NODE, "fqn", "com.buschmais.Type")).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_NODE, "name", "Type")).isFalse();
+        assertThat(keySchema.verify(KeySchema.FOR_NODE, "name", null)).isFalse();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", 1)).isTrue();
+    }
+
+    @Test
+    void changingValueClasses() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(KeySchema.GRAPHML_EDGE_KEYS, "weight:int");
+        KeySchema keySchema = KeySchema.of(concept, reportProperties);
+
+        // values of a mismatching type are written nevertheless, alternating classes are verified again
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", 1)).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", 1L)).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", 2)).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "weight", null)).isTrue();
+        assertThat(keySchema.verify(KeySchema.FOR_EDGE, "count", 2)).isFalse();
+    }
+
+    @Test
+    void unsupportedType() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(KeySchema.GRAPHML_NODE_KEYS, "fqn:text");
+
+        assertThatThrownBy(() -> KeySchema.of(concept, reportProperties)).isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("fqn");
+    }
+}
@@ -0,0 +1,41 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+
+class LabelSetCacheTest {
+
+    @Test
+    void labelSetsAreInterned() {
+        LabelSetCache labelSetCache = new LabelSetCache();
+
+        LabelSet labelSet = labelSetCache.get(node(1, "Java", "Type"));
+
+        assertThat(labelSetCache.get(node(1, "Java", "Type"))).isSameAs(labelSet);
+        assertThat(labelSetCache.get(node(1, "Java", "Method"))).isNotSameAs(labelSet);
+        assertThat(labelSet.getLabels()).containsExactlyInAnyOrder("Java", "Type");
+        assertThat(labelSet.getLabelsString()).startsWith(":")
+            .contains(":Java")
+            .contains(":Type");
+        assertThat(new String(labelSet.getEscapedText(), UTF_8)).isEqualTo(labelSet.getLabelsString());
+    }
+
+    @Test
+    void escapedLabels() {
+        LabelSet labelSet = new LabelSetCache().get(node(1, "A&\"B\""));
+
+        assertThat(new String(labelSet.getEscapedAttributeValue(), UTF_8)).isEqualTo(":A&amp;&quot;B&quot;");
+        assertThat(new String(labelSet.getEscapedText(), UTF_8)).isEqualTo(":A&amp;\"B\"");
+    }
+
+    @Test
+    void noLabels() {
+        LabelSet labelSet = new LabelSetCache().get(node(1));
+
+        assertThat(labelSet.isEmpty()).isTrue();
+        assertThat(labelSet.getLabelsString()).isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongHashSetTest {
+
+    @Test
+    void addAndContains() {
+        LongHashSet set = new LongHashSet();
+
+        assertThat(set.add(0)).isTrue();
+        assertThat(set.add(-1)).isTrue();
+        assertThat(set.add(Long.MAX_VALUE)).isTrue();
+        assertThat(set.add(0)).isFalse();
+        assertThat(set.add(-1)).isFalse();
+
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.contains(-1)).isTrue();
+        assertThat(set.contains(Long.MAX_VALUE)).isTrue();
+        assertThat(set.contains(1)).isFalse();
+        assertThat(set.size()).isEqualTo(3);
+    }
+
+    @Test
+    void growBeyondInitialCapacity() {
+        LongHashSet set = new LongHashSet(4);
+        for (long value = -50000; value < 50000; value++) {
+            assertThat(set.add(value)).isTrue();
+        }
+
+        assertThat(set.size()).isEqualTo(100000);
+        for (long value = -50000; value < 50000; value++) {
+            assertThat(set.contains(value)).isTrue();
+        }
+        assertThat(set.contains(50000)).isFalse();
+    }
+}
@@ -0,0 +1,46 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntHashMapTest {
+
+    @Test
+    void putAndGet() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+
+        assertThat(map.putIfAbsent(0, 10)).isTrue();
+        assertThat(map.putIfAbsent(-1, 11)).isTrue();
+        assertThat(map.putIfAbsent(Long.MAX_VALUE, 12)).isTrue();
+        assertThat(map.putIfAbsent(0, 20)).isFalse();
+        assertThat(map.putIfAbsent(-1, 21)).isFalse();
+
+        assertThat(map.get(0)).isEqualTo(10);
+        assertThat(map.get(-1)).isEqualTo(11);
+        assertThat(map.get(Long.MAX_VALUE)).isEqualTo(12);
+        assertThat(map.get(1)).isEqualTo(-1);
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    @Test
+    void missingEmptyKey() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+
+        assertThat(map.get(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void growBeyondInitialCapacity() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        for (long key = -50000; key < 50000; key++) {
+            assertThat(map.putIfAbsent(key, (int) key * 2)).isTrue();
+        }
+
+        assertThat(map.size()).isEqualTo(100000);
+        for (long key = -50000; key < 50000; key++) {
+            assertThat(map.get(key)).isEqualTo((int) key * 2);
+        }
+        assertThat(map.get(50000)).isEqualTo(-1);
+    }
+}
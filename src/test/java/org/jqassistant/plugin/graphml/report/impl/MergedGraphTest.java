@@ -0,0 +1,121 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.rule.api.model.Concept;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.graph;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.nested;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.node;
+import static org.jqassistant.plugin.graphml.report.impl.TestGraphs.relationship;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MergedGraphTest {
+
+    @Test
+    void sharedElementsAreAddedOnce() {
+        Node node1 = node(1);
+        Node node2 = node(2);
+        Node node3 = node(3);
+        Relationship shared = relationship(10, node1, node2);
+        SubGraph graph1 = graph(node1, node2);
+        graph1.getRelationships()
+            .put(shared.getId(), shared);
+        SubGraph graph2 = graph(node2, node3);
+        graph2.getRelationships()
+            .put(shared.getId(), shared);
+        graph2.getRelationships()
+            .put(11L, relationship(11, node2, node3));
+        MergedGraph mergedGraph = new MergedGraph();
+
+        mergedGraph.add(rule("test:Rule1"), graph1);
+        mergedGraph.add(rule("test:Rule2"), graph2);
+
+        SubGraph ruleGraph1 = mergedGraph.getGraph()
+            .getSubGraphs()
+            .get(1L);
+        SubGraph ruleGraph2 = mergedGraph.getGraph()
+            .getSubGraphs()
+            .get(2L);
+        assertThat(ruleGraph1.getParent()
+            .getLabels()).containsExactly(MergedGraph.RULE_LABEL);
+        assertThat(ruleGraph1.getParent()
+            .getProperties()).containsEntry(MergedGraph.RULE_ID, "test:Rule1");
+        assertThat(ruleGraph1.getNodes()).containsOnlyKeys(1L, 2L);
+        assertThat(ruleGraph2.getNodes()).containsOnlyKeys(3L);
+        assertThat(mergedGraph.getGraph()
+            .getRelationships()).containsOnlyKeys(10L, 11L);
+        assertThat(mergedGraph.getRules()).isEqualTo(2);
+        assertThat(mergedGraph.getNodes()).isEqualTo(3);
+    }
+
+    @Test
+    void nestedGraphWithSharedParent() {
+        Node parent = node(1);
+        SubGraph graph1 = new SubGraph();
+        graph1.getSubGraphs()
+            .put(1L, nested(parent, node(2)));
+        SubGraph graph2 = new SubGraph();
+        graph2.getSubGraphs()
+            .put(1L, nested(parent, node(3)));
+        MergedGraph mergedGraph = new MergedGraph();
+
+        mergedGraph.add(rule("test:Rule1"), graph1);
+        mergedGraph.add(rule("test:Rule2"), graph2);
+
+        SubGraph ruleGraph1 = mergedGraph.getGraph()
+            .getSubGraphs()
+            .get(1L);
+        SubGraph ruleGraph2 = mergedGraph.getGraph()
+            .getSubGraphs()
+            .get(2L);
+        assertThat(ruleGraph1.getSubGraphs()).hasSize(1);
+        SubGraph nested = ruleGraph1.getSubGraphs()
+            .values()
+            .iterator()
+            .next();
+        assertThat(nested.getParent()).isSameAs(parent);
+        assertThat(nested.getNodes()).containsOnlyKeys(2L);
+        // the parent has already been written, the nested graph is merged into the graph of the rule
+        assertThat(ruleGraph2.getSubGraphs()).isEmpty();
+        assertThat(ruleGraph2.getNodes()).containsOnlyKeys(3L);
+        assertThat(GraphIndex.of(mergedGraph.getGraph())
+            .getNodeCount()).isEqualTo(5);
+    }
+
+    @Test
+    void ruleNodesBelowVirtualNodes() {
+        MergedGraph mergedGraph = new MergedGraph();
+
+        mergedGraph.add(rule("test:Rule1"), graph(node(-1), node(1)));
+        mergedGraph.add(rule("test:Rule2"), graph(node(-2)));
+
+        SubGraph graph = mergedGraph.getGraph();
+        assertThat(graph.getSubGraphs()
+            .get(1L)
+            .getParent()
+            .getId()).isEqualTo(-3L);
+        assertThat(graph.getSubGraphs()
+            .get(2L)
+            .getParent()
+            .getId()).isEqualTo(-4L);
+        assertThat(mergedGraph.getNodes()).isEqualTo(3);
+        assertThat(mergedGraph.getGraph()).isSameAs(graph);
+        assertThat(graph.getSubGraphs()
+            .get(2L)
+            .getId()).isEqualTo(-4L);
+        assertThat(GraphIndex.of(graph)
+            .getNodeCount()).isEqualTo(5);
+    }
+
+    private static Concept rule(String id) {
+        Concept concept = mock(Concept.class);
+        when(concept.getId()).thenReturn(id);
+        return concept;
+    }
+}
@@ -0,0 +1,55 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void multipleBlocks() throws IOException {
+        byte[] data = new byte[100_000];
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (ParallelGzipOutputStream outputStream = new ParallelGzipOutputStream(compressed, 6, 4096, 3)) {
+            outputStream.write(data, 0, 10);
+            outputStream.write(data[10]);
+            outputStream.write(data, 11, data.length - 11);
+            outputStream.flush();
+        }
+
+        assertThat(decompress(compressed.toByteArray())).isEqualTo(data);
+    }
+
+    @Test
+    void empty() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        new ParallelGzipOutputStream(compressed, 6).close();
+
+        assertThat(decompress(compressed.toByteArray())).isEmpty();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) >= 0) {
+                decompressed.write(buffer, 0, count);
+            }
+            return decompressed.toByteArray();
+        }
+    }
+}
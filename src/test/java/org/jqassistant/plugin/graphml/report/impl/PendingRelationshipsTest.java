@@ -0,0 +1,58 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PendingRelationshipsTest {
+
+    @Test
+    void removeInOrderOfAddition() {
+        Node node1 = TestGraphs.node(1);
+        Node node2 = TestGraphs.node(2);
+        Relationship relationship1 = TestGraphs.relationship(1, node1, node2);
+        Relationship relationship2 = TestGraphs.relationship(2, node1, node2);
+        Relationship relationship3 = TestGraphs.relationship(3, node2, node1);
+        PendingRelationships pendingRelationships = new PendingRelationships();
+
+        pendingRelationships.add(2, relationship1);
+        pendingRelationships.add(0, relationship3);
+        pendingRelationships.add(2, relationship2);
+
+        assertThat(pendingRelationships.size()).isEqualTo(3);
+        assertThat(pendingRelationships.remove(2)).containsExactly(relationship1, relationship2);
+        assertThat(pendingRelationships.remove(2)).isEmpty();
+        assertThat(pendingRelationships.remove(1)).isEmpty();
+        assertThat(pendingRelationships.size()).isEqualTo(1);
+        assertThat(pendingRelationships.remove(0)).containsExactly(relationship3);
+        assertThat(pendingRelationships.size()).isZero();
+    }
+
+    @Test
+    void reuseSlots() {
+        Node node = TestGraphs.node(1);
+        PendingRelationships pendingRelationships = new PendingRelationships();
+        for (int round = 0; round < 3; round++) {
+            List<Relationship> relationships = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                Relationship relationship = TestGraphs.relationship(round * 1000L + i, node, node);
+                relationships.add(relationship);
+                pendingRelationships.add(i % 10, relationship);
+            }
+
+            assertThat(pendingRelationships.size()).isEqualTo(1000);
+            List<Relationship> removed = new ArrayList<>();
+            for (long nodeId = 0; nodeId < 10; nodeId++) {
+                removed.addAll(pendingRelationships.remove(nodeId));
+            }
+            assertThat(removed).containsExactlyInAnyOrderElementsOf(relationships);
+            assertThat(pendingRelationships.size()).isZero();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PropertyProjectionTest {
+
+    @Test
+    void allProperties() {
+        PropertyProjection.Filter filter = PropertyProjection.all()
+            .forNode(Set.of("Type"));
+
+        assertThat(filter.isIncluded("fqn")).isTrue();
+        assertThat(filter.getValue("a.very.long.Name")).isEqualTo("a.very.long.Name");
+    }
+
+    @Test
+    void scopedIncludesAndExcludes() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(PropertyProjection.GRAPHML_INCLUDE_PROPERTIES, "fqn, name");
+        reportProperties.setProperty(PropertyProjection.GRAPHML_INCLUDE_PROPERTIES + ".Method", "signature");
+        reportProperties.setProperty(PropertyProjection.GRAPHML_EXCLUDE_PROPERTIES + ".Type", "name");
+        reportProperties.setProperty(PropertyProjection.GRAPHML_EXCLUDE_PROPERTIES + ".INVOKES", "lineNumber");
+        PropertyProjection projection = PropertyProjection.of(reportProperties);
+
+        PropertyProjection.Filter method = projection.forNode(Set.of("Java", "Method"));
+        assertThat(method.isIncluded("fqn")).isTrue();
+        assertThat(method.isIncluded("name")).isTrue();
+        assertThat(method.isIncluded("signature")).isTrue();
+        assertThat(method.isIncluded("visibility")).isFalse();
+
+        PropertyProjection.Filter type = projection.forNode(Set.of("Java", "Type"));
+        assertThat(type.isIncluded("fqn")).isTrue();
+        assertThat(type.isIncluded("name")).isFalse();
+        assertThat(type.isIncluded("signature")).isFalse();
+        assertThat(projection.forNode(Set.of("Type", "Java"))).isSameAs(type);
+
+        PropertyProjection.Filter invokes = projection.forRelationship("INVOKES");
+        assertThat(invokes.isIncluded("fqn")).isTrue();
+        assertThat(invokes.isIncluded("lineNumber")).isFalse();
+    }
+
+    @Test
+    void scopedIncludesOnly() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(PropertyProjection.GRAPHML_INCLUDE_PROPERTIES + ".Method", "signature");
+        PropertyProjection projection = PropertyProjection.of(reportProperties);
+
+        assertThat(projection.forNode(Set.of("Method"))
+            .isIncluded("fqn")).isFalse();
+        assertThat(projection.forNode(Set.of("Type"))
+            .isIncluded("fqn")).isTrue();
+    }
+
+    @Test
+    void maxValueLength() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(PropertyProjection.GRAPHML_MAX_VALUE_LENGTH, "4");
+        PropertyProjection.Filter filter = PropertyProjection.of(reportProperties)
+            .forNode(Set.of());
+
+        assertThat(filter.getValue("abcd")).isEqualTo("abcd");
+        assertThat(filter.getValue("abcde")).isEqualTo("abcd" + PropertyProjection.TRUNCATION_MARKER);
+        // a surrogate pair is not split
+        assertThat(filter.getValue("abc\uD83D\uDE00")).isEqualTo("abc" + PropertyProjection.TRUNCATION_MARKER);
+        assertThat(filter.getValue(123456789L)).isEqualTo(123456789L);
+    }
+
+    @Test
+    void invalidMaxValueLength() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty(PropertyProjection.GRAPHML_MAX_VALUE_LENGTH, "0");
+
+        assertThatThrownBy(() -> PropertyProjection.of(reportProperties)).isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining(PropertyProjection.GRAPHML_MAX_VALUE_LENGTH);
+    }
+}
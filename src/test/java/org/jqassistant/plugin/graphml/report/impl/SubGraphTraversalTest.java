@@ -0,0 +1,72 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubGraphTraversalTest {
+
+    @Test
+    void preOrder() {
+        SubGraph graph = subGraph(0);
+        SubGraph a = subGraph(1);
+        SubGraph a1 = subGraph(2);
+        SubGraph b = subGraph(3);
+        a.getSubGraphs()
+            .put(a1.getId(), a1);
+        graph.getSubGraphs()
+            .put(a.getId(), a);
+        graph.getSubGraphs()
+            .put(b.getId(), b);
+        List<String> events = new ArrayList<>();
+
+        SubGraphTraversal.traverse(graph, new SubGraphTraversal.Visitor<RuntimeException>() {
+            @Override
+            public void enter(SubGraph subGraph) {
+                events.add("enter " + subGraph.getId());
+            }
+
+            @Override
+            public void leave(SubGraph subGraph) {
+                events.add("leave " + subGraph.getId());
+            }
+        });
+
+        assertThat(events).containsExactly("enter 0", "enter 1", "enter 2", "leave 2", "leave 1", "enter 3", "leave 3", "leave 0");
+    }
+
+    @Test
+    void deeplyNestedSubGraphs() {
+        int depth = 100_000;
+        SubGraph graph = subGraph(0);
+        SubGraph current = graph;
+        for (int i = 1; i <= depth; i++) {
+            Node parent = new Node();
+            parent.setId(i);
+            SubGraph nested = subGraph(i);
+            nested.setParent(parent);
+            current.getSubGraphs()
+                .put(nested.getId(), nested);
+            current = nested;
+        }
+        long[] visited = new long[1];
+
+        SubGraphTraversal.traverse(graph, subGraph -> visited[0]++);
+
+        assertThat(visited[0]).isEqualTo(depth + 1);
+        assertThat(GraphIndex.of(graph)
+            .getNodeCount()).isEqualTo(depth);
+    }
+
+    private static SubGraph subGraph(long id) {
+        SubGraph subGraph = new SubGraph();
+        subGraph.setId(id);
+        return subGraph;
+    }
+}
@@ -0,0 +1,113 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Creates the graph elements used by tests.
+ */
+final class TestGraphs {
+
+    static final String TEST_TYPE = "TEST";
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Create a node.
+     *
+     * @param id     The id.
+     * @param labels The labels.
+     * @return The node.
+     */
+    static Node node(long id, String... labels) {
+        Node node = new Node();
+        node.setId(id);
+        node.getLabels()
+            .addAll(asList(labels));
+        return node;
+    }
+
+    /**
+     * Create a relationship of type {@link #TEST_TYPE}.
+     *
+     * @param id    The id.
+     * @param start The start node.
+     * @param end   The end node.
+     * @return The relationship.
+     */
+    static Relationship relationship(long id, Node start, Node end) {
+        return relationship(id, TEST_TYPE, start, end);
+    }
+
+    /**
+     * Create a relationship.
+     *
+     * @param id    The id.
+     * @param type  The type.
+     * @param start The start node.
+     * @param end   The end node.
+     * @return The relationship.
+     */
+    static Relationship relationship(long id, String type, Node start, Node end) {
+        Relationship relationship = new Relationship();
+        relationship.setId(id);
+        relationship.setType(type);
+        relationship.setStartNode(start);
+        relationship.setEndNode(end);
+        return relationship;
+    }
+
+    /**
+     * Create a graph.
+     *
+     * @param nodes The nodes of the graph.
+     * @return The graph.
+     */
+    static SubGraph graph(Node... nodes) {
+        SubGraph graph = new SubGraph();
+        for (Node node : nodes) {
+            add(graph, node);
+        }
+        return graph;
+    }
+
+    /**
+     * Create a nested graph identified by the id of its parent.
+     *
+     * @param parent The parent node.
+     * @param nodes  The nodes of the graph.
+     * @return The graph.
+     */
+    static SubGraph nested(Node parent, Node... nodes) {
+        SubGraph graph = graph(nodes);
+        graph.setId(parent.getId());
+        graph.setParent(parent);
+        return graph;
+    }
+
+    /**
+     * Add a node to a graph.
+     *
+     * @param graph The graph.
+     * @param node  The node.
+     */
+    static void add(SubGraph graph, Node node) {
+        graph.getNodes()
+            .put(node.getId(), node);
+    }
+
+    /**
+     * Add a relationship to a graph.
+     *
+     * @param graph        The graph.
+     * @param relationship The relationship.
+     */
+    static void add(SubGraph graph, Relationship relationship) {
+        graph.getRelationships()
+            .put(relationship.getId(), relationship);
+    }
+}
@@ -0,0 +1,37 @@
+package org.jqassistant.plugin.graphml.report.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    @Test
+    void highestScores() {
+        TopK topK = new TopK(3);
+        double[] scores = { 5, 1, 9, 3, 7, 2, 8 };
+        for (int i = 0; i < scores.length; i++) {
+            topK.offer(i, scores[i], 0);
+        }
+
+        assertThat(topK.getElements()).containsExactly(2, 4, 6);
+    }
+
+    @Test
+    void secondaryScoreAndTies() {
+        TopK topK = new TopK(2);
+        topK.offer(0, 1, 1);
+        topK.offer(1, 1, 5);
+        topK.offer(2, 1, 1);
+        topK.offer(3, 1, 5);
+
+        assertThat(topK.getElements()).containsExactly(1, 3);
+
+        topK = new TopK(2);
+        topK.offer(0, 1, 1);
+        topK.offer(1, 1, 1);
+        topK.offer(2, 1, 1);
+
+        assertThat(topK.getElements()).containsExactly(0, 1);
+    }
+}
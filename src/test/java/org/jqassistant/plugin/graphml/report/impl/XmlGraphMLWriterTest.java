@@ -2,16 +2,30 @@ package org.jqassistant.plugin.graphml.report.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.buschmais.jqassistant.core.report.api.ReportException;
+import com.buschmais.jqassistant.core.report.api.graph.SubGraphFactory;
 import com.buschmais.jqassistant.core.report.api.graph.model.Node;
 import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+import com.buschmais.jqassistant.core.report.api.model.Column;
 import com.buschmais.jqassistant.core.report.api.model.Result;
+import com.buschmais.jqassistant.core.report.api.model.Row;
 import com.buschmais.jqassistant.core.rule.api.model.Concept;
 import com.buschmais.jqassistant.core.rule.api.model.Report;
 import com.buschmais.jqassistant.core.shared.reflection.ClassHelper;
@@ -27,7 +41,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -180,6 +198,441 @@ class XmlGraphMLWriterTest {
         verify(decorator, never()).writeRelationshipElements(relationship2);
     }
 
+    @Test
+    void metrics() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(node1)).thenReturn(true);
+        when(decorator.isWriteRelationship(relationship1)).thenReturn(true);
+        File file = getFile();
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap());
+        ReportMetrics metrics = new ReportMetrics("test");
+
+        writer.write(result, subGraph, file, emptyMap(), metrics);
+
+        verify(decorator).writeNodeElements(node1);
+        verify(decorator).close();
+        assertThat(metrics.get(ReportMetrics.Counter.NODES)).isEqualTo(1);
+        assertThat(metrics.get(ReportMetrics.Counter.FILTERED_NODES)).isEqualTo(1);
+        assertThat(metrics.get(ReportMetrics.Counter.EDGES)).isEqualTo(1);
+        assertThat(metrics.get(ReportMetrics.Counter.FILTERED_EDGES)).isEqualTo(1);
+        assertThat(metrics.get(ReportMetrics.Counter.BYTES)).isEqualTo(file.length());
+        assertThat(metrics.getNanos(ReportMetrics.Phase.NODES)).isPositive();
+        assertThat(metrics.getNanos(ReportMetrics.Phase.DECORATOR)).isPositive();
+    }
+
+    @Test
+    void flightRecorderEvents() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenReturn(true);
+        when(concept.getId()).thenReturn("test:Concept");
+        File file = getFile();
+        Path recordingFile = Files.createTempFile("test", ".jfr");
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap());
+
+        try (Recording recording = new Recording()) {
+            recording.enable("org.jqassistant.graphml.*");
+            recording.start();
+            writer.write(result, subGraph, file);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            events.put(event.getEventType()
+                .getName(), event);
+        }
+        Files.delete(recordingFile);
+        assertThat(events).containsKeys("org.jqassistant.graphml.KeyInference", "org.jqassistant.graphml.Traversal",
+            "org.jqassistant.graphml.RelationshipPass", "org.jqassistant.graphml.Decorator");
+        RecordedEvent writeEvent = events.get("org.jqassistant.graphml.Write");
+        assertThat(writeEvent.getString("ruleId")).isEqualTo("test:Concept");
+        assertThat(writeEvent.getLong("nodes")).isEqualTo(2);
+        assertThat(writeEvent.getLong("relationships")).isEqualTo(2);
+        assertThat(writeEvent.getLong("bytes")).isEqualTo(file.length());
+        assertThat(events.get("org.jqassistant.graphml.Decorator")
+            .getLong("edges")).isEqualTo(2);
+    }
+
+    @Test
+    void streamable() {
+        Report report = Report.builder()
+            .properties(streamingProperties())
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, new HashMap<>());
+
+        assertThat(writer.isStreamable(result)).isFalse();
+
+        when(decorator.isStreamable()).thenReturn(true);
+        XmlGraphMLWriter streamingWriter = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, new HashMap<>());
+
+        assertThat(streamingWriter.isStreamable(result)).isTrue();
+
+        // the keys must be declared as the rows are consumed once
+        Properties nodeKeysOnly = new Properties();
+        nodeKeysOnly.setProperty("graphml.report.nodeKeys", "fqn:string");
+        when(concept.getReport()).thenReturn(Report.builder()
+            .properties(nodeKeysOnly)
+            .build());
+
+        assertThat(streamingWriter.isStreamable(result)).isFalse();
+    }
+
+    @Test
+    void streaming() throws IOException, XMLStreamException, ReportException {
+        Report report = Report.builder()
+            .properties(streamingProperties())
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenReturn(true);
+        Node node3 = new Node();
+        node3.setId(3);
+        Relationship relationship3 = new Relationship();
+        relationship3.setId(3);
+        relationship3.setType("TEST");
+        relationship3.setStartNode(node1);
+        relationship3.setEndNode(node3);
+        // the relationship precedes its node, relationship3 references a node which is not part of the result
+        List<Row> rows = List.of(row(relationship1, relationship3), row(node1), row(node2, relationship2));
+        doReturn(rows).when(result)
+            .getRows();
+        SubGraphFactory subGraphFactory = mock(SubGraphFactory.class);
+        when(subGraphFactory.toIdentifiable(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        File file = getFile();
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap());
+
+        writer.stream(result, subGraphFactory, file, null);
+
+        verify(decorator).writeNodeAttributes(node1);
+        verify(decorator).writeNodeAttributes(node2);
+        verify(decorator).writeRelationshipAttributes(relationship1);
+        verify(decorator).writeRelationshipAttributes(relationship2);
+        verify(decorator, never()).writeNodeAttributes(node3);
+        verify(decorator, never()).writeRelationshipAttributes(relationship3);
+        String graphML = new String(Files.readAllBytes(file.toPath()), UTF_8);
+        assertThat(graphML).contains("<node id=\"n1\"")
+            .contains("<node id=\"n2\"")
+            .contains("<edge id=\"e1\" source=\"n1\" target=\"n1\"")
+            .contains("<edge id=\"e2\" source=\"n2\" target=\"n2\"")
+            .doesNotContain("id=\"e3\"");
+    }
+
+    @Test
+    void streamingRequiresDeclaredKeys() {
+        when(concept.getReport()).thenReturn(Report.builder()
+            .build());
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap());
+
+        assertThatThrownBy(() -> writer.stream(result, mock(SubGraphFactory.class), getFile(), null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Properties streamingProperties() {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty("graphml.report.nodeKeys", "fqn:string");
+        reportProperties.setProperty("graphml.report.edgeKeys", "weight:long");
+        return reportProperties;
+    }
+
+    private Row row(Object... values) {
+        Map<String, Column<?>> columns = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            Column<?> column = mock(Column.class);
+            doReturn(values[i]).when(column)
+                .getValue();
+            columns.put("c" + i, column);
+        }
+        Row row = mock(Row.class);
+        doReturn(columns).when(row)
+            .getColumns();
+        return row;
+    }
+
+    @Test
+    void deeplyNestedSubGraphs() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        int depth = 20_000;
+        SubGraph graph = new SubGraph();
+        SubGraph current = graph;
+        for (int i = 1; i <= depth; i++) {
+            Node parent = new Node();
+            parent.setId(i);
+            SubGraph nested = new SubGraph();
+            nested.setId(i);
+            nested.setParent(parent);
+            current.getSubGraphs()
+                .put(nested.getId(), nested);
+            current = nested;
+        }
+        File file = getFile();
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap(), WriterOptions.DEFAULT
+            .withReportOutput(new ReportOutput(Compression.NONE, -1, XmlStreamWriterType.GRAPHML)));
+
+        writer.write(result, graph, file);
+
+        verify(decorator).isWriteNode(current.getParent());
+        String graphML = new String(Files.readAllBytes(file.toPath()), UTF_8);
+        assertThat(graphML).contains("<node id=\"n" + depth + "\"")
+            .endsWith("</node></graph>\n</graphml>\n");
+    }
+
+    @Test
+    void declaredKeys() throws IOException, XMLStreamException {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty("graphml.report.nodeKeys", "fqn:string, count:int");
+        reportProperties.setProperty("graphml.report.edgeKeys", "weight:long");
+        Report report = Report.builder()
+            .properties(reportProperties)
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenReturn(true);
+        node1.getProperties()
+            .put("fqn", "com.acme.Foo");
+        node1.getProperties()
+            .put("undeclared", "value");
+        File file = getFile();
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap());
+
+        writer.write(result, subGraph, file);
+
+        String graphML = new String(Files.readAllBytes(file.toPath()), UTF_8);
+        assertThat(graphML).contains("<key id=\"fqn\" for=\"node\" attr.name=\"fqn\" attr.type=\"string\"/>")
+            .contains("<key id=\"count\" for=\"node\" attr.name=\"count\" attr.type=\"int\"/>")
+            .contains("<key id=\"labels\" for=\"node\" attr.name=\"labels\" attr.type=\"string\"/>")
+            .contains("<key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"long\"/>")
+            .contains("<data key=\"fqn\">com.acme.Foo</data>")
+            .doesNotContain("undeclared");
+    }
+
+    @Test
+    void keyDefaults() throws IOException, XMLStreamException {
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty("graphml.report.keyDefaults", "true");
+        Report report = Report.builder()
+            .properties(reportProperties)
+            .build();
+        YedGraphMLDecorator decorator = stubDecorator(report, YedGraphMLDecorator.class);
+        when(decorator.isWriteNode(any(Node.class))).thenReturn(true);
+        when(decorator.isWriteRelationship(any(Relationship.class))).thenReturn(true);
+        node1.getProperties()
+            .put("visibility", "public");
+        node1.getProperties()
+            .put("abstract", false);
+        node2.getProperties()
+            .put("visibility", "public");
+        relationship1.getProperties()
+            .put("weight", 1);
+        relationship2.getProperties()
+            .put("weight", 1);
+
+        String graphML = writeGraphML(XmlStreamWriterType.GRAPHML);
+
+        assertThat(graphML).contains("<key id=\"visibility\" for=\"node\" attr.name=\"visibility\" attr.type=\"string\"><default>public</default></key>")
+            .contains("<key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"int\"><default>1</default></key>")
+            .doesNotContain("<data key=\"visibility\">")
+            .doesNotContain("<data key=\"weight\">")
+            // not present on all nodes
+            .contains("<key id=\"abstract\" for=\"node\" attr.name=\"abstract\" attr.type=\"boolean\"/>")
+            .contains("<data key=\"abstract\">false</data>");
+    }
+
+    @Test
+    void yedNodeTemplates() throws IOException, XMLStreamException {
+        node1.setLabel("<Foo> & Bar");
+        Report report = Report.builder()
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        doReturn(YedGraphMLDecorator.class).when(classHelper)
+            .getType(YedGraphMLDecorator.class.getName());
+        when(classHelper.createInstance(YedGraphMLDecorator.class)).thenAnswer(invocation -> new YedGraphMLDecorator());
+
+        String stax = writeGraphML(XmlStreamWriterType.STAX);
+        String graphML = writeGraphML(XmlStreamWriterType.GRAPHML);
+
+        assertThat(graphML).isEqualTo(stax)
+            .contains("<![CDATA[<Foo> & Bar]]>");
+    }
+
+    @Test
+    void styledDecorator() throws IOException, XMLStreamException {
+        node1.getLabels()
+            .add("Styled");
+        node2.getLabels()
+            .add("Plain");
+        Report report = Report.builder()
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        StyledDecorator decorator = new StyledDecorator();
+        doReturn(StyledDecorator.class).when(classHelper)
+            .getType(StyledDecorator.class.getName());
+        doReturn(decorator).when(classHelper)
+            .createInstance(StyledDecorator.class);
+
+        String stax = writeGraphML(XmlStreamWriterType.STAX, StyledDecorator.class);
+        String graphML = writeGraphML(XmlStreamWriterType.GRAPHML, StyledDecorator.class);
+
+        assertThat(graphML).isEqualTo(stax)
+            .contains("<node id=\"n1\" style=\"styled\" labels=\":Styled\"><data key=\"labels\">:Styled</data><y:Fill color=\"#FF0000\"/></node>")
+            .contains("<node id=\"n2\" yfiles.foldertype=\"folder\" labels=\":Plain\">");
+        // the style class is requested once per label set and file
+        assertThat(decorator.nodeStyleClassRequests).isEqualTo(4);
+        assertThat(decorator.nodeElements).isEqualTo(2);
+    }
+
+    @Test
+    void styledDecoratorFiltersElements() throws IOException, XMLStreamException {
+        node1.getLabels()
+            .add("Styled");
+        node2.getLabels()
+            .addAll(asList("Styled", "Hidden"));
+        Report report = Report.builder()
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        StyledDecorator decorator = new StyledDecorator();
+        doReturn(StyledDecorator.class).when(classHelper)
+            .getType(StyledDecorator.class.getName());
+        doReturn(decorator).when(classHelper)
+            .createInstance(StyledDecorator.class);
+
+        String graphML = writeGraphML(XmlStreamWriterType.GRAPHML, StyledDecorator.class);
+
+        assertThat(graphML).contains("<node id=\"n1\" style=\"styled\"")
+            .doesNotContain("<node id=\"n2\"");
+    }
+
+    @Test
+    void parallel() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        doReturn(YedGraphMLDecorator.class).when(classHelper)
+            .getType(YedGraphMLDecorator.class.getName());
+        when(classHelper.createInstance(YedGraphMLDecorator.class)).thenAnswer(invocation -> new YedGraphMLDecorator());
+        int nodes = 3 * ParallelGraphMLSerializer.CHUNK_SIZE;
+        for (int i = 3; i < nodes; i++) {
+            Node node = new Node();
+            node.setId(i);
+            node.setLabel("Node " + i);
+            node.getLabels()
+                .add(i % 2 == 0 ? "Even" : "Odd");
+            node.getProperties()
+                .put("index", i);
+            subGraph.getNodes()
+                .put(node.getId(), node);
+            Relationship relationship = new Relationship();
+            relationship.setId(i);
+            relationship.setType("NEXT");
+            relationship.setStartNode(i > 3 ? subGraph.getNodes()
+                .get(i - 1L) : node1);
+            relationship.setEndNode(node);
+            subGraph.getRelationships()
+                .put(relationship.getId(), relationship);
+        }
+
+        String sequential = writeGraphML(XmlStreamWriterType.GRAPHML, YedGraphMLDecorator.class, false);
+        String parallel = writeGraphML(XmlStreamWriterType.GRAPHML, YedGraphMLDecorator.class, true);
+
+        assertThat(parallel).isEqualTo(sequential)
+            .contains("<edge id=\"e" + (nodes - 1) + "\"");
+    }
+
+    @Test
+    void fragmentCache() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        doReturn(YedGraphMLDecorator.class).when(classHelper)
+            .getType(YedGraphMLDecorator.class.getName());
+        when(classHelper.createInstance(YedGraphMLDecorator.class)).thenAnswer(invocation -> new YedGraphMLDecorator());
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap(), WriterOptions.DEFAULT
+            .withReportOutput(new ReportOutput(Compression.NONE, -1, XmlStreamWriterType.GRAPHML))
+            .withFragmentCache(fragmentCache));
+        String expected = writeGraphML(XmlStreamWriterType.GRAPHML);
+
+        String first = writeGraphML(writer, new ReportMetrics("test:Rule"));
+        ReportMetrics metrics = new ReportMetrics("test:Rule");
+        String second = writeGraphML(writer, metrics);
+        node1.getProperties()
+            .put("changed", true);
+        String changed = writeGraphML(writer, new ReportMetrics("test:Rule"));
+
+        assertThat(first).isEqualTo(expected);
+        assertThat(second).isEqualTo(expected);
+        assertThat(changed).contains("<data key=\"changed\">true</data>");
+        assertThat(metrics.get(ReportMetrics.Counter.FRAGMENT_CACHE_HITS)).isEqualTo(4);
+        assertThat(metrics.get(ReportMetrics.Counter.FRAGMENT_CACHE_MISSES)).isZero();
+        assertThat(metrics.get(ReportMetrics.Counter.NODES)).isEqualTo(2);
+        assertThat(metrics.get(ReportMetrics.Counter.EDGES)).isEqualTo(2);
+        assertThat(fragmentCache.getHits()).isEqualTo(7);
+        assertThat(fragmentCache.getMisses()).isEqualTo(5);
+    }
+
+    @Test
+    void fragmentCacheWithDeclaredKeys() throws IOException, XMLStreamException {
+        Report report = Report.builder()
+            .build();
+        Properties reportProperties = new Properties();
+        reportProperties.setProperty("graphml.report.nodeKeys", "fqn:string");
+        Report declaredKeysReport = Report.builder()
+            .properties(reportProperties)
+            .build();
+        when(concept.getReport()).thenReturn(report);
+        when(classHelper.createInstance(YedGraphMLDecorator.class)).thenAnswer(invocation -> new YedGraphMLDecorator());
+        FragmentCache fragmentCache = new FragmentCache(FragmentCache.DEFAULT_MAX_BYTES);
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, YedGraphMLDecorator.class, emptyMap(), WriterOptions.DEFAULT
+            .withReportOutput(new ReportOutput(Compression.NONE, -1, XmlStreamWriterType.GRAPHML))
+            .withFragmentCache(fragmentCache));
+        node1.getProperties()
+            .put("fqn", "com.acme.Foo");
+        node1.getProperties()
+            .put("name", "Foo");
+
+        String inferred = writeGraphML(writer, null);
+        when(concept.getReport()).thenReturn(declaredKeysReport);
+        String declared = writeGraphML(writer, null);
+
+        assertThat(inferred).contains("<data key=\"name\">Foo</data>");
+        assertThat(declared).contains("<data key=\"fqn\">com.acme.Foo</data>")
+            .doesNotContain("key=\"name\"");
+        assertThat(fragmentCache.getHits()).isZero();
+    }
+
+    private String writeGraphML(XmlGraphMLWriter writer, ReportMetrics metrics) throws IOException, XMLStreamException {
+        File file = getFile();
+        writer.write(result, subGraph, file, emptyMap(), metrics);
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
+    private String writeGraphML(XmlStreamWriterType xmlStreamWriterType) throws IOException, XMLStreamException {
+        return writeGraphML(xmlStreamWriterType, YedGraphMLDecorator.class);
+    }
+
+    private String writeGraphML(XmlStreamWriterType xmlStreamWriterType, Class<? extends GraphMLDecorator> decoratorClass)
+        throws IOException, XMLStreamException {
+        return writeGraphML(xmlStreamWriterType, decoratorClass, false);
+    }
+
+    private String writeGraphML(XmlStreamWriterType xmlStreamWriterType, Class<? extends GraphMLDecorator> decoratorClass, boolean parallel)
+        throws IOException, XMLStreamException {
+        File file = getFile();
+        XmlGraphMLWriter writer = new XmlGraphMLWriter(classHelper, decoratorClass, emptyMap(), WriterOptions.DEFAULT
+            .withReportOutput(new ReportOutput(Compression.NONE, -1, xmlStreamWriterType))
+            .withParallel(parallel));
+        writer.write(result, subGraph, file);
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
     private <T extends GraphMLDecorator> T stubDecorator(Report report, Class<T> decoratorClass) {
         when(concept.getReport()).thenReturn(report);
         T decorator = mock(decoratorClass);
@@ -194,4 +647,45 @@ class XmlGraphMLWriterTest {
         return file;
     }
 
+    /**
+     * Writes nodes labeled with <code>Styled</code> using a style class, skips nodes labeled with <code>Hidden</code> and writes all other elements
+     * like the {@link YedGraphMLDecorator}.
+     */
+    static class StyledDecorator extends YedGraphMLDecorator {
+
+        private int nodeStyleClassRequests;
+
+        private int nodeElements;
+
+        @Override
+        public String getNodeStyleClass(Set<String> labels) {
+            nodeStyleClassRequests++;
+            return labels.contains("Styled") ? "styled" : null;
+        }
+
+        @Override
+        public void writeNodeStyleAttributes(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            writer.writeAttribute("style", styleClass);
+        }
+
+        @Override
+        public boolean writeNodeStyleElements(String styleClass, XMLStreamWriter writer) throws XMLStreamException {
+            writer.writeEmptyElement("http://www.yworks.com/xml/graphml", "Fill");
+            writer.writeAttribute("color", "#FF0000");
+            return true;
+        }
+
+        @Override
+        public boolean isWriteNode(Node node) {
+            return !node.getLabels()
+                .contains("Hidden") && super.isWriteNode(node);
+        }
+
+        @Override
+        public void writeNodeElements(Node node) throws XMLStreamException {
+            nodeElements++;
+            super.writeNodeElements(node);
+        }
+    }
+
 }